@@ -0,0 +1,100 @@
+package com.anyservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class ExecutorConfig {
+
+    @Value("${user.validation.password.executor.threads}")
+    private int passwordHashingThreads;
+
+    @Value("${user.validation.password.executor.queue.size}")
+    private int passwordHashingQueueSize;
+
+    @Value("${user.validation.password.rehash.queue.size}")
+    private int passwordRehashQueueSize;
+
+    @Value("${mail.smtp.pool.size}")
+    private int mailSendingThreads;
+
+    @Value("${batch.lookup.executor.threads}")
+    private int batchLookupThreads;
+
+    @Value("${batch.lookup.executor.queue.size}")
+    private int batchLookupQueueSize;
+
+    /**
+     * Executor for CPU-bound password hashing
+     * <p>
+     * It has a fixed amount of threads (by default - amount of available processors) and a bounded queue,
+     * so a burst of logins cannot starve request threads of all the other endpoints.
+     * When the queue is full - new tasks are rejected
+     *
+     * @return executor for password hashing
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor passwordHashingExecutor() {
+        int threads = passwordHashingThreads > 0 ? passwordHashingThreads : Runtime.getRuntime().availableProcessors();
+
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(passwordHashingQueueSize),
+                new CustomizableThreadFactory("password-hashing-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Executor for saving of rehashed passwords
+     * <p>
+     * Its single thread waits for a database connection, so that threads of password hashing never do it.
+     * When the queue is full - new tasks are rejected, and the password is rehashed on one of the next logins
+     *
+     * @return executor for saving of rehashed passwords
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor passwordRehashExecutor() {
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(passwordRehashQueueSize),
+                new CustomizableThreadFactory("password-rehash-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Executor for sending of emails in batches
+     * <p>
+     * It has as many threads as there are pooled SMTP connections, so every thread always has a connection.
+     * When all of them are busy - the caller sends the email by itself
+     *
+     * @return executor for sending of emails
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor mailSendingExecutor() {
+        return new ThreadPoolExecutor(mailSendingThreads, mailSendingThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(mailSendingThreads),
+                new CustomizableThreadFactory("mail-sending-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Executor for reading chunks of large batches of identifiers
+     * <p>
+     * Every thread holds a pooled database connection while it reads a chunk,
+     * so there must be fewer threads than connections in the pool.
+     * When the queue is full - new tasks are rejected
+     *
+     * @return executor for batch lookups
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor batchLookupExecutor() {
+        return new ThreadPoolExecutor(batchLookupThreads, batchLookupThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(batchLookupQueueSize),
+                new CustomizableThreadFactory("batch-lookup-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+}
@@ -1,28 +1,79 @@
 package com.anyservice.config;
 
+import com.anyservice.core.TwoTierCacheManager;
+import com.anyservice.core.serialization.UuidStreamSerializer;
 import com.hazelcast.config.*;
+import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.map.merge.PassThroughMergePolicy;
+import com.hazelcast.spring.cache.HazelcastCacheManager;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CachingConfigurerSupport;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.UUID;
 
 @Configuration
 @EnableCaching
 public class HazelcastConfig extends CachingConfigurerSupport {
 
+    /**
+     * Regions of hibernate second level cache, as they are named in entities
+     */
+    private static final String[] HIBERNATE_REGIONS = {
+            "users", "users.documents", "users.countries", "files", "countries"
+    };
+
     @Value("${security.jwt.uuid.live.seconds}")
     private int uuidLive;
 
-    @Value("${security.jwt.uuid.live.seconds}")
+    @Value("${spring.user.verification.seconds}")
     private int verificationCodeLive;
 
+    @Value("${cache.local.default.size}")
+    private int defaultLocalSize;
+
+    @Value("${cache.local.default.ttl.seconds}")
+    private long defaultLocalTtlSeconds;
+
+    @Value("${cache.hibernate.default.size}")
+    private int defaultHibernateSize;
+
+    @Value("${cache.hibernate.default.ttl.seconds}")
+    private int defaultHibernateTtlSeconds;
+
+    /**
+     * Hazelcast maps with node-local copies of recently read entries in front of them
+     * <p>
+     * Size and time to live of local copies can be set for every cache as
+     * cache.local.[name].size and cache.local.[name].ttl.seconds, zero disables them
+     *
+     * @param hazelcastInstance hazelcast instance
+     * @param environment       environment to take settings of caches from
+     * @param meterRegistry     registry of metrics
+     * @return cache manager
+     */
+    @Bean("cacheManager")
+    public CacheManager twoTierCacheManager(HazelcastInstance hazelcastInstance, Environment environment,
+                                            MeterRegistry meterRegistry) {
+        return new TwoTierCacheManager(new HazelcastCacheManager(hazelcastInstance),
+                name -> new TwoTierCacheManager.LocalSettings(
+                        environment.getProperty("cache.local." + name + ".size", Integer.class, defaultLocalSize),
+                        environment.getProperty("cache.local." + name + ".ttl.seconds", Long.class,
+                                defaultLocalTtlSeconds) * 1000),
+                meterRegistry);
+    }
+
     @Bean
-    public Config hazelCastConfig() {
-        return new Config()
+    public Config hazelCastConfig(Environment environment) {
+        Config config = new Config()
                 .setInstanceName("gw-hazelcast")
                 .setGroupConfig(new GroupConfig("GW_HZ_GROUP", "GW_HZ_GROUP_PSSWRD"))
+                .setSerializationConfig(serializationConfig())
                 .setNetworkConfig(
                         new NetworkConfig()
                                 .setPort(5600)
@@ -49,5 +100,51 @@ public class HazelcastConfig extends CachingConfigurerSupport {
                                 .setMergePolicyConfig(new MergePolicyConfig()
                                         .setPolicy(PassThroughMergePolicy.class.getName()))
                                 .setTimeToLiveSeconds(verificationCodeLive));
+
+        for (String region : HIBERNATE_REGIONS) {
+            config.addMapConfig(hibernateRegionConfig(region, environment));
+        }
+
+        return config;
+    }
+
+    /**
+     * Map of hibernate second level cache region
+     * <p>
+     * Size (per node) and time to live of entries can be set for every region as
+     * cache.hibernate.[region].size and cache.hibernate.[region].ttl.seconds, zero time to live - forever
+     *
+     * @param region      name of region
+     * @param environment environment to take settings of region from
+     * @return map config
+     */
+    private MapConfig hibernateRegionConfig(String region, Environment environment) {
+        return new MapConfig()
+                .setName(region)
+                .setBackupCount(1)
+                .setReadBackupData(true)
+                .setEvictionPolicy(EvictionPolicy.LRU)
+                .setMaxSizeConfig(new MaxSizeConfig(
+                        environment.getProperty("cache.hibernate." + region + ".size", Integer.class,
+                                defaultHibernateSize),
+                        MaxSizeConfig.MaxSizePolicy.PER_NODE))
+                .setTimeToLiveSeconds(environment.getProperty("cache.hibernate." + region + ".ttl.seconds",
+                        Integer.class, defaultHibernateTtlSeconds));
+    }
+
+    /**
+     * Compact serialization of values, those are sent between nodes and copied to backups
+     * <p>
+     * Changes of it make nodes incompatible with the nodes of previous version
+     *
+     * @return serialization config
+     */
+    public static SerializationConfig serializationConfig() {
+        return new SerializationConfig()
+                .addSerializerConfig(new SerializerConfig()
+                        .setTypeClass(UUID.class)
+                        .setImplementation(new UuidStreamSerializer()))
+                .addDataSerializableFactory(HazelcastDataSerializableFactory.FACTORY_ID,
+                        new HazelcastDataSerializableFactory());
     }
 }
@@ -0,0 +1,31 @@
+package com.anyservice.config;
+
+import com.anyservice.service.user.LoginThrottle;
+import com.anyservice.service.user.UserNameIndex;
+import com.hazelcast.nio.serialization.DataSerializableFactory;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+/**
+ * Creates objects, those are sent through Hazelcast, by their identifiers instead of class names
+ * <p>
+ * All the identifiers are kept here, so that they do not clash
+ */
+public class HazelcastDataSerializableFactory implements DataSerializableFactory {
+
+    public static final int FACTORY_ID = 1;
+
+    public static final int LOGIN_ATTEMPTS = 1;
+    public static final int USER_NAME_CHANGE = 2;
+
+    @Override
+    public IdentifiedDataSerializable create(int typeId) {
+        switch (typeId) {
+            case LOGIN_ATTEMPTS:
+                return new LoginThrottle.Attempts();
+            case USER_NAME_CHANGE:
+                return new UserNameIndex.Change();
+            default:
+                return null;
+        }
+    }
+}
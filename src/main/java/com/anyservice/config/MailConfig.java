@@ -0,0 +1,47 @@
+package com.anyservice.config;
+
+import com.anyservice.core.SmtpConnectionPool;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+@Configuration
+public class MailConfig {
+
+    @Value("${mail.smtp.pool.size}")
+    private int poolSize;
+
+    @Value("${mail.smtp.pool.max.messages}")
+    private int maxMessagesPerConnection;
+
+    @Value("${mail.smtp.pool.idle.seconds}")
+    private long idleSeconds;
+
+    @Value("${mail.smtp.pool.borrow.timeout.seconds}")
+    private long borrowTimeoutSeconds;
+
+    /**
+     * Pool of SMTP connections, configured the same way as auto-configured {@link JavaMailSenderImpl}
+     *
+     * @param mailSender    auto-configured mail sender
+     * @param meterRegistry registry of metrics
+     * @return pool of SMTP connections
+     */
+    @Bean(destroyMethod = "close")
+    public SmtpConnectionPool smtpConnectionPool(JavaMailSenderImpl mailSender, MeterRegistry meterRegistry) {
+        SmtpConnectionPool pool = new SmtpConnectionPool(mailSender.getSession(), mailSender.getProtocol(),
+                mailSender.getHost(), mailSender.getPort(), mailSender.getUsername(), mailSender.getPassword(),
+                poolSize, maxMessagesPerConnection, idleSeconds * 1000, borrowTimeoutSeconds * 1000);
+
+        Gauge.builder("mail.smtp.connections.open", pool, SmtpConnectionPool::getOpen)
+                .register(meterRegistry);
+        FunctionCounter.builder("mail.smtp.connections.opened", pool, SmtpConnectionPool::getOpened)
+                .register(meterRegistry);
+
+        return pool;
+    }
+}
@@ -1,19 +1,23 @@
 package com.anyservice.config;
 
-import org.springframework.context.MessageSource;
+import com.anyservice.core.VersionedMessageSource;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.context.support.ResourceBundleMessageSource;
 
 @Configuration
 public class MessageSourceConfig {
+
+    @Value("${i18n.cache.seconds}")
+    private int cacheSeconds;
+
     @Bean
-    public MessageSource messageSource() {
-        ResourceBundleMessageSource messageSource = new ResourceBundleMessageSource();
+    public VersionedMessageSource messageSource() {
+        VersionedMessageSource messageSource = new VersionedMessageSource();
         messageSource.setBasenames("i18n/web-messages");
         messageSource.setDefaultEncoding("UTF-8");
         messageSource.setUseCodeAsDefaultMessage(true);
+        messageSource.setCacheSeconds(cacheSeconds);
         return messageSource;
     }
 }
-
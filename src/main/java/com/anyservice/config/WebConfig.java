@@ -1,5 +1,6 @@
 package com.anyservice.config;
 
+import com.anyservice.service.api.ICountryRegistry;
 import com.anyservice.service.converters.InitialsToStringConverter;
 import com.anyservice.service.converters.file.dto_entity.FileBriefToEntityConverter;
 import com.anyservice.service.converters.file.dto_entity.FileDetailedToEntityConverter;
@@ -9,6 +10,7 @@ import com.anyservice.service.converters.user.dto_entity.UserBriefToEntityConver
 import com.anyservice.service.converters.user.dto_entity.UserDetailedToEntityConverter;
 import com.anyservice.service.converters.user.entity_dto.UserEntityToBriefConverter;
 import com.anyservice.service.converters.user.entity_dto.UserEntityToDetailedConverter;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.format.FormatterRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -16,6 +18,22 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
+    private final ICountryRegistry countryRegistry;
+
+    public WebConfig(ICountryRegistry countryRegistry) {
+        this.countryRegistry = countryRegistry;
+    }
+
+    /**
+     * User converter is also used directly, to convert only the requested fields
+     *
+     * @return converter of user entity into detailed DTO
+     */
+    @Bean
+    public UserEntityToDetailedConverter userEntityToDetailedConverter() {
+        return new UserEntityToDetailedConverter(new FileEntityToDetailedConverter(), countryRegistry);
+    }
+
     /**
      * Registration of converters those implement {@link org.springframework.core.convert.converter.Converter}
      * To be able to use them through {@link org.springframework.core.convert.ConversionService}
@@ -34,7 +52,7 @@ public class WebConfig implements WebMvcConfigurer {
 
         registry.addConverter(new UserDetailedToEntityConverter(fileDetailedToEntityConverter));
         registry.addConverter(new UserBriefToEntityConverter());
-        registry.addConverter(new UserEntityToDetailedConverter(fileEntityToDetailedConverter));
+        registry.addConverter(userEntityToDetailedConverter());
         registry.addConverter(new UserEntityToBriefConverter());
 
         registry.addConverter(new InitialsToStringConverter());
@@ -0,0 +1,145 @@
+package com.anyservice.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free probabilistic set of strings, that supports removal
+ * <p>
+ * "Absent" answer is always correct, "present" answer may be false with configured probability
+ * <p>
+ * Every position keeps a 4-bit counter instead of a single bit, 16 counters are packed into one long.
+ * Counter, that has reached its maximum, is never decremented again, so it can only cause false "present"
+ */
+public class CountingBloomFilter {
+
+    private static final int COUNTER_BITS = 4;
+    private static final int COUNTERS_PER_WORD = Long.SIZE / COUNTER_BITS;
+    private static final long COUNTER_MAX = (1L << COUNTER_BITS) - 1;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final AtomicLongArray words;
+    private final int counters;
+    private final int hashes;
+
+    /**
+     * @param expectedSize      expected amount of elements
+     * @param falsePositiveRate acceptable probability of false "present" answer, when there are expected amount of them
+     */
+    public CountingBloomFilter(int expectedSize, double falsePositiveRate) {
+        int size = Math.max(1, expectedSize);
+
+        // Optimal amounts of counters and hash functions for a Bloom filter
+        long optimalCounters = (long) Math.ceil(-size * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+
+        this.counters = (int) Math.min(Integer.MAX_VALUE - COUNTERS_PER_WORD, Math.max(COUNTERS_PER_WORD, optimalCounters));
+        this.hashes = Math.max(1, (int) Math.round((double) counters / size * Math.log(2)));
+        this.words = new AtomicLongArray((counters + COUNTERS_PER_WORD - 1) / COUNTERS_PER_WORD);
+    }
+
+    public void add(String value) {
+        long hash = hash(value);
+
+        for (int i = 0; i < hashes; i++) {
+            increment(position(hash, i));
+        }
+    }
+
+    /**
+     * Remove value, that was added before
+     * <p>
+     * Removal of a value, that was never added, breaks the guarantee of "absent" answer for other values
+     *
+     * @param value value
+     */
+    public void remove(String value) {
+        long hash = hash(value);
+
+        for (int i = 0; i < hashes; i++) {
+            decrement(position(hash, i));
+        }
+    }
+
+    /**
+     * @param value value
+     * @return false if value was definitely not added OR true if it probably was
+     */
+    public boolean mightContain(String value) {
+        long hash = hash(value);
+
+        for (int i = 0; i < hashes; i++) {
+            int position = position(hash, i);
+            if (counter(words.get(position / COUNTERS_PER_WORD), position) == 0) return false;
+        }
+
+        return true;
+    }
+
+    private void increment(int position) {
+        int word = position / COUNTERS_PER_WORD;
+
+        while (true) {
+            long current = words.get(word);
+            long counter = counter(current, position);
+
+            // Saturated counter stays as it is forever
+            if (counter == COUNTER_MAX) return;
+
+            if (words.compareAndSet(word, current, current + (1L << shift(position)))) return;
+        }
+    }
+
+    private void decrement(int position) {
+        int word = position / COUNTERS_PER_WORD;
+
+        while (true) {
+            long current = words.get(word);
+            long counter = counter(current, position);
+
+            // It's unknown how many times saturated counter was incremented
+            if (counter == 0 || counter == COUNTER_MAX) return;
+
+            if (words.compareAndSet(word, current, current - (1L << shift(position)))) return;
+        }
+    }
+
+    private static long counter(long word, int position) {
+        return (word >>> shift(position)) & COUNTER_MAX;
+    }
+
+    private static int shift(int position) {
+        return (position % COUNTERS_PER_WORD) * COUNTER_BITS;
+    }
+
+    /**
+     * i-th position is derived from two halves of a single 64-bit hash (double hashing)
+     */
+    private int position(long hash, int i) {
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+
+        return ((first + i * second) & Integer.MAX_VALUE) % counters;
+    }
+
+    /**
+     * 64-bit FNV-1a over UTF-8 bytes of a value, mixed by MurmurHash3 finalizer, so that both halves are usable
+     */
+    private static long hash(String value) {
+        long hash = FNV_OFFSET_BASIS;
+
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+
+        return hash;
+    }
+}
@@ -0,0 +1,110 @@
+package com.anyservice.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Simple thread-safe node-local cache, bounded by size and by expiration time of every entry
+ * <p>
+ * When the limit is reached, the least recently used entry is removed
+ *
+ * @param <K> key
+ * @param <V> value
+ */
+public class ExpiringLruCache<K, V> {
+
+    private final Map<K, Entry<V>> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public ExpiringLruCache(int maxSize) {
+        // Access ordered map, that removes the least recently used entry, when the limit is reached
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get value from cache
+     *
+     * @param key key
+     * @return value OR null if it's absent or expired
+     */
+    public V get(K key) {
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+
+            // Expired entries are treated as absent
+            if (entry.expiresAt < System.currentTimeMillis()) {
+                entries.remove(key);
+                misses.increment();
+                return null;
+            }
+
+            hits.increment();
+            return entry.value;
+        }
+    }
+
+    /**
+     * Put value into cache until the given moment
+     *
+     * @param key       key
+     * @param value     value
+     * @param expiresAt moment of expiration in mills
+     */
+    public void put(K key, V value, long expiresAt) {
+        // There is no sense to keep already expired values
+        if (expiresAt < System.currentTimeMillis()) return;
+
+        synchronized (entries) {
+            entries.put(key, new Entry<>(value, expiresAt));
+        }
+    }
+
+    public void remove(K key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.anyservice.core;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Set of token buckets, one per exact key
+ * <p>
+ * Every bucket keeps only the moment, when it becomes full again (Generic Cell Rate Algorithm).
+ * A full bucket is the same as an absent one, so buckets are forgotten as soon as they are refilled.
+ * Memory is bounded by the amount of keys - when it's reached, the least recently used bucket is forgotten,
+ * so flooding with new keys costs a lot of attempts to reset a single bucket, but never blocks other keys
+ * <p>
+ * Tokens taken locally are counted separately, so that they can be shared with other nodes of a cluster
+ * <p>
+ * All operations take a single lock, it's negligible next to the work, that is limited by tokens
+ */
+public class KeyedTokenBucket {
+
+    private final Map<String, Long> fullAt;
+    private final Map<String, Long> pending = new HashMap<>();
+
+    private final int maxKeys;
+    private final long refillMillis;
+    private final long burstMillis;
+    private final LongSupplier clock;
+
+    /**
+     * @param maxKeys      maximal amount of remembered keys
+     * @param capacity     amount of tokens, that can be taken at once
+     * @param refillMillis time, needed to refill one token
+     */
+    public KeyedTokenBucket(int maxKeys, int capacity, long refillMillis) {
+        this(maxKeys, capacity, refillMillis, System::currentTimeMillis);
+    }
+
+    /**
+     * @param maxKeys      maximal amount of remembered keys
+     * @param capacity     amount of tokens, that can be taken at once
+     * @param refillMillis time, needed to refill one token
+     * @param clock        source of current time in millis
+     */
+    public KeyedTokenBucket(int maxKeys, int capacity, long refillMillis, LongSupplier clock) {
+        this.maxKeys = maxKeys;
+        this.refillMillis = refillMillis;
+        this.burstMillis = capacity * refillMillis;
+        this.clock = clock;
+
+        // Access ordered map, that removes the least recently used bucket, when the limit is reached
+        this.fullAt = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > maxKeys;
+            }
+        };
+    }
+
+    /**
+     * Try to take one token for given key
+     *
+     * @param key key
+     * @return 0 if token was taken OR amount of millis to wait for the next token
+     */
+    public synchronized long tryAcquire(String key) {
+        long now = clock.getAsLong();
+        forgetRefilled(now);
+
+        long current = fullAt.getOrDefault(key, now);
+        long next = Math.max(current, now) + refillMillis;
+
+        if (next - now > burstMillis) return next - now - burstMillis;
+
+        fullAt.put(key, next);
+        count(key, 1);
+
+        return 0;
+    }
+
+    /**
+     * Give back the token, taken for given key
+     *
+     * @param key key
+     */
+    public synchronized void release(String key) {
+        Long current = fullAt.get(key);
+
+        // Already refilled or forgotten
+        if (current == null) return;
+
+        set(key, current - refillMillis, clock.getAsLong());
+        count(key, -1);
+    }
+
+    /**
+     * Apply tokens taken (or given back, if negative) on another node
+     *
+     * @param key    key
+     * @param tokens amount of tokens
+     */
+    public synchronized void apply(String key, long tokens) {
+        long now = clock.getAsLong();
+        Long current = fullAt.get(key);
+
+        if (current == null) {
+            if (tokens <= 0) return;
+            current = now;
+        }
+
+        long next = tokens > 0
+                ? Math.max(current, now) + tokens * refillMillis
+                : current + tokens * refillMillis;
+
+        // Remote attempts are not limited by us, but must not lock the key for longer than a full refill
+        set(key, Math.min(next, now + burstMillis), now);
+    }
+
+    /**
+     * Take all the tokens counted locally since the previous call
+     *
+     * @return tokens by key, only non-zero values
+     */
+    public synchronized Map<String, Long> drainPending() {
+        Map<String, Long> result = new HashMap<>(pending);
+        pending.clear();
+
+        result.values().removeIf(tokens -> tokens == 0);
+
+        return result;
+    }
+
+    /**
+     * @return amount of remembered keys
+     */
+    public synchronized int size() {
+        return fullAt.size();
+    }
+
+    private void set(String key, long next, long now) {
+        if (next > now) {
+            fullAt.put(key, next);
+        } else {
+            fullAt.remove(key);
+        }
+    }
+
+    private void count(String key, long tokens) {
+        // Pending tokens are bounded the same way as buckets, those beyond are only limited locally
+        if (pending.size() >= maxKeys && !pending.containsKey(key)) return;
+
+        pending.merge(key, tokens, Long::sum);
+    }
+
+    /**
+     * Forget a few refilled buckets from the least recently used side, so that the map does not stay full of them
+     *
+     * @param now current moment
+     */
+    private void forgetRefilled(long now) {
+        Iterator<Long> iterator = fullAt.values().iterator();
+
+        for (int i = 0; i < 2 && iterator.hasNext(); i++) {
+            if (iterator.next() > now) return;
+            iterator.remove();
+        }
+    }
+}
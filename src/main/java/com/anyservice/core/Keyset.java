@@ -0,0 +1,65 @@
+package com.anyservice.core;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position in a list ordered by date of creation and identifier - the last seen pair of them
+ * <p>
+ * Is given to clients as an opaque continuation token
+ */
+public class Keyset {
+
+    private static final String SEPARATOR = "|";
+
+    private final OffsetDateTime dtCreate;
+    private final UUID uuid;
+
+    public Keyset(OffsetDateTime dtCreate, UUID uuid) {
+        this.dtCreate = dtCreate;
+        this.uuid = uuid;
+    }
+
+    public OffsetDateTime getDtCreate() {
+        return dtCreate;
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    /**
+     * Build continuation token from this position
+     *
+     * @return opaque token
+     */
+    public String encode() {
+        String raw = dtCreate.toInstant() + SEPARATOR + uuid;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Restore position from continuation token
+     *
+     * @param token token, made by {@link #encode()}
+     * @return position
+     * @throws IllegalArgumentException if token is malformed
+     */
+    public static Keyset decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+
+            OffsetDateTime dtCreate = Instant.parse(raw.substring(0, separator)).atOffset(ZoneOffset.UTC);
+            UUID uuid = UUID.fromString(raw.substring(separator + 1));
+
+            return new Keyset(dtCreate, uuid);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("keyset.continuation.invalid", e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.anyservice.core;
+
+import com.anyservice.dto.api.KeysetPage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Utilities for pages, ordered by date of creation and identifier
+ */
+public class KeysetPagination {
+
+    /**
+     * Choose size of the page
+     *
+     * @param requested    size requested by client OR null
+     * @param defaultLimit size used, when client did not request any
+     * @param maxLimit     maximal allowed size
+     * @return size of the page
+     * @throws IllegalArgumentException if requested size is not positive
+     */
+    public static int resolveLimit(Integer requested, int defaultLimit, int maxLimit) {
+        if (requested == null) return Math.min(defaultLimit, maxLimit);
+
+        if (requested < 1) throw new IllegalArgumentException("keyset.limit.invalid");
+
+        return Math.min(requested, maxLimit);
+    }
+
+    /**
+     * Build a page from the rows, selected with one extra row, that tells whether the next page exists
+     *
+     * @param rows      selected rows, not more than limit + 1
+     * @param limit     size of the page
+     * @param converter conversion of a row into the page element
+     * @param keyset    position of a row
+     * @param <E>       type of rows
+     * @param <T>       type of page elements
+     * @return page
+     */
+    public static <E, T> KeysetPage<T> toPage(List<E> rows, int limit,
+                                              Function<E, T> converter, Function<E, Keyset> keyset) {
+        boolean hasNext = rows.size() > limit;
+        List<E> pageRows = hasNext ? rows.subList(0, limit) : rows;
+
+        List<T> content = new ArrayList<>(pageRows.size());
+        for (E row : pageRows) {
+            content.add(converter.apply(row));
+        }
+
+        String continuation = hasNext ? keyset.apply(pageRows.get(pageRows.size() - 1)).encode() : null;
+
+        return new KeysetPage<>(content, continuation);
+    }
+}
@@ -0,0 +1,259 @@
+package com.anyservice.core;
+
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed amount of long-lived SMTP connections, those are reused for sending of many messages
+ * <p>
+ * Connection is opened lazily and is reopened after the configured amount of messages,
+ * so that a single connection does not hit limits of a mail server.
+ * Connections, those were not used for a while, are closed by {@link #evictIdle()}.
+ * The most recently used connection is taken first, so that the rest of them can become idle and be closed
+ */
+public class SmtpConnectionPool implements AutoCloseable {
+
+    private final Session session;
+    private final String protocol;
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
+
+    private final int maxMessagesPerConnection;
+    private final long idleMillis;
+    private final long borrowTimeoutMillis;
+
+    private final LinkedBlockingDeque<Connection> connections;
+
+    private final AtomicInteger open = new AtomicInteger();
+    private final LongAdder opened = new LongAdder();
+
+    private volatile boolean closed;
+
+    public SmtpConnectionPool(Session session, String protocol, String host, int port, String username,
+                              String password, int size, int maxMessagesPerConnection, long idleMillis,
+                              long borrowTimeoutMillis) {
+        this.session = session;
+        this.protocol = protocol;
+        this.host = host;
+        this.port = port;
+        // Empty values mean no authentication
+        this.username = username == null || username.isEmpty() ? null : username;
+        this.password = password == null || password.isEmpty() ? null : password;
+        this.maxMessagesPerConnection = maxMessagesPerConnection;
+        this.idleMillis = idleMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+
+        this.connections = new LinkedBlockingDeque<>(size);
+        for (int i = 0; i < size; i++) {
+            connections.offer(new Connection());
+        }
+    }
+
+    /**
+     * Send message through one of the pooled connections
+     * <p>
+     * Waits for a free connection, if all of them are busy
+     *
+     * @param message message to send
+     * @throws MessagingException if there is no free connection in time OR message cannot be sent
+     */
+    public void send(MimeMessage message) throws MessagingException {
+        if (message.getSentDate() == null) message.setSentDate(new Date());
+        message.saveChanges();
+
+        Connection connection = borrow();
+
+        try {
+            connection.send(message);
+        } finally {
+            release(connection);
+        }
+    }
+
+    /**
+     * Close connections, those were not used longer than configured period
+     * <p>
+     * Only the tail of the pool is taken, up to the first connection that is still in use,
+     * and connections are put back before they are closed, so senders never wait for a network round trip
+     */
+    public void evictIdle() {
+        List<Connection> taken = new ArrayList<>();
+        List<Transport> idle = new ArrayList<>();
+
+        long now = System.currentTimeMillis();
+
+        // The least recently used connections are at the end, never opened ones are the last
+        for (int i = connections.size(); i > 0; i--) {
+            Connection connection = connections.pollLast();
+            if (connection == null) break;
+
+            if (connection.isOpen() && !connection.isIdle(now)) {
+                connections.offerLast(connection);
+                break;
+            }
+
+            if (connection.isOpen()) idle.add(connection.detach());
+            taken.add(connection);
+        }
+
+        // Put them back in the same order
+        for (int i = taken.size() - 1; i >= 0; i--) {
+            connections.offerLast(taken.get(i));
+        }
+
+        for (Transport transport : idle) {
+            closeQuietly(transport);
+        }
+    }
+
+    /**
+     * @return amount of currently open connections
+     */
+    public int getOpen() {
+        return open.get();
+    }
+
+    /**
+     * @return amount of connections, opened since creation of the pool
+     */
+    public long getOpened() {
+        return opened.sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+
+        // Borrowed connections are closed, when they are released
+        Connection connection;
+        while ((connection = connections.poll()) != null) {
+            connection.close();
+        }
+    }
+
+    private Connection borrow() throws MessagingException {
+        if (closed) throw new MessagingException("SMTP connection pool is closed");
+
+        Connection connection;
+
+        try {
+            connection = connections.pollFirst(borrowTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted while waiting for SMTP connection", e);
+        }
+
+        if (connection == null) {
+            throw new MessagingException("No free SMTP connection in " + borrowTimeoutMillis + " ms");
+        }
+
+        return connection;
+    }
+
+    private void release(Connection connection) {
+        if (closed) connection.close();
+
+        connections.offerFirst(connection);
+    }
+
+    /**
+     * Single connection, that is used by one thread at a time
+     */
+    private class Connection {
+        private Transport transport;
+        private int sent;
+        private long lastUsed;
+
+        private void send(MimeMessage message) throws MessagingException {
+            if (transport != null && (sent >= maxMessagesPerConnection || isIdle(System.currentTimeMillis()))) {
+                close();
+            }
+
+            boolean reused = transport != null;
+
+            if (!reused) connect();
+
+            try {
+                transport.sendMessage(message, message.getAllRecipients());
+            } catch (SendFailedException e) {
+                // Message is rejected, but the connection is still fine
+                throw e;
+            } catch (MessagingException e) {
+                close();
+
+                // Server could close the connection on its own side, so reused one is given the second chance
+                if (!reused) throw e;
+
+                connect();
+
+                try {
+                    transport.sendMessage(message, message.getAllRecipients());
+                } catch (MessagingException retryException) {
+                    close();
+                    throw retryException;
+                }
+            }
+
+            sent++;
+            lastUsed = System.currentTimeMillis();
+        }
+
+        private boolean isOpen() {
+            return transport != null;
+        }
+
+        private boolean isIdle(long now) {
+            return transport != null && now - lastUsed > idleMillis;
+        }
+
+        private void connect() throws MessagingException {
+            Transport newTransport = session.getTransport(protocol);
+            newTransport.connect(host, port, username, password);
+
+            transport = newTransport;
+            sent = 0;
+            lastUsed = System.currentTimeMillis();
+
+            open.incrementAndGet();
+            opened.increment();
+        }
+
+        private void close() {
+            if (transport != null) closeQuietly(detach());
+        }
+
+        /**
+         * Forget the open transport, that must be closed by the caller
+         *
+         * @return transport of the connection
+         */
+        private Transport detach() {
+            Transport detached = transport;
+
+            transport = null;
+            open.decrementAndGet();
+
+            return detached;
+        }
+    }
+
+    private static void closeQuietly(Transport transport) {
+        try {
+            transport.close();
+        } catch (MessagingException ignored) {
+            // Connection is dropped anyway
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.anyservice.core;
+
+import org.springframework.cache.Cache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache with a small node-local tier (L1) in front of a shared one (L2)
+ * <p>
+ * Values are read from L1 first, and only absent ones are taken from L2 and remembered in L1.
+ * Writes go directly to L2 and drop the local copy.
+ * Copies on other nodes are dropped through {@link #invalidate(Object)} by listeners of L2,
+ * and expire by themselves anyway, if an invalidation is lost
+ * <p>
+ * A value, read from L2 while any local copy was dropped, is not remembered in L1,
+ * since it may be older than the change, that caused the drop
+ */
+public class TwoTierCache implements Cache {
+
+    private final Cache remote;
+    private final ExpiringLruCache<Object, ValueWrapper> local;
+    private final long localTtlMillis;
+
+    /**
+     * Incremented on every drop of local copies
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder remoteHits = new LongAdder();
+    private final LongAdder remoteMisses = new LongAdder();
+
+    public TwoTierCache(Cache remote, int localSize, long localTtlMillis) {
+        this.remote = remote;
+        this.local = new ExpiringLruCache<>(localSize);
+        this.localTtlMillis = localTtlMillis;
+    }
+
+    @Override
+    public String getName() {
+        return remote.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remote.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        ValueWrapper value = local.get(key);
+        if (value != null) return value;
+
+        long generationBefore = generation.get();
+        value = remote.get(key);
+
+        if (value == null) {
+            // Absence is not remembered, the value could be put on another node any moment
+            remoteMisses.increment();
+            return null;
+        }
+
+        remoteHits.increment();
+
+        // Otherwise local copies were dropped while the value was read, and it may be already stale
+        if (generation.get() == generationBefore) {
+            local.put(key, value, System.currentTimeMillis() + localTtlMillis);
+
+            // An invalidation could arrive between the check and the put, then the copy is taken back
+            if (generation.get() != generationBefore) local.remove(key);
+        }
+
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper value = get(key);
+        Object object = value != null ? value.get() : null;
+
+        if (object != null && type != null && !type.isInstance(object)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + object);
+        }
+
+        return (T) object;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper value = get(key);
+        if (value != null) return (T) value.get();
+
+        // Loading is synchronized by L2
+        T loaded = remote.get(key, valueLoader);
+        drop(key);
+
+        return loaded;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        remote.put(key, value);
+        drop(key);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = remote.putIfAbsent(key, value);
+        drop(key);
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        remote.evict(key);
+        drop(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        boolean present = remote.evictIfPresent(key);
+        drop(key);
+        return present;
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        dropAll();
+    }
+
+    /**
+     * Drop the local copy of a value, changed on another node
+     *
+     * @param key key
+     */
+    public void invalidate(Object key) {
+        drop(key);
+    }
+
+    /**
+     * Drop all the local copies
+     */
+    public void invalidateAll() {
+        dropAll();
+    }
+
+    private void drop(Object key) {
+        generation.incrementAndGet();
+        local.remove(key);
+    }
+
+    private void dropAll() {
+        generation.incrementAndGet();
+        local.clear();
+    }
+
+    public long localHits() {
+        return local.hits();
+    }
+
+    public long localMisses() {
+        return local.misses();
+    }
+
+    public long remoteHits() {
+        return remoteHits.sum();
+    }
+
+    public long remoteMisses() {
+        return remoteMisses.sum();
+    }
+
+    public int localSize() {
+        return local.size();
+    }
+}
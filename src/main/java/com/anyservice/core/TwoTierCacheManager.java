@@ -0,0 +1,163 @@
+package com.anyservice.core;
+
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.IMap;
+import com.hazelcast.core.MapEvent;
+import com.hazelcast.map.listener.EntryEvictedListener;
+import com.hazelcast.map.listener.EntryExpiredListener;
+import com.hazelcast.map.listener.EntryRemovedListener;
+import com.hazelcast.map.listener.EntryUpdatedListener;
+import com.hazelcast.map.listener.MapClearedListener;
+import com.hazelcast.map.listener.MapEvictedListener;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * {@link CacheManager}, that puts node-local tier in front of every cache of another manager
+ * <p>
+ * Local copies are invalidated by entry listeners of Hazelcast maps, those back the caches.
+ * Hits and misses of both tiers are exposed as metrics, tagged by the name of a cache
+ */
+public class TwoTierCacheManager implements CacheManager {
+
+    private final CacheManager remote;
+    private final Function<String, LocalSettings> settings;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Cache> caches = new ConcurrentHashMap<>();
+
+    public TwoTierCacheManager(CacheManager remote, Function<String, LocalSettings> settings,
+                               MeterRegistry meterRegistry) {
+        this.remote = remote;
+        this.settings = settings;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        Cache cache = caches.get(name);
+        if (cache != null) return cache;
+
+        Cache remoteCache = remote.getCache(name);
+        if (remoteCache == null) return null;
+
+        // Listener and metrics must be registered once
+        return caches.computeIfAbsent(name, n -> decorate(remoteCache));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return remote.getCacheNames();
+    }
+
+    private Cache decorate(Cache remoteCache) {
+        LocalSettings local = settings.apply(remoteCache.getName());
+
+        // Local tier is disabled for this cache
+        if (local.size <= 0 || local.ttlMillis <= 0) return remoteCache;
+
+        TwoTierCache cache = new TwoTierCache(remoteCache, local.size, local.ttlMillis);
+
+        if (remoteCache.getNativeCache() instanceof IMap) {
+            // Values are not needed, key is enough to drop a local copy
+            ((IMap<?, ?>) remoteCache.getNativeCache()).addEntryListener(new InvalidationListener(cache), false);
+        }
+
+        registerMetrics(cache);
+
+        return cache;
+    }
+
+    private void registerMetrics(TwoTierCache cache) {
+        registerCounters(cache, "local", TwoTierCache::localHits, TwoTierCache::localMisses);
+        registerCounters(cache, "remote", TwoTierCache::remoteHits, TwoTierCache::remoteMisses);
+
+        Gauge.builder("cache.local.size", cache, TwoTierCache::localSize)
+                .tag("cache", cache.getName())
+                .register(meterRegistry);
+    }
+
+    private void registerCounters(TwoTierCache cache, String tier,
+                                  ToDoubleFunction<TwoTierCache> hits, ToDoubleFunction<TwoTierCache> misses) {
+        FunctionCounter.builder("cache.tier.gets", cache, hits)
+                .tags("cache", cache.getName(), "tier", tier, "result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.tier.gets", cache, misses)
+                .tags("cache", cache.getName(), "tier", tier, "result", "miss")
+                .register(meterRegistry);
+
+        Gauge.builder("cache.tier.hit.ratio", cache, c -> {
+            double h = hits.applyAsDouble(c);
+            double total = h + misses.applyAsDouble(c);
+            return total == 0 ? 0 : h / total;
+        })
+                .tags("cache", cache.getName(), "tier", tier)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Size and time to live of the local tier of a cache
+     */
+    public static class LocalSettings {
+        private final int size;
+        private final long ttlMillis;
+
+        public LocalSettings(int size, long ttlMillis) {
+            this.size = size;
+            this.ttlMillis = ttlMillis;
+        }
+    }
+
+    /**
+     * Drops local copies of entries, changed on any node
+     */
+    private static class InvalidationListener implements EntryUpdatedListener<Object, Object>,
+            EntryRemovedListener<Object, Object>, EntryEvictedListener<Object, Object>,
+            EntryExpiredListener<Object, Object>, MapClearedListener, MapEvictedListener {
+
+        private final TwoTierCache cache;
+
+        private InvalidationListener(TwoTierCache cache) {
+            this.cache = cache;
+        }
+
+        @Override
+        public void entryUpdated(EntryEvent<Object, Object> event) {
+            cache.invalidate(event.getKey());
+        }
+
+        @Override
+        public void entryRemoved(EntryEvent<Object, Object> event) {
+            cache.invalidate(event.getKey());
+        }
+
+        @Override
+        public void entryEvicted(EntryEvent<Object, Object> event) {
+            cache.invalidate(event.getKey());
+        }
+
+        @Override
+        public void entryExpired(EntryEvent<Object, Object> event) {
+            cache.invalidate(event.getKey());
+        }
+
+        @Override
+        public void mapCleared(MapEvent event) {
+            cache.invalidateAll();
+        }
+
+        @Override
+        public void mapEvicted(MapEvent event) {
+            cache.invalidateAll();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.anyservice.core;
+
+import org.springframework.context.support.ResourceBundleMessageSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ResourceBundle;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Message source, that counts loads of its bundles
+ * <p>
+ * Bundles are loaded for the first time and then again only when their files are changed,
+ * so anything derived from messages stays actual while the version is the same
+ */
+public class VersionedMessageSource extends ResourceBundleMessageSource {
+
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * @return number, that changes every time any bundle is loaded
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    @Override
+    protected ResourceBundle loadBundle(Reader reader) throws IOException {
+        ResourceBundle bundle = super.loadBundle(reader);
+        version.incrementAndGet();
+        return bundle;
+    }
+
+    @Override
+    protected ResourceBundle loadBundle(InputStream inputStream) throws IOException {
+        ResourceBundle bundle = super.loadBundle(inputStream);
+        version.incrementAndGet();
+        return bundle;
+    }
+}
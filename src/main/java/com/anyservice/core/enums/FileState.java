@@ -1,21 +1,13 @@
 package com.anyservice.core.enums;
 
 /**
- * Added for future extensions of functionality.
+ * State of file, uploaded directly into storage through a presigned URL.
  * <p>
- * Not used for now, because there can be a situation,
- * when file is already loaded on file storage,
- * and asynchronously some logic tries to update its state in Database
- * (from LOADING -> to SAVED)
- * but in Database it's not exist at the time of this async update
- * because Transaction is not committed yet.
+ * Description of such file is committed as LOADING before the URL is given to the client,
+ * and becomes SAVED only when the client reports, that the upload is done, and the object is found in storage.
+ * So the state is never updated for a description, that does not exist yet.
  * <p>
- * So that we get an error -> file with such identifier does not exist
- * <p>
- * Described situation may occur in case of:
- * EITHER very small file
- * OR very fast storage
- * OR very slow database
+ * Files, uploaded through the application itself, have no state
  */
 public enum FileState {
     LOADING,
@@ -0,0 +1,14 @@
+package com.anyservice.core.enums;
+
+/**
+ * States of an email in outbox
+ */
+public enum MailState {
+    PENDING,
+    SENT,
+
+    /**
+     * All the attempts are spent, email is kept for investigation only
+     */
+    DEAD
+}
@@ -0,0 +1,8 @@
+package com.anyservice.core.enums;
+
+/**
+ * Kinds of emails, that are sent through outbox
+ */
+public enum MailType {
+    VERIFICATION
+}
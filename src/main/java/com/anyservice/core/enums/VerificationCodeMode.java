@@ -0,0 +1,17 @@
+package com.anyservice.core.enums;
+
+/**
+ * Ways to keep verification codes
+ */
+public enum VerificationCodeMode {
+
+    /**
+     * Code is a self-contained signed token, nothing is stored on registration
+     */
+    HMAC,
+
+    /**
+     * Random code is stored in a replicated map until it's used or expires
+     */
+    MAP
+}
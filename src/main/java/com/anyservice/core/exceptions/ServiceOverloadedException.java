@@ -0,0 +1,25 @@
+package com.anyservice.core.exceptions;
+
+/**
+ * Thrown when a bounded resource of the service is saturated and the request cannot be accepted right now
+ * <p>
+ * Mapped into 503 (Service Unavailable) with Retry-After header
+ */
+public class ServiceOverloadedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public ServiceOverloadedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public ServiceOverloadedException(String message, long retryAfterSeconds, Throwable cause) {
+        super(message, cause);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
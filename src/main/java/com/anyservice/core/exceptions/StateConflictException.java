@@ -0,0 +1,13 @@
+package com.anyservice.core.exceptions;
+
+/**
+ * Thrown when an object exists, but its current state does not allow the operation
+ * <p>
+ * Mapped into 409 (Conflict)
+ */
+public class StateConflictException extends RuntimeException {
+
+    public StateConflictException(String message) {
+        super(message);
+    }
+}
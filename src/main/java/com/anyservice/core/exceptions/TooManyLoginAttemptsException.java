@@ -0,0 +1,20 @@
+package com.anyservice.core.exceptions;
+
+/**
+ * Thrown when there were too many login attempts for a user name or from a client address
+ * <p>
+ * Mapped into 429 (Too Many Requests) with Retry-After header
+ */
+public class TooManyLoginAttemptsException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public TooManyLoginAttemptsException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,39 @@
+package com.anyservice.core.serialization;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.StreamSerializer;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Writes {@link UUID} as two longs instead of default java serialization with class descriptor
+ */
+public class UuidStreamSerializer implements StreamSerializer<UUID> {
+
+    /**
+     * Must be unique among custom serializers and positive
+     */
+    public static final int TYPE_ID = 1;
+
+    @Override
+    public void write(ObjectDataOutput out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    @Override
+    public UUID read(ObjectDataInput in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    @Override
+    public int getTypeId() {
+        return TYPE_ID;
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
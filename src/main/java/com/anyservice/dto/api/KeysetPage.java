@@ -0,0 +1,26 @@
+package com.anyservice.dto.api;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+
+import java.util.List;
+
+/**
+ * Page of objects, ordered by date of creation and identifier
+ *
+ * @param <T> type of objects
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@SuperBuilder
+public class KeysetPage<T> {
+    private List<T> content;
+
+    /**
+     * Opaque token to request the next page OR null if this page is the last one
+     */
+    private String continuation;
+}
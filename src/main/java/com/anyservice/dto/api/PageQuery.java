@@ -0,0 +1,31 @@
+package com.anyservice.dto.api;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+
+/**
+ * Request of a page, ordered by date of creation and identifier
+ * <p>
+ * Filters, that are not applicable to the requested objects, are ignored
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@SuperBuilder
+public class PageQuery {
+
+    /**
+     * Token from the previous page OR null for the first one
+     */
+    private String continuation;
+
+    /**
+     * Size of the page OR null for the default one
+     */
+    private Integer limit;
+
+    private String state;
+    private String role;
+}
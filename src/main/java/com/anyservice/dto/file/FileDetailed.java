@@ -21,4 +21,9 @@ public class FileDetailed extends FileBrief {
     @JsonIgnore
     private InputStream inputStream;
     private FileType fileType;
+
+    /**
+     * SHA-256 of content in hex, if it is stored by content
+     */
+    private String hash;
 }
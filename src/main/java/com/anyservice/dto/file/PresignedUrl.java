@@ -0,0 +1,28 @@
+package com.anyservice.dto.file;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Short-lived URL, through that client loads content of file directly from storage OR into it
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@SuperBuilder
+public class PresignedUrl {
+    private UUID uuid;
+
+    /**
+     * HTTP method, that must be used with the URL
+     */
+    private String method;
+
+    private String url;
+    private OffsetDateTime expiresAt;
+}
@@ -0,0 +1,42 @@
+package com.anyservice.entity.file;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.OffsetDateTime;
+
+/**
+ * Content of files, stored once for every distinct content and shared by all the files with it
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity
+@Table(name = "file_blob")
+public class FileBlobEntity {
+
+    /**
+     * SHA-256 of content in hex
+     */
+    @Id
+    private String hash;
+
+    @Column(nullable = false)
+    private Long size;
+
+    /**
+     * Amount of file descriptions, those refer to the content
+     */
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount;
+
+    @Column(name = "dt_create", nullable = false)
+    private OffsetDateTime dtCreate;
+}
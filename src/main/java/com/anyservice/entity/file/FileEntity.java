@@ -6,9 +6,12 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.experimental.SuperBuilder;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.DynamicInsert;
 import org.hibernate.annotations.DynamicUpdate;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Table;
@@ -21,6 +24,8 @@ import java.time.OffsetDateTime;
 @Entity
 @SuperBuilder
 @Table(name = "file_description")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE, region = "files")
 @DynamicUpdate
 @DynamicInsert
 public class FileEntity extends EntityWithUUID {
@@ -37,4 +42,9 @@ public class FileEntity extends EntityWithUUID {
 
     @Column(nullable = false)
     private String type;
+
+    /**
+     * SHA-256 of content, stored in {@link FileBlobEntity} OR null if content is stored by identifier of file
+     */
+    private String hash;
 }
@@ -0,0 +1,59 @@
+package com.anyservice.entity.mail;
+
+import com.anyservice.entity.api.EntityWithUUID;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+import org.hibernate.annotations.DynamicInsert;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.Type;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+import java.time.OffsetDateTime;
+import java.util.Map;
+
+@Data
+@EqualsAndHashCode(callSuper = true)
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@SuperBuilder
+@Table(name = "mail_outbox")
+@DynamicUpdate
+@DynamicInsert
+public class MailOutboxEntity extends EntityWithUUID {
+
+    @Column(name = "dt_create", nullable = false)
+    private OffsetDateTime dtCreate;
+
+    @Column(nullable = false)
+    private String type;
+
+    @Column(nullable = false)
+    private String recipient;
+
+    private String locale;
+
+    @Type(type = "jsonb")
+    @Column(columnDefinition = "jsonb", nullable = false)
+    private Map<String, String> payload;
+
+    @Column(nullable = false)
+    private String state;
+
+    @Column(nullable = false)
+    private Integer attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private OffsetDateTime nextAttemptAt;
+
+    @Column(name = "last_error")
+    private String lastError;
+
+    @Column(name = "dt_sent")
+    private OffsetDateTime dtSent;
+}
@@ -7,6 +7,8 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.experimental.SuperBuilder;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.DynamicInsert;
 import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.Type;
@@ -26,6 +28,8 @@ import static javax.persistence.FetchType.LAZY;
 @Entity
 @SuperBuilder
 @Table(name = "users")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "users")
 @DynamicUpdate
 @DynamicInsert
 public class UserEntity extends EntityWithUUID {
@@ -83,6 +87,7 @@ public class UserEntity extends EntityWithUUID {
     private FileEntity photo;
 
     @ManyToMany(fetch = LAZY, cascade = REMOVE)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "users.documents")
     @JoinTable(name = "users_files",
             joinColumns = @JoinColumn(name = "user_uuid"),
             inverseJoinColumns = @JoinColumn(name = "file_uuid")
@@ -90,6 +95,7 @@ public class UserEntity extends EntityWithUUID {
     private List<FileEntity> documents;
 
     @ManyToMany(fetch = LAZY)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "users.countries")
     @JoinTable(name = "users_countries",
             joinColumns = @JoinColumn(name = "user_uuid"),
             inverseJoinColumns = @JoinColumn(name = "country_uuid")
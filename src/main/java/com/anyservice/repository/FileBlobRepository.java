@@ -0,0 +1,32 @@
+package com.anyservice.repository;
+
+import com.anyservice.entity.file.FileBlobEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface FileBlobRepository extends JpaRepository<FileBlobEntity, String>, FileBlobRepositoryCustom {
+
+    /**
+     * Remove a reference to content, row of the content stays locked until the end of transaction
+     *
+     * @param hash SHA-256 of content
+     * @return amount of updated rows - 0 if content is not known
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update FileBlobEntity b set b.refCount = b.refCount - 1 where b.hash = :hash")
+    int release(@Param("hash") String hash);
+
+    /**
+     * Forget content, only if nothing refers to it anymore
+     *
+     * @param hash SHA-256 of content
+     * @return amount of deleted rows - 1 if content must be removed from storage
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("delete from FileBlobEntity b where b.hash = :hash and b.refCount <= 0")
+    int deleteUnreferenced(@Param("hash") String hash);
+}
@@ -0,0 +1,19 @@
+package com.anyservice.repository;
+
+/**
+ * Queries of file contents, those cannot be expressed with Spring Data methods
+ */
+public interface FileBlobRepositoryCustom {
+
+    /**
+     * Add a reference to content, the content is registered if it is not known yet
+     * <p>
+     * Row of the content stays locked until the end of transaction,
+     * so concurrent acquisitions of the same new content wait, until it is stored or rolled back
+     *
+     * @param hash SHA-256 of content
+     * @param size size of content in bytes
+     * @return amount of references after acquisition - 1 means, that content is new and must be stored
+     */
+    int acquire(String hash, long size);
+}
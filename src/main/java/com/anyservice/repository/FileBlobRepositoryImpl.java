@@ -0,0 +1,34 @@
+package com.anyservice.repository;
+
+import com.anyservice.entity.file.FileBlobEntity;
+import org.hibernate.query.NativeQuery;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.OffsetDateTime;
+
+/**
+ * Implementation of {@link FileBlobRepositoryCustom}, picked up by Spring Data by its name
+ */
+public class FileBlobRepositoryImpl implements FileBlobRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int acquire(String hash, long size) {
+        // Query touches only contents, otherwise hibernate would evict all the regions of second level cache
+        Object refCount = entityManager.createNativeQuery("insert into file_blob (hash, size, ref_count, dt_create) " +
+                "values (:hash, :size, 1, :dtCreate) " +
+                "on conflict (hash) do update set ref_count = file_blob.ref_count + 1 " +
+                "returning ref_count")
+                .setParameter("hash", hash)
+                .setParameter("size", size)
+                .setParameter("dtCreate", OffsetDateTime.now())
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(FileBlobEntity.class)
+                .getSingleResult();
+
+        return ((Number) refCount).intValue();
+    }
+}
@@ -1,11 +1,116 @@
 package com.anyservice.repository;
 
 import com.anyservice.entity.file.FileEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.*;
 
 @Repository
-public interface FileRepository extends JpaRepository<FileEntity, UUID> {
+public interface FileRepository extends JpaRepository<FileEntity, UUID>, FileRepositoryCustom {
+
+    /**
+     * Find all files, attached to a user as a profile photo or as documents
+     *
+     * @param userUuid user identifier
+     * @return attached files
+     */
+    @Query("select f from FileEntity f " +
+            "where f in (select d from UserEntity u join u.documents d where u.uuid = :userUuid) " +
+            "or f = (select u.photo from UserEntity u where u.uuid = :userUuid)")
+    List<FileEntity> findAllAttachedToUser(@Param("userUuid") UUID userUuid);
+
+    /**
+     * Delete file description, only if it has the expected version
+     *
+     * @param uuid    file identifier
+     * @param version expected version (date of creation), in milliseconds as it is given to clients
+     * @return amount of deleted rows - 0 if file does not exist or has another version
+     */
+    default int deleteByIdAndVersion(UUID uuid, Date version) {
+        OffsetDateTime versionFrom = version.toInstant().atOffset(ZoneOffset.UTC);
+        return deleteByIdAndVersion(uuid, versionFrom, versionFrom.plus(1, ChronoUnit.MILLIS));
+    }
+
+    /**
+     * Find file description and lock its row until the end of transaction
+     *
+     * @param uuid file identifier
+     * @return locked file description
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select f from FileEntity f where f.uuid = :uuid")
+    Optional<FileEntity> findForUpdate(@Param("uuid") UUID uuid);
+
+    /**
+     * Find identifiers of files in the state, those were created before the date
+     *
+     * @param state    state of files
+     * @param dtCreate date of creation
+     * @return identifiers of found files
+     */
+    @Query("select f.uuid from FileEntity f where f.state = :state and f.dtCreate < :dtCreate")
+    List<UUID> findIdsByStateCreatedBefore(@Param("state") String state, @Param("dtCreate") OffsetDateTime dtCreate);
+
+    /**
+     * Find the first page of files, ordered by date of creation and identifier
+     * <p>
+     * Files, those are still loading, are never listed
+     *
+     * @param state    state of files OR null for any
+     * @param pageable size of the page
+     * @return found files
+     */
+    @Query("select f from FileEntity f " +
+            "where (f.state is null or f.state <> 'LOADING') and (:state is null or f.state = :state) " +
+            "order by f.dtCreate, f.uuid")
+    List<FileEntity> findFirstPage(@Param("state") String state, Pageable pageable);
+
+    /**
+     * Find the page of files, that follows given position, ordered by date of creation and identifier
+     *
+     * @param dtCreate date of creation of the last seen file
+     * @param uuid     identifier of the last seen file
+     * @param state    state of files OR null for any
+     * @param pageable size of the page
+     * @return found files
+     */
+    @Query("select f from FileEntity f " +
+            "where f.dtCreate >= :dtCreate and (f.dtCreate > :dtCreate or f.uuid > :uuid) " +
+            "and (f.state is null or f.state <> 'LOADING') and (:state is null or f.state = :state) " +
+            "order by f.dtCreate, f.uuid")
+    List<FileEntity> findNextPage(@Param("dtCreate") OffsetDateTime dtCreate, @Param("uuid") UUID uuid,
+                                  @Param("state") String state, Pageable pageable);
+
+    /**
+     * Stream all files, except loading ones, ordered by date of creation and identifier, through a server-side cursor
+     * <p>
+     * Must be consumed and closed inside of a transaction
+     *
+     * @return stream of all files
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READONLY, value = "true"),
+            @QueryHint(name = HINT_CACHEABLE, value = "false"),
+            @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE")
+    })
+    @Query("select f from FileEntity f where f.state is null or f.state <> 'LOADING' order by f.dtCreate, f.uuid")
+    Stream<FileEntity> streamAll();
 }
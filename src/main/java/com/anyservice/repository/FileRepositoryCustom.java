@@ -0,0 +1,22 @@
+package com.anyservice.repository;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Queries of file descriptions, those cannot be expressed with Spring Data methods
+ */
+public interface FileRepositoryCustom {
+
+    /**
+     * Delete file description, only if its version is in the expected range
+     * <p>
+     * Links from users to the file are removed by the database itself (on delete cascade)
+     *
+     * @param uuid        file identifier
+     * @param versionFrom lower bound of expected version, inclusive
+     * @param versionTo   upper bound of expected version, exclusive
+     * @return amount of deleted rows - 0 if file does not exist or has another version
+     */
+    int deleteByIdAndVersion(UUID uuid, OffsetDateTime versionFrom, OffsetDateTime versionTo);
+}
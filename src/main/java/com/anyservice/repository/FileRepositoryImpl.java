@@ -0,0 +1,80 @@
+package com.anyservice.repository;
+
+import com.anyservice.entity.file.FileEntity;
+import com.anyservice.entity.user.UserEntity;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.PostgresUUIDType;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static com.anyservice.core.TransactionCallbacks.afterCompletion;
+
+/**
+ * Implementation of {@link FileRepositoryCustom}, picked up by Spring Data by its name
+ */
+public class FileRepositoryImpl implements FileRepositoryCustom {
+
+    /**
+     * Query space, that no cached entity has - so that hibernate evicts nothing by itself,
+     * otherwise it would evict the whole region of files across the cluster, only the deleted file is evicted instead
+     */
+    private static final String FILE_ROW = "file_description_row";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int deleteByIdAndVersion(UUID uuid, OffsetDateTime versionFrom, OffsetDateTime versionTo) {
+        entityManager.flush();
+
+        // Documents of these users lose the file together with its description
+        List<UUID> owners = (List<UUID>) createNativeQuery(
+                "select user_uuid from users_files where file_uuid = :uuid", uuid)
+                .addScalar("user_uuid", PostgresUUIDType.INSTANCE)
+                .getResultList();
+
+        int deleted = createNativeQuery("delete from file_description " +
+                "where uuid = :uuid and dt_create >= :versionFrom and dt_create < :versionTo", uuid)
+                .setParameter("versionFrom", versionFrom)
+                .setParameter("versionTo", versionTo)
+                .executeUpdate();
+
+        entityManager.clear();
+        if (deleted > 0) evict(uuid, owners);
+
+        return deleted;
+    }
+
+    private NativeQuery<?> createNativeQuery(String sql, UUID uuid) {
+        return entityManager.createNativeQuery(sql)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace(FILE_ROW)
+                .setParameter("uuid", uuid, PostgresUUIDType.INSTANCE);
+    }
+
+    /**
+     * Evict the file from second level cache right away and once again after the end of transaction,
+     * because it may be loaded back in between, while the deletion is not committed yet
+     *
+     * @param uuid   file identifier
+     * @param owners identifiers of users, whose documents contained the file
+     */
+    private void evict(UUID uuid, List<UUID> owners) {
+        Cache cache = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getCache();
+
+        Runnable eviction = () -> {
+            cache.evictEntityData(FileEntity.class, uuid);
+            owners.forEach(owner -> cache.evictCollectionData(UserEntity.class.getName() + ".documents", owner));
+        };
+
+        eviction.run();
+        afterCompletion(eviction);
+    }
+}
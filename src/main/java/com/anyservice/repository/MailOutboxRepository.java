@@ -0,0 +1,88 @@
+package com.anyservice.repository;
+
+import com.anyservice.entity.mail.MailOutboxEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@Repository
+public interface MailOutboxRepository extends JpaRepository<MailOutboxEntity, UUID> {
+
+    /**
+     * Find pending emails, those are due to be sent, and lock them
+     * <p>
+     * Rows locked by another node are skipped, so that every email is taken by a single node
+     *
+     * @param now   current moment
+     * @param limit maximal amount of emails
+     * @return due emails, the oldest attempts first
+     */
+    @Query(value = "select * from mail_outbox " +
+            "where state = 'PENDING' and next_attempt_at <= :now " +
+            "order by next_attempt_at " +
+            "limit :limit " +
+            "for update skip locked", nativeQuery = true)
+    List<MailOutboxEntity> findDueForUpdate(@Param("now") OffsetDateTime now, @Param("limit") int limit);
+
+    /**
+     * Mark emails as successfully sent
+     * <p>
+     * Payload is replaced, because it is not needed anymore, while it may contain secrets (verification codes)
+     *
+     * @param uuids   identifiers of emails
+     * @param state   new state
+     * @param dtSent  moment of sending
+     * @param payload payload to keep
+     * @return amount of updated rows
+     */
+    @Modifying
+    @Query("update MailOutboxEntity m set m.state = :state, m.dtSent = :dtSent, m.payload = :payload " +
+            "where m.uuid in :uuids")
+    int markSent(@Param("uuids") Collection<UUID> uuids, @Param("state") String state,
+                 @Param("dtSent") OffsetDateTime dtSent, @Param("payload") Map<String, String> payload);
+
+    /**
+     * Save the result of a failed attempt
+     *
+     * @param uuid          identifier of an email
+     * @param state         new state
+     * @param nextAttemptAt moment of the next attempt
+     * @param lastError     reason of the failure
+     * @return amount of updated rows
+     */
+    @Modifying
+    @Query("update MailOutboxEntity m set m.state = :state, m.nextAttemptAt = :nextAttemptAt, " +
+            "m.lastError = :lastError where m.uuid = :uuid")
+    int markFailed(@Param("uuid") UUID uuid, @Param("state") String state,
+                   @Param("nextAttemptAt") OffsetDateTime nextAttemptAt, @Param("lastError") String lastError);
+
+    /**
+     * Find the moment, when the oldest email in given state was created
+     *
+     * @param state state of emails
+     * @return moment of creation OR null if there are no such emails
+     */
+    @Query("select min(m.dtCreate) from MailOutboxEntity m where m.state = :state")
+    OffsetDateTime findOldestDtCreate(@Param("state") String state);
+
+    long countByState(String state);
+
+    /**
+     * Delete sent emails, those are kept long enough
+     *
+     * @param state  state of emails
+     * @param dtSent moment, emails sent before which are deleted
+     * @return amount of deleted rows
+     */
+    @Modifying
+    @Query("delete from MailOutboxEntity m where m.state = :state and m.dtSent < :dtSent")
+    int deleteByStateAndDtSentBefore(@Param("state") String state, @Param("dtSent") OffsetDateTime dtSent);
+}
@@ -1,13 +1,27 @@
 package com.anyservice.repository;
 
 import com.anyservice.entity.user.UserEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.*;
 
 @Repository
-public interface UserRepository extends JpaRepository<UserEntity, UUID> {
+public interface UserRepository extends JpaRepository<UserEntity, UUID>, UserRepositoryCustom {
 
     /**
      * Find first user via given user name
@@ -16,4 +30,116 @@ public interface UserRepository extends JpaRepository<UserEntity, UUID> {
      * @return found user via given user name
      */
     UserEntity findFirstByUserName(String userName);
+
+    /**
+     * Check whether user name is taken, without loading the user
+     *
+     * @param userName given name of a user
+     * @return whether any user has this name
+     */
+    boolean existsByUserName(String userName);
+
+    /**
+     * Check whether user name is taken by anybody else, without loading the user
+     *
+     * @param userName given name of a user
+     * @param uuid     identifier of a user, that is not taken into account
+     * @return whether any other user has this name
+     */
+    boolean existsByUserNameAndUuidNot(String userName, UUID uuid);
+
+    /**
+     * Find name of a user without loading the whole user
+     *
+     * @param uuid user identifier
+     * @return name of a user OR {@link Optional#empty()} if user does not exist
+     */
+    @Query("select u.userName from UserEntity u where u.uuid = :uuid")
+    Optional<String> findUserNameById(@Param("uuid") UUID uuid);
+
+    /**
+     * Stream names of all users through a server-side cursor
+     * <p>
+     * Must be consumed and closed inside of a transaction
+     *
+     * @return stream of all user names
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select u.userName from UserEntity u")
+    Stream<String> streamAllUserNames();
+
+    /**
+     * Move version of a user forward, only if it is still the expected one
+     * <p>
+     * Locks the row until the end of transaction, so that nobody can change it in between
+     *
+     * @param uuid     user identifier
+     * @param version  expected version, in milliseconds as it is given to clients
+     * @param dtUpdate new version
+     * @return amount of updated rows - 0 if user does not exist or has another version
+     */
+    default int updateVersion(UUID uuid, Date version, OffsetDateTime dtUpdate) {
+        OffsetDateTime versionFrom = version.toInstant().atOffset(ZoneOffset.UTC);
+        return updateVersion(uuid, versionFrom, versionFrom.plus(1, ChronoUnit.MILLIS), dtUpdate);
+    }
+
+    /**
+     * Delete user, only if it has the expected version
+     *
+     * @param uuid    user identifier
+     * @param version expected version, in milliseconds as it is given to clients
+     * @return amount of deleted rows - 0 if user does not exist or has another version
+     */
+    default int deleteByIdAndVersion(UUID uuid, Date version) {
+        OffsetDateTime versionFrom = version.toInstant().atOffset(ZoneOffset.UTC);
+        return deleteByIdAndVersion(uuid, versionFrom, versionFrom.plus(1, ChronoUnit.MILLIS));
+    }
+
+    /**
+     * Find the first page of users, ordered by date of creation and identifier
+     *
+     * @param state    state of users OR null for any
+     * @param role     role of users OR null for any
+     * @param pageable size of the page
+     * @return found users
+     */
+    @Query("select u from UserEntity u " +
+            "where (:state is null or u.state = :state) and (:role is null or u.role = :role) " +
+            "order by u.dtCreate, u.uuid")
+    List<UserEntity> findFirstPage(@Param("state") String state, @Param("role") String role, Pageable pageable);
+
+    /**
+     * Find the page of users, that follows given position, ordered by date of creation and identifier
+     * <p>
+     * The redundant condition on date of creation lets the index on (dt_create, uuid) be used as a range
+     *
+     * @param dtCreate date of creation of the last seen user
+     * @param uuid     identifier of the last seen user
+     * @param state    state of users OR null for any
+     * @param role     role of users OR null for any
+     * @param pageable size of the page
+     * @return found users
+     */
+    @Query("select u from UserEntity u " +
+            "where u.dtCreate >= :dtCreate and (u.dtCreate > :dtCreate or u.uuid > :uuid) " +
+            "and (:state is null or u.state = :state) and (:role is null or u.role = :role) " +
+            "order by u.dtCreate, u.uuid")
+    List<UserEntity> findNextPage(@Param("dtCreate") OffsetDateTime dtCreate, @Param("uuid") UUID uuid,
+                                  @Param("state") String state, @Param("role") String role, Pageable pageable);
+
+    /**
+     * Stream all users, ordered by date of creation and identifier, through a server-side cursor
+     * <p>
+     * Must be consumed and closed inside of a transaction
+     *
+     * @return stream of all users
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READONLY, value = "true"),
+            @QueryHint(name = HINT_CACHEABLE, value = "false"),
+            @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE")
+    })
+    @Query("select u from UserEntity u order by u.dtCreate, u.uuid")
+    Stream<UserEntity> streamAll();
 }
@@ -0,0 +1,60 @@
+package com.anyservice.repository;
+
+import com.anyservice.entity.user.UserEntity;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Queries of users, those cannot be expressed with Spring Data methods
+ */
+public interface UserRepositoryCustom {
+
+    /**
+     * Find user together with given lazy associations, the other ones stay not loaded
+     *
+     * @param uuid         user identifier
+     * @param associations names of associations of {@link UserEntity}
+     * @return user OR {@link Optional#empty()} if user does not exist
+     */
+    Optional<UserEntity> findById(UUID uuid, Collection<String> associations);
+
+    /**
+     * Replace password hash of a user, only if it was not changed since it was read
+     * <p>
+     * Does not touch update date, because the password by itself stays the same
+     *
+     * @param uuid    user identifier
+     * @param oldHash hash, that was read before
+     * @param newHash new hash of the same password
+     * @return amount of updated rows
+     */
+    int updatePasswordHash(UUID uuid, String oldHash, String newHash);
+
+    /**
+     * Move version of a user forward, only if it is still in the expected range
+     * <p>
+     * Versions are compared as a range, because database keeps microseconds, while clients get milliseconds
+     *
+     * @param uuid        user identifier
+     * @param versionFrom lower bound of expected version, inclusive
+     * @param versionTo   upper bound of expected version, exclusive
+     * @param dtUpdate    new version
+     * @return amount of updated rows - 0 if user does not exist or has another version
+     */
+    int updateVersion(UUID uuid, OffsetDateTime versionFrom, OffsetDateTime versionTo, OffsetDateTime dtUpdate);
+
+    /**
+     * Delete user, only if its version is in the expected range
+     * <p>
+     * Links to countries and files are removed by the database itself (on delete cascade)
+     *
+     * @param uuid        user identifier
+     * @param versionFrom lower bound of expected version, inclusive
+     * @param versionTo   upper bound of expected version, exclusive
+     * @return amount of deleted rows - 0 if user does not exist or has another version
+     */
+    int deleteByIdAndVersion(UUID uuid, OffsetDateTime versionFrom, OffsetDateTime versionTo);
+}
@@ -0,0 +1,135 @@
+package com.anyservice.repository;
+
+import com.anyservice.entity.user.UserEntity;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.PostgresUUIDType;
+
+import javax.persistence.EntityGraph;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.metamodel.EntityType;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.UUID;
+
+import static com.anyservice.core.TransactionCallbacks.afterCompletion;
+
+/**
+ * Implementation of {@link UserRepositoryCustom}, picked up by Spring Data by its name
+ */
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+    private static final String FETCH_GRAPH = "javax.persistence.fetchgraph";
+
+    /**
+     * Query space, that no cached entity has - so that hibernate evicts nothing by itself,
+     * otherwise it would evict all the regions of users across the cluster, only the changed user is evicted instead
+     */
+    private static final String USER_ROW = "users_row";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<UserEntity> findById(UUID uuid, Collection<String> associations) {
+        EntityGraph<UserEntity> graph = entityManager.createEntityGraph(UserEntity.class);
+        EntityType<UserEntity> type = entityManager.getMetamodel().entity(UserEntity.class);
+
+        boolean collectionFetched = false;
+
+        for (String association : associations) {
+            // Collections are lists (bags) - hibernate cannot join more than one of them,
+            // the rest are loaded by a separate select each, when they are touched
+            if (type.getAttribute(association).isCollection()) {
+                if (collectionFetched) continue;
+                collectionFetched = true;
+            }
+
+            graph.addAttributeNodes(association);
+        }
+
+        return Optional.ofNullable(entityManager.find(UserEntity.class, uuid,
+                Collections.singletonMap(FETCH_GRAPH, graph)));
+    }
+
+    @Override
+    public int updatePasswordHash(UUID uuid, String oldHash, String newHash) {
+        int updated = createNativeQuery("update users set password = :newHash " +
+                "where uuid = :uuid and password = :oldHash", uuid)
+                .setParameter("oldHash", oldHash)
+                .setParameter("newHash", newHash)
+                .executeUpdate();
+
+        evict(uuid, false);
+
+        return updated;
+    }
+
+    @Override
+    public int updateVersion(UUID uuid, OffsetDateTime versionFrom, OffsetDateTime versionTo,
+                             OffsetDateTime dtUpdate) {
+        entityManager.flush();
+
+        int updated = createNativeQuery("update users set dt_update = :dtUpdate " +
+                "where uuid = :uuid and dt_update >= :versionFrom and dt_update < :versionTo", uuid)
+                .setParameter("versionFrom", versionFrom)
+                .setParameter("versionTo", versionTo)
+                .setParameter("dtUpdate", dtUpdate)
+                .executeUpdate();
+
+        entityManager.clear();
+        evict(uuid, false);
+
+        return updated;
+    }
+
+    @Override
+    public int deleteByIdAndVersion(UUID uuid, OffsetDateTime versionFrom, OffsetDateTime versionTo) {
+        entityManager.flush();
+
+        int deleted = createNativeQuery("delete from users " +
+                "where uuid = :uuid and dt_update >= :versionFrom and dt_update < :versionTo", uuid)
+                .setParameter("versionFrom", versionFrom)
+                .setParameter("versionTo", versionTo)
+                .executeUpdate();
+
+        entityManager.clear();
+        evict(uuid, true);
+
+        return deleted;
+    }
+
+    private NativeQuery<?> createNativeQuery(String sql, UUID uuid) {
+        return entityManager.createNativeQuery(sql)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace(USER_ROW)
+                .setParameter("uuid", uuid, PostgresUUIDType.INSTANCE);
+    }
+
+    /**
+     * Evict the user from second level cache right away and once again after the end of transaction,
+     * because it may be loaded back in between, with changes, that are not committed yet
+     *
+     * @param uuid        user identifier
+     * @param collections whether cached collections of the user are evicted as well
+     */
+    private void evict(UUID uuid, boolean collections) {
+        Cache cache = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getCache();
+
+        Runnable eviction = () -> {
+            cache.evictEntityData(UserEntity.class, uuid);
+
+            if (collections) {
+                cache.evictCollectionData(UserEntity.class.getName() + ".documents", uuid);
+                cache.evictCollectionData(UserEntity.class.getName() + ".countries", uuid);
+            }
+        };
+
+        eviction.run();
+        afterCompletion(eviction);
+    }
+}
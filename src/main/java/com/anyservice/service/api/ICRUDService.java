@@ -1,7 +1,10 @@
 package com.anyservice.service.api;
 
 import com.anyservice.dto.api.APrimary;
+import com.anyservice.dto.api.KeysetPage;
+import com.anyservice.dto.api.PageQuery;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -53,11 +56,22 @@ public interface ICRUDService<BRIEF extends APrimary, DETAILED extends APrimary,
 
     /**
      * Find all {@link BRIEF} in database
+     * <p>
+     * Amount of returned objects is limited by a hard cap, use {@link #findPage(PageQuery)} to get all of them
      *
-     * @return {@link java.util.List} of all found {@link BRIEF} in database
+     * @return {@link java.util.List} of the first found {@link BRIEF} in database
      */
     Iterable<BRIEF> findAll();
 
+    /**
+     * Find page of {@link BRIEF} in database, ordered by date of creation and identifier
+     *
+     * @param query size of the page, continuation token from the previous page and filters
+     * @return page of found {@link BRIEF} with continuation token for the next one
+     * @throws IllegalArgumentException if continuation token or size of the page is invalid
+     */
+    KeysetPage<BRIEF> findPage(PageQuery query);
+
     /**
      * Find all {@link BRIEF} in database via given list of identifiers
      *
@@ -66,6 +80,17 @@ public interface ICRUDService<BRIEF extends APrimary, DETAILED extends APrimary,
      */
     Iterable<BRIEF> findAllById(Iterable<ID> idList);
 
+    /**
+     * Find {@link BRIEF} via large list of identifiers, in the order of identifiers
+     * <p>
+     * Duplicates and identifiers of not found objects are skipped
+     *
+     * @param idList list of identifiers
+     * @return {@link java.util.List} of all found {@link BRIEF} in database
+     * @throws IllegalArgumentException if there are too many identifiers
+     */
+    List<BRIEF> findBatch(List<ID> idList);
+
     /**
      * Find overall count of object, those can be represented as {@link BRIEF} or {@link DETAILED}
      *
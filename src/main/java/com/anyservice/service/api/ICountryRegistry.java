@@ -0,0 +1,54 @@
+package com.anyservice.service.api;
+
+import com.anyservice.entity.user.CountryEntity;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Node-local dictionary of countries, loaded once at startup
+ * <p>
+ * Returned instances are shared, so they must never be changed
+ */
+public interface ICountryRegistry {
+
+    /**
+     * @return all the countries, ordered by name
+     */
+    List<CountryEntity> findAll();
+
+    /**
+     * @param uuid country identifier
+     * @return country OR empty if there is no such one
+     */
+    Optional<CountryEntity> findById(UUID uuid);
+
+    /**
+     * @param alpha2 ISO 3166-1 alpha-2 code, in any case
+     * @return country OR empty if there is no such one
+     */
+    Optional<CountryEntity> findByAlpha2(String alpha2);
+
+    /**
+     * @param alpha3 ISO 3166-1 alpha-3 code, in any case
+     * @return country OR empty if there is no such one
+     */
+    Optional<CountryEntity> findByAlpha3(String alpha3);
+
+    /**
+     * @param number ISO 3166-1 numeric code
+     * @return country OR empty if there is no such one
+     */
+    Optional<CountryEntity> findByNumber(Integer number);
+
+    /**
+     * Replace country, referenced by an entity, with the one from registry
+     * <p>
+     * Hibernate proxy is never initialized, only its identifier is taken
+     *
+     * @param country country, hibernate proxy of it OR null
+     * @return country from registry OR the given one, if the registry does not know it
+     */
+    CountryEntity resolve(CountryEntity country);
+}
@@ -3,6 +3,10 @@ package com.anyservice.service.api;
 
 import com.anyservice.dto.user.UserDetailed;
 
+import javax.mail.internet.MimeMessage;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
 import java.util.UUID;
 
 public interface ICustomMailSender {
@@ -14,5 +18,41 @@ public interface ICustomMailSender {
      * @param verificationCode code to verify the account
      * @throws RuntimeException if any errors occur
      */
-    void sendVerificationCode(UserDetailed user, UUID verificationCode);
+    void sendVerificationCode(UserDetailed user, String verificationCode);
+
+    /**
+     * Send special verification code to user, when only the data needed for the email is known
+     *
+     * @param email            address of a user
+     * @param initials         textual representation of user initials
+     * @param uuid             user identifier
+     * @param verificationCode code to verify the account
+     * @param locale           language of the email
+     * @throws RuntimeException if any errors occur
+     */
+    void sendVerificationCode(String email, String initials, UUID uuid, String verificationCode, Locale locale);
+
+    /**
+     * Render verification email without sending it
+     *
+     * @param email            address of a user
+     * @param initials         textual representation of user initials
+     * @param uuid             user identifier
+     * @param verificationCode code to verify the account
+     * @param locale           language of the email
+     * @return message, ready to be sent by {@link #sendAll(Collection)}
+     * @throws RuntimeException if any errors occur
+     */
+    MimeMessage createVerificationMessage(String email, String initials, UUID uuid, String verificationCode,
+                                          Locale locale);
+
+    /**
+     * Send messages in parallel through pooled SMTP connections
+     * <p>
+     * Failure of one message does not stop sending of the others
+     *
+     * @param messages messages to send
+     * @return failed messages with the reasons of failures, empty if all of them are sent
+     */
+    Map<MimeMessage, Exception> sendAll(Collection<MimeMessage> messages);
 }
@@ -2,9 +2,91 @@ package com.anyservice.service.api;
 
 import com.anyservice.dto.file.FileBrief;
 import com.anyservice.dto.file.FileDetailed;
+import com.anyservice.dto.file.PresignedUrl;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Date;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface IFileService extends ICRUDService<FileBrief, FileDetailed, UUID, Date> {
+
+    /**
+     * Write metadata of all files as newline-delimited JSON without keeping them in memory
+     *
+     * @param output target stream
+     * @return amount of exported files
+     */
+    long export(OutputStream output);
+
+    /**
+     * Find all files, attached to a user as a profile photo or as documents
+     *
+     * @param userUuid user identifier
+     * @return descriptions of attached files without their content
+     */
+    List<FileDetailed> findAllAttachedToUser(UUID userUuid);
+
+    /**
+     * Check, that content of file is in storage
+     *
+     * @param file description of file
+     * @throws com.anyservice.core.exceptions.StateConflictException if content is not uploaded yet
+     */
+    void checkLoaded(FileDetailed file);
+
+    /**
+     * Open the whole content of file in storage
+     * <p>
+     * Descriptions of files never carry their content, it is opened only by those, who actually send it
+     *
+     * @param file description of file
+     * @return content of file, must be closed by caller
+     */
+    InputStream openContent(FileDetailed file);
+
+    /**
+     * Open a range of file content in storage, only the requested bytes are transferred
+     *
+     * @param file   description of file
+     * @param offset position of the first byte
+     * @param length amount of bytes
+     * @return content of the range, must be closed by caller
+     */
+    InputStream openContent(FileDetailed file, long offset, long length);
+
+    /**
+     * Describe a new file and get a URL to upload its content directly into storage
+     * <p>
+     * File stays in state {@link com.anyservice.core.enums.FileState#LOADING} until {@link #commitPresigned(UUID)}.
+     * Content is uploaded into staging, from where it is copied on commit, so the URL cannot change committed content.
+     * Files, those are not committed in time, are deleted
+     *
+     * @param file description of file, without content
+     * @return presigned URL for method PUT
+     * @throws UnsupportedOperationException if presigned mode is disabled
+     */
+    PresignedUrl createPresigned(FileDetailed file);
+
+    /**
+     * Mark file as saved and copy its content out of staging, after it was uploaded through the presigned URL
+     *
+     * @param uuid file identifier
+     * @return description of saved file
+     * @throws IllegalArgumentException      if file is not loading, or its content is not in storage
+     * @throws UnsupportedOperationException if presigned mode is disabled
+     */
+    FileDetailed commitPresigned(UUID uuid);
+
+    /**
+     * Get a URL to download content of file directly from storage
+     *
+     * @param uuid file identifier
+     * @return presigned URL for method GET OR {@link Optional#empty()} if file does not exist
+     * @throws com.anyservice.core.exceptions.StateConflictException if file is still loading
+     * @throws UnsupportedOperationException                         if presigned mode is disabled
+     */
+    Optional<PresignedUrl> findPresignedUrl(UUID uuid);
 }
@@ -0,0 +1,28 @@
+package com.anyservice.service.api;
+
+import com.anyservice.core.exceptions.TooManyLoginAttemptsException;
+
+/**
+ * Limits the rate of login attempts per user name and per client address across the whole cluster
+ */
+public interface ILoginThrottle {
+
+    /**
+     * Take an attempt for given user name and client address
+     * <p>
+     * Must be called before the password is verified
+     *
+     * @param userName      user name
+     * @param clientAddress address of a client OR null if it's unknown
+     * @throws TooManyLoginAttemptsException if there are no attempts left for either of them
+     */
+    void acquire(String userName, String clientAddress);
+
+    /**
+     * Give back the attempt after a successful login, so that only failed ones are counted
+     *
+     * @param userName      user name
+     * @param clientAddress address of a client OR null if it's unknown
+     */
+    void release(String userName, String clientAddress);
+}
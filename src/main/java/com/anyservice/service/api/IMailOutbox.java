@@ -0,0 +1,18 @@
+package com.anyservice.service.api;
+
+import com.anyservice.dto.user.UserDetailed;
+
+/**
+ * Emails, those are saved in the same transaction as the data they are about
+ * and are sent asynchronously after it's committed
+ */
+public interface IMailOutbox {
+
+    /**
+     * Put verification email into outbox
+     *
+     * @param user             that will receive verification email
+     * @param verificationCode code to verify the account
+     */
+    void enqueueVerificationCode(UserDetailed user, String verificationCode);
+}
@@ -1,5 +1,7 @@
 package com.anyservice.service.api;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface IPasswordService {
 
     /**
@@ -18,4 +20,34 @@ public interface IPasswordService {
      * @return is password correct
      */
     boolean verifyHash(String password, String hash);
+
+    /**
+     * Check whether the hash was made with a lower cost, than the current one
+     * <p>
+     * Hashes with a higher cost are kept, otherwise nodes, calibrated to different costs,
+     * would rehash the same password back and forth
+     *
+     * @param hash saved representation of a password
+     * @return should password be hashed again
+     */
+    boolean needsRehash(String hash);
+
+    /**
+     * Asynchronous version of {@link #hash(String)}, performed on dedicated executor
+     *
+     * @param password user password
+     * @return future hash representation of a given password
+     * @throws com.anyservice.core.exceptions.ServiceOverloadedException if executor cannot accept the task
+     */
+    CompletableFuture<String> hashAsync(String password);
+
+    /**
+     * Asynchronous version of {@link #verifyHash(String, String)}, performed on dedicated executor
+     *
+     * @param password typed password
+     * @param hash     saved representation of a password
+     * @return future result - is password correct
+     * @throws com.anyservice.core.exceptions.ServiceOverloadedException if executor cannot accept the task
+     */
+    CompletableFuture<Boolean> verifyHashAsync(String password, String hash);
 }
@@ -0,0 +1,21 @@
+package com.anyservice.service.api;
+
+import org.springframework.security.core.userdetails.UserCache;
+
+import java.util.UUID;
+
+/**
+ * Node-local cache of authenticated principals, used by
+ * {@link org.springframework.security.authentication.dao.AbstractUserDetailsAuthenticationProvider}
+ */
+public interface IPrincipalCache extends UserCache {
+
+    /**
+     * Evict principal of given user on every node of a cluster
+     * <p>
+     * If called inside of a transaction - eviction is postponed until the transaction is committed
+     *
+     * @param uuid user identifier
+     */
+    void evict(UUID uuid);
+}
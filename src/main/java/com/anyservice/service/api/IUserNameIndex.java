@@ -0,0 +1,31 @@
+package com.anyservice.service.api;
+
+/**
+ * Node-local probabilistic index of taken user names, kept in sync across the cluster
+ * <p>
+ * Answers "definitely free" without going to the database
+ */
+public interface IUserNameIndex {
+
+    /**
+     * @param userName name of a user
+     * @return false if the name is definitely not taken OR true if it might be
+     */
+    boolean mightExist(String userName);
+
+    /**
+     * Register taken name on every node of a cluster
+     *
+     * @param userName name of a user
+     */
+    void add(String userName);
+
+    /**
+     * Release name on every node of a cluster
+     * <p>
+     * If called inside of a transaction - it's postponed until the transaction is committed
+     *
+     * @param userName name of a user
+     */
+    void remove(String userName);
+}
@@ -1,5 +1,6 @@
 package com.anyservice.service.api;
 
+import com.anyservice.core.exceptions.TooManyLoginAttemptsException;
 import com.anyservice.dto.api.APrimary;
 import com.anyservice.dto.user.UserBrief;
 import com.anyservice.dto.user.UserDetailed;
@@ -7,7 +8,10 @@ import com.anyservice.dto.user.UserForChangePassword;
 import com.anyservice.web.security.exceptions.UserNotFoundException;
 import com.anyservice.web.security.exceptions.WrongPasswordException;
 
+import java.io.OutputStream;
 import java.util.Date;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 public interface IUserService extends ICRUDService<UserBrief, UserDetailed, UUID, Date> {
@@ -32,6 +36,29 @@ public interface IUserService extends ICRUDService<UserBrief, UserDetailed, UUID
      */
     UserDetailed findUserForLogin(String userName, String password);
 
+    /**
+     * Returns user if the userName and password are correct, limiting the rate of attempts
+     *
+     * @param userName      userName of a user
+     * @param password      password of a user
+     * @param clientAddress address of a client, that tries to log in OR null if it's unknown
+     * @return user
+     * @throws TooManyLoginAttemptsException if there were too many failed attempts for user or from client address
+     * @throws UserNotFoundException         if user was not found by specified userName
+     * @throws WrongPasswordException        if password if verification of hash was unsuccessful
+     */
+    UserDetailed findUserForLogin(String userName, String password, String clientAddress);
+
+    /**
+     * Find user without password, loading only the associations those are needed for requested fields
+     *
+     * @param uuid   user identifier
+     * @param fields names of fields of {@link UserDetailed}, not requested ones are left empty
+     * @return {@link UserDetailed} without password OR {@link Optional#empty()} if user does not exist
+     * @throws IllegalArgumentException if there is an unknown field
+     */
+    Optional<UserDetailed> findById(UUID uuid, Set<String> fields);
+
     /**
      * Finds user by its userName
      *
@@ -40,6 +67,14 @@ public interface IUserService extends ICRUDService<UserBrief, UserDetailed, UUID
      */
     UserDetailed findByUserName(String userName);
 
+    /**
+     * Check whether nobody has taken the name yet
+     *
+     * @param userName name of a user
+     * @return whether the name is free
+     */
+    boolean isUserNameAvailable(String userName);
+
     /**
      * User verification method
      *
@@ -48,5 +83,13 @@ public interface IUserService extends ICRUDService<UserBrief, UserDetailed, UUID
      * @return verified {@link UserDetailed}
      * @throws IllegalArgumentException if something goes wrong with validation of passed values
      */
-    UserDetailed verifyUser(UUID uuid, UUID code);
+    UserDetailed verifyUser(UUID uuid, String code);
+
+    /**
+     * Write all users as newline-delimited JSON without keeping them in memory
+     *
+     * @param output target stream
+     * @return amount of exported users
+     */
+    long export(OutputStream output);
 }
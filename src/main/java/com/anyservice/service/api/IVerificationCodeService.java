@@ -0,0 +1,38 @@
+package com.anyservice.service.api;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Codes, that are sent to users to verify their accounts
+ */
+public interface IVerificationCodeService {
+
+    /**
+     * Generate verification code for user
+     * <p>
+     * Code becomes invalid, when it expires or user is updated
+     *
+     * @param uuid     user identifier
+     * @param dtUpdate moment of the last update of a user
+     * @return verification code
+     */
+    String generate(UUID uuid, OffsetDateTime dtUpdate);
+
+    /**
+     * Check verification code of user
+     *
+     * @param uuid     user identifier
+     * @param dtUpdate moment of the last update of a user
+     * @param code     verification code
+     * @return true if code is valid
+     */
+    boolean check(UUID uuid, OffsetDateTime dtUpdate, String code);
+
+    /**
+     * Make all already generated codes of user invalid
+     *
+     * @param uuid user identifier
+     */
+    void revoke(UUID uuid);
+}
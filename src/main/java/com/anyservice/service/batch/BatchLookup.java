@@ -0,0 +1,127 @@
+package com.anyservice.service.batch;
+
+import com.anyservice.core.exceptions.ServiceOverloadedException;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Function;
+
+/**
+ * Finds a large amount of objects by identifiers
+ * <p>
+ * Identifiers are split into chunks of a fixed size, and every chunk is read in its own read-only transaction
+ * on a dedicated executor, so chunks go in parallel through different pooled connections.
+ * Together with padding of in-clause parameters (hibernate.query.in_clause_parameter_padding)
+ * it leaves only a few distinct SQL strings for any amount of identifiers
+ */
+@Component
+public class BatchLookup {
+
+    private final ThreadPoolExecutor batchLookupExecutor;
+    private final TransactionTemplate transactionTemplate;
+    private final MessageSource messageSource;
+
+    @Value("${batch.lookup.chunk.size}")
+    private int chunkSize;
+
+    @Value("${batch.lookup.max.size}")
+    private int maxSize;
+
+    @Value("${batch.lookup.executor.retry.after.seconds}")
+    private long retryAfterSeconds;
+
+    public BatchLookup(@Qualifier("batchLookupExecutor") ThreadPoolExecutor batchLookupExecutor,
+                       PlatformTransactionManager transactionManager, MessageSource messageSource) {
+        this.batchLookupExecutor = batchLookupExecutor;
+        this.messageSource = messageSource;
+
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Find objects in the order of identifiers, must be called outside of a transaction
+     * <p>
+     * Duplicates and nulls are skipped, as well as identifiers of objects, those were not found
+     *
+     * @param ids    identifiers
+     * @param loader reads and converts objects of a chunk of identifiers, called inside of a transaction
+     * @param idOf   identifier of a found object
+     * @param <K>    type of identifiers
+     * @param <T>    type of objects
+     * @return found objects
+     * @throws IllegalArgumentException   if there are too many identifiers
+     * @throws ServiceOverloadedException if the queue of executor is full
+     */
+    public <K, T> List<T> find(Collection<K> ids, Function<List<K>, ? extends Iterable<T>> loader,
+                               Function<T, K> idOf) {
+        if (ids.size() > maxSize) {
+            throw new IllegalArgumentException(messageSource.getMessage("batch.lookup.max.size",
+                    new Object[]{maxSize}, LocaleContextHolder.getLocale()));
+        }
+
+        Set<K> unique = new LinkedHashSet<>(ids);
+        unique.remove(null);
+
+        List<K> distinct = new ArrayList<>(unique);
+
+        List<CompletableFuture<? extends Iterable<T>>> chunks = new ArrayList<>();
+
+        try {
+            for (int from = 0; from < distinct.size(); from += chunkSize) {
+                List<K> chunk = distinct.subList(from, Math.min(from + chunkSize, distinct.size()));
+                chunks.add(CompletableFuture.supplyAsync(() -> transactionTemplate.execute(status ->
+                        loader.apply(chunk)), batchLookupExecutor));
+            }
+        } catch (RejectedExecutionException e) {
+            chunks.forEach(c -> c.cancel(false));
+
+            String message = messageSource.getMessage("batch.lookup.overloaded",
+                    null, LocaleContextHolder.getLocale());
+            throw new ServiceOverloadedException(message, retryAfterSeconds, e);
+        }
+
+        Map<K, T> found = new HashMap<>();
+
+        for (CompletableFuture<? extends Iterable<T>> chunk : chunks) {
+            for (T object : join(chunk)) {
+                found.put(idOf.apply(object), object);
+            }
+        }
+
+        List<T> result = new ArrayList<>(found.size());
+
+        for (K id : distinct) {
+            T object = found.get(id);
+            if (object != null) result.add(object);
+        }
+
+        return result;
+    }
+
+    /**
+     * Wait for result and throw up the original exception, if any
+     *
+     * @param future future result
+     * @param <T>    type of result
+     * @return result
+     */
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+}
@@ -15,6 +15,7 @@ public class FileDetailedToEntityConverter implements Converter<FileDetailed, Fi
                 .size(source.getSize())
                 .state(source.getState() != null ? source.getState().name() : null)
                 .type(source.getFileType() != null ? source.getFileType().name() : null)
+                .hash(source.getHash())
                 .build();
     }
 }
@@ -18,6 +18,7 @@ public class FileEntityToDetailedConverter implements Converter<FileEntity, File
                 .size(source.getSize())
                 .state(source.getState() != null ? FileState.valueOf(source.getState()) : null)
                 .fileType(source.getType() != null ? FileType.valueOf(source.getType()) : null)
+                .hash(source.getHash())
                 .build();
     }
 }
@@ -6,11 +6,13 @@ import com.anyservice.core.enums.UserState;
 import com.anyservice.dto.file.FileDetailed;
 import com.anyservice.dto.user.UserDetailed;
 import com.anyservice.entity.file.FileEntity;
+import com.anyservice.entity.user.CountryEntity;
 import com.anyservice.entity.user.UserEntity;
+import com.anyservice.service.api.ICountryRegistry;
 import com.anyservice.service.converters.file.entity_dto.FileEntityToDetailedConverter;
 import org.springframework.core.convert.converter.Converter;
 
-import java.util.List;
+import java.util.*;
 import java.util.stream.Collectors;
 
 import static com.anyservice.core.enums.FileType.DOCUMENT;
@@ -18,14 +20,50 @@ import static com.anyservice.core.enums.FileType.PORTFOLIO;
 
 public class UserEntityToDetailedConverter implements Converter<UserEntity, UserDetailed> {
 
+    public static final String DEFAULT_COUNTRY = "defaultCountry";
+    public static final String PROFILE_PHOTO = "profilePhoto";
+    public static final String DOCUMENTS = "documents";
+    public static final String PORTFOLIO_FILES = "portfolio";
+    public static final String COUNTRIES = "listOfCountriesWhereServicesProvided";
+
+    /**
+     * Fields of {@link UserDetailed}, those are taken from lazy associations of {@link UserEntity}
+     * <p>
+     * Default country is not here - it's taken from registry by the foreign key
+     */
+    public static final Map<String, String> ASSOCIATIONS;
+
+    static {
+        Map<String, String> associations = new HashMap<>();
+        associations.put(PROFILE_PHOTO, "photo");
+        associations.put(DOCUMENTS, "documents");
+        associations.put(PORTFOLIO_FILES, "documents");
+        associations.put(COUNTRIES, "countries");
+        ASSOCIATIONS = Collections.unmodifiableMap(associations);
+    }
+
     private final FileEntityToDetailedConverter fileConverter;
+    private final ICountryRegistry countryRegistry;
 
-    public UserEntityToDetailedConverter(FileEntityToDetailedConverter fileConverter) {
+    public UserEntityToDetailedConverter(FileEntityToDetailedConverter fileConverter,
+                                         ICountryRegistry countryRegistry) {
         this.fileConverter = fileConverter;
+        this.countryRegistry = countryRegistry;
     }
 
     @Override
     public UserDetailed convert(UserEntity source) {
+        return convert(source, null);
+    }
+
+    /**
+     * Convert only the requested associations, the others are not touched - so they are never loaded
+     *
+     * @param source user entity
+     * @param fields names of fields of {@link UserDetailed} OR null for all of them
+     * @return user detailed DTO, where not requested associations are null
+     */
+    public UserDetailed convert(UserEntity source, Set<String> fields) {
 
         // Build normal user detailed DTO
         UserDetailed userDetailed = UserDetailed.builder()
@@ -44,36 +82,63 @@ public class UserEntityToDetailedConverter implements Converter<UserEntity, User
                 .state(source.getState() != null ? UserState.valueOf(source.getState()) : null)
                 .addresses(source.getAddresses())
                 .password(source.getPassword())
-                .defaultCountry(source.getCountry())
-                .profilePhoto(source.getPhoto() != null ? fileConverter.convert(source.getPhoto()) : null)
-                .listOfCountriesWhereServicesProvided(source.getCountries())
                 .build();
 
-        // Get all the files from source
-        List<FileEntity> files = source.getDocuments();
+        if (isRequested(fields, DEFAULT_COUNTRY)) {
+            userDetailed.setDefaultCountry(countryRegistry.resolve(source.getCountry()));
+        }
+
+        if (isRequested(fields, PROFILE_PHOTO) && source.getPhoto() != null) {
+            userDetailed.setProfilePhoto(fileConverter.convert(source.getPhoto()));
+        }
+
+        if (isRequested(fields, COUNTRIES)) {
+            userDetailed.setListOfCountriesWhereServicesProvided(resolveCountries(source.getCountries()));
+        }
+
+        boolean documentsRequested = isRequested(fields, DOCUMENTS);
+        boolean portfolioRequested = isRequested(fields, PORTFOLIO_FILES);
+
+        // Get all the files from source, if any of them is needed
+        List<FileEntity> files = documentsRequested || portfolioRequested ? source.getDocuments() : null;
 
         // If there are some - let's put them in a right places
         if (files != null && !files.isEmpty()) {
+            List<FileDetailed> documents = new ArrayList<>();
+            List<FileDetailed> portfolio = new ArrayList<>();
 
-            // Get all the documents
-            List<FileDetailed> documents = files.stream()
-                    .filter(d -> DOCUMENT.name().equals(d.getType()))
-                    .map(fileConverter::convert)
-                    .collect(Collectors.toList());
+            // Split them in a single pass
+            for (FileEntity file : files) {
+                if (documentsRequested && DOCUMENT.name().equals(file.getType())) {
+                    documents.add(fileConverter.convert(file));
+                } else if (portfolioRequested && PORTFOLIO.name().equals(file.getType())) {
+                    portfolio.add(fileConverter.convert(file));
+                }
+            }
 
             // If there are some - set them to user detailed instance
             if (!documents.isEmpty()) userDetailed.setDocuments(documents);
-
-            // Get all the portfolio documents
-            List<FileDetailed> portfolio = files.stream()
-                    .filter(d -> PORTFOLIO.name().equals(d.getType()))
-                    .map(fileConverter::convert)
-                    .collect(Collectors.toList());
-
-            // If there are some - set them to user detailed instance
             if (!portfolio.isEmpty()) userDetailed.setPortfolio(portfolio);
         }
 
         return userDetailed;
     }
+
+    private static boolean isRequested(Set<String> fields, String field) {
+        return fields == null || fields.contains(field);
+    }
+
+    /**
+     * Countries are taken from registry, so only the links between user and countries are read
+     *
+     * @param countries countries, where user provides services
+     * @return the same countries from registry
+     */
+    private List<CountryEntity> resolveCountries(List<CountryEntity> countries) {
+        if (countries == null) return null;
+
+        return countries.stream()
+                .map(countryRegistry::resolve)
+                .collect(Collectors.toList());
+    }
 }
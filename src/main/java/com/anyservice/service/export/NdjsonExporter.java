@@ -0,0 +1,75 @@
+package com.anyservice.service.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Writes streamed entities as newline-delimited JSON, one object per line
+ * <p>
+ * Persistence context is cleared periodically, so that already written entities can be collected
+ * and the used memory does not depend on the amount of rows
+ */
+@Component
+public class NdjsonExporter {
+
+    public static final String CONTENT_TYPE = "application/x-ndjson";
+
+    private static final byte NEW_LINE = '\n';
+
+    private final ObjectWriter writer;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${export.clear.every}")
+    private int clearEvery;
+
+    public NdjsonExporter(ObjectMapper objectMapper) {
+        this.writer = objectMapper.writer();
+    }
+
+    /**
+     * Write all the entities of a stream, must be called inside of a transaction, that opened the stream
+     *
+     * @param entities  stream of entities, is not closed by this method
+     * @param converter conversion of an entity into exported object
+     * @param output    target stream, is not closed by this method
+     * @param <E>       type of entities
+     * @return amount of written objects
+     */
+    public <E> long export(Stream<E> entities, Function<E, ?> converter, OutputStream output) {
+        long written = 0;
+
+        try {
+            Iterator<E> iterator = entities.iterator();
+
+            while (iterator.hasNext()) {
+                output.write(writer.writeValueAsBytes(converter.apply(iterator.next())));
+                output.write(NEW_LINE);
+
+                if (++written % clearEvery == 0) {
+                    // Written entities are not needed anymore
+                    entityManager.clear();
+                    output.flush();
+                }
+            }
+
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return written;
+    }
+}
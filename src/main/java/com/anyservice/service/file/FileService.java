@@ -1,31 +1,70 @@
 package com.anyservice.service.file;
 
+import com.anyservice.core.ExpiringLruCache;
+import com.anyservice.core.Keyset;
+import com.anyservice.core.enums.FileState;
 import com.anyservice.core.enums.FileType;
+import com.anyservice.core.exceptions.StateConflictException;
+import com.anyservice.dto.api.KeysetPage;
+import com.anyservice.dto.api.PageQuery;
 import com.anyservice.dto.file.FileBrief;
 import com.anyservice.dto.file.FileDetailed;
+import com.anyservice.dto.file.PresignedUrl;
 import com.anyservice.entity.file.FileEntity;
+import com.anyservice.repository.FileBlobRepository;
 import com.anyservice.repository.FileRepository;
 import com.anyservice.service.api.IFileService;
+import com.anyservice.service.batch.BatchLookup;
+import com.anyservice.service.export.NdjsonExporter;
 import com.anyservice.service.validators.api.IFileValidator;
-import com.jlefebure.spring.boot.minio.MinioException;
 import com.jlefebure.spring.boot.minio.MinioService;
+import io.minio.CopyConditions;
+import io.minio.MinioClient;
+import io.minio.ObjectStat;
+import io.minio.Result;
+import io.minio.errors.ErrorResponseException;
+import io.minio.errors.InsufficientDataException;
+import io.minio.errors.MinioException;
+import io.minio.messages.Item;
 import lombok.SneakyThrows;
 import lombok.extern.log4j.Log4j2;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.core.convert.ConversionService;
 import org.springframework.core.env.Environment;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpMethod;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.xmlpull.v1.XmlPullParserException;
 
+import javax.annotation.PostConstruct;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.stream.Stream;
 
-import static com.anyservice.core.DateUtils.convertOffsetDateTimeToMills;
+import static com.anyservice.core.KeysetPagination.resolveLimit;
+import static com.anyservice.core.KeysetPagination.toPage;
+import static com.anyservice.core.TransactionCallbacks.afterCommit;
 
 @Service
 @Transactional(readOnly = true)
@@ -33,26 +72,228 @@ import static com.anyservice.core.DateUtils.convertOffsetDateTimeToMills;
 public class FileService implements IFileService {
 
     private final FileRepository fileRepository;
+    private final FileBlobRepository fileBlobRepository;
     private final MinioService minioService;
+    private final MinioClient minioClient;
     private final MessageSource messageSource;
     private final ConversionService conversionService;
     private final Environment environment;
     private final IFileValidator fileValidator;
+    private final NdjsonExporter ndjsonExporter;
+    private final BatchLookup batchLookup;
 
-    public FileService(FileRepository fileRepository, MinioService minioService,
+    /**
+     * Short transactions, those are opened only after content is streamed, always separate from the caller's one
+     */
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${spring.minio.bucket}")
+    private String bucket;
+
+    @Value("${spring.minio.folder.blob}")
+    private String blobDirectory;
+
+    @Value("${spring.minio.folder.staging}")
+    private String stagingDirectory;
+
+    @Value("${file.staging.ttl.seconds}")
+    private long stagingTtlSeconds;
+
+    @Value("${file.deduplication.enabled}")
+    private boolean deduplicationEnabled;
+
+    @Value("${file.presigned.enabled}")
+    private boolean presignedEnabled;
+
+    @Value("${file.presigned.expiry.seconds}")
+    private int presignedExpirySeconds;
+
+    @Value("${file.presigned.renew.before.seconds}")
+    private int presignedRenewBeforeSeconds;
+
+    @Value("${file.presigned.cache.size}")
+    private int presignedCacheSize;
+
+    /**
+     * Presigned URLs by method and path
+     */
+    private ExpiringLruCache<String, PresignedUrl> presignedUrls;
+
+    @Value("${pagination.limit.default}")
+    private int defaultPageLimit;
+
+    @Value("${pagination.limit.max}")
+    private int maxPageLimit;
+
+    @Value("${pagination.unpaged.limit}")
+    private int unpagedLimit;
+
+    public FileService(FileRepository fileRepository, FileBlobRepository fileBlobRepository,
+                       MinioService minioService, MinioClient minioClient,
                        MessageSource messageSource, ConversionService conversionService,
-                       Environment environment, IFileValidator fileValidator) {
+                       Environment environment, IFileValidator fileValidator,
+                       NdjsonExporter ndjsonExporter, BatchLookup batchLookup,
+                       PlatformTransactionManager transactionManager) {
         this.fileRepository = fileRepository;
+        this.fileBlobRepository = fileBlobRepository;
         this.minioService = minioService;
+        this.minioClient = minioClient;
         this.messageSource = messageSource;
         this.conversionService = conversionService;
         this.environment = environment;
         this.fileValidator = fileValidator;
+        this.ndjsonExporter = ndjsonExporter;
+        this.batchLookup = batchLookup;
+
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    public void init() {
+        presignedUrls = new ExpiringLruCache<>(presignedCacheSize);
     }
 
+    /**
+     * Content is streamed before the description is saved in a short transaction,
+     * so that no database connection is held during the upload
+     */
     @Override
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public FileDetailed create(FileDetailed file) {
+        UUID uuid = prepareCreation(file);
+
+        // Content is stored by its hash, the same content only once
+        if (deduplicationEnabled) return storeBlob(file);
+
+        file.setHash(null);
+
+        // Build path for file and upload it
+        upload(file.getInputStream(), getPathToFile(file.getFileType(), uuid), file);
+
+        return transactionTemplate.execute(status -> save(file));
+    }
+
+    /**
+     * Save description of file
+     *
+     * @param file description of file
+     * @return saved description
+     */
+    private FileDetailed save(FileDetailed file) {
+        FileEntity entity = conversionService.convert(file, FileEntity.class);
+        fileRepository.saveAndFlush(entity);
+
+        return conversionService.convert(entity, FileDetailed.class);
+    }
+
+    /**
+     * Upload content on minio, with the declared size it is sent in parts of a fixed size
+     * <p>
+     * Content must have exactly the declared size, otherwise nothing is kept in storage
+     *
+     * @param content content of file
+     * @param path    path to object
+     * @param file    description of file
+     */
+    private void upload(InputStream content, Path path, FileDetailed file) {
+        try {
+            minioClient.putObject(bucket, path.toString(), content, file.getSize(),
+                    file.getExtension().getContentType());
+        } catch (InsufficientDataException e) {
+            throw illegalArgument("file.size.mismatch");
+        } catch (MinioException | IOException | GeneralSecurityException | XmlPullParserException e) {
+            String message = messageSource.getMessage("file.minio.cannot.upload",
+                    null, LocaleContextHolder.getLocale());
+            log.error(message, e);
+            throw new IllegalStateException(message, e);
+        }
+
+        // Only the declared amount of bytes is stored, the rest would be silently lost
+        if (hasMore(content)) {
+            remove(path);
+            throw illegalArgument("file.size.mismatch");
+        }
+    }
+
+    @SneakyThrows
+    private static boolean hasMore(InputStream content) {
+        return content.read() != -1;
+    }
+
+    /**
+     * Store content by its SHA-256, that is computed while the content is read, and save description of file
+     * <p>
+     * Content is streamed outside of any transaction. If client declared the hash, and such content is already stored,
+     * the content is read only to verify the hash, otherwise it is uploaded into staging.
+     * Then the reference to content is taken in a short transaction together with saving of description,
+     * and staged content is copied under its hash, only if it is new
+     *
+     * @param file new file with content and optionally declared hash
+     * @return saved description of file
+     */
+    @SneakyThrows
+    private FileDetailed storeBlob(FileDetailed file) {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        InputStream content = new DigestInputStream(file.getInputStream(), digest);
+
+        String declared = file.getHash() != null ? file.getHash().toLowerCase(Locale.ROOT) : null;
+
+        if (declared != null && fileBlobRepository.existsById(declared)) {
+            if (IOUtils.copyLarge(content, NullOutputStream.NULL_OUTPUT_STREAM) != file.getSize()
+                    || !declared.equals(toHex(digest.digest()))) {
+                throw illegalArgument("file.hash.mismatch");
+            }
+
+            file.setHash(declared);
+
+            return transactionTemplate.execute(status -> {
+                // Content could be removed meanwhile, and there is nothing to copy it from
+                if (fileBlobRepository.acquire(declared, file.getSize()) == 1) {
+                    throw illegalArgument("file.hash.removed");
+                }
+
+                return save(file);
+            });
+        }
+
+        Path staging = getPathToStaging(file.getUuid());
+        upload(content, staging, file);
+
+        try {
+            String hash = toHex(digest.digest());
+
+            if (declared != null && !declared.equals(hash)) throw illegalArgument("file.hash.mismatch");
+
+            file.setHash(hash);
+
+            return transactionTemplate.execute(status -> {
+                // Row of content stays locked until commit, so concurrent uploads of the same content wait for the copy
+                if (fileBlobRepository.acquire(hash, file.getSize()) == 1) copy(staging, getPathToBlob(hash));
+
+                return save(file);
+            });
+        } finally {
+            minioClient.removeObject(bucket, staging.toString());
+        }
+    }
+
+    @SneakyThrows
+    private void copy(Path source, Path target) {
+        minioClient.copyObject(bucket, source.toString(), bucket, target.toString());
+    }
+
+    private static String toHex(byte[] bytes) {
+        return String.format("%064x", new BigInteger(1, bytes));
+    }
+
+    /**
+     * Generate an identifier for a new file and validate it
+     *
+     * @param file new file
+     * @return identifier of file
+     */
+    private UUID prepareCreation(FileDetailed file) {
 
         // Generate an identifier
         UUID uuid = UUID.randomUUID();
@@ -68,24 +309,170 @@ public class FileService implements IFileService {
             throw new IllegalArgumentException(errors.toString());
         }
 
-        // Build path for file
-        Path path = getPathToFile(file.getFileType(), uuid);
+        return uuid;
+    }
 
-        // Upload file on minio
-        try {
-            minioService.upload(path, file.getInputStream(), file.getExtension().getContentType());
-        } catch (MinioException e) {
-            String message = messageSource.getMessage("file.minio.cannot.upload",
-                    null, LocaleContextHolder.getLocale());
-            log.error(message, e);
-            throw new IllegalStateException(message, e);
-        }
+    @Override
+    @Transactional
+    public PresignedUrl createPresigned(FileDetailed file) {
+        checkPresignedMode();
+
+        UUID uuid = prepareCreation(file);
+
+        // Content goes into storage by identifier of file, bypassing deduplication
+        file.setHash(null);
+
+        // Description is committed before the client gets the URL, so it exists, when the upload is done
+        file.setState(FileState.LOADING);
 
-        // Save entity to database
         FileEntity entity = conversionService.convert(file, FileEntity.class);
         fileRepository.saveAndFlush(entity);
 
-        return conversionService.convert(entity, FileDetailed.class);
+        // Content is uploaded into staging, the URL stays valid after commit, but cannot change the committed content
+        return presign(HttpMethod.PUT, getPathToStaging(uuid), uuid);
+    }
+
+    @Override
+    @Transactional
+    @SneakyThrows
+    public FileDetailed commitPresigned(UUID uuid) {
+        checkPresignedMode();
+
+        // Concurrent commits and the sweep wait for each other
+        FileEntity entity = fileRepository.findForUpdate(uuid)
+                .orElseThrow(() -> illegalArgument("file.not.exists"));
+
+        if (!FileState.LOADING.name().equals(entity.getState())) throw illegalArgument("file.presigned.not.loading");
+
+        FileDetailed file = conversionService.convert(entity, FileDetailed.class);
+        Path staging = getPathToStaging(uuid);
+
+        try {
+            // Object must be staged with exactly the declared size
+            ObjectStat stat = minioClient.statObject(bucket, staging.toString());
+
+            if (stat.length() != file.getSize()) throw illegalArgument("file.presigned.not.uploaded");
+
+            // Exactly the checked object is copied, even if the client uploads another one meanwhile
+            CopyConditions conditions = new CopyConditions();
+            conditions.setMatchETag(stat.etag());
+
+            minioClient.copyObject(bucket, staging.toString(), bucket,
+                    getPathToFile(file.getFileType(), uuid).toString(), conditions);
+        } catch (ErrorResponseException e) {
+            throw illegalArgument("file.presigned.not.uploaded");
+        }
+
+        // Managed entity is updated, so only its own entry of second level cache is invalidated
+        entity.setState(FileState.SAVED.name());
+        file.setState(FileState.SAVED);
+
+        afterCommit(() -> removeContent(staging, null));
+
+        return file;
+    }
+
+    @Override
+    public Optional<PresignedUrl> findPresignedUrl(UUID uuid) {
+        checkPresignedMode();
+
+        return findById(uuid)
+                .map(f -> {
+                    checkLoaded(f);
+                    return presign(HttpMethod.GET, getPathToContent(f), uuid);
+                });
+    }
+
+    @Override
+    public void checkLoaded(FileDetailed file) {
+        if (file.getState() == FileState.LOADING) {
+            throw new StateConflictException(messageSource.getMessage("file.presigned.loading",
+                    null, LocaleContextHolder.getLocale()));
+        }
+    }
+
+    /**
+     * Delete files, those were never committed, and staged content, that nobody is going to use
+     * <p>
+     * Every file is deleted in its own short transaction, and only if it is still loading,
+     * so every node of the cluster can sweep at the same time
+     */
+    @Scheduled(fixedDelayString = "${file.staging.sweep.millis}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @SneakyThrows
+    public void sweep() {
+        OffsetDateTime before = OffsetDateTime.now().minusSeconds(stagingTtlSeconds);
+
+        for (UUID uuid : fileRepository.findIdsByStateCreatedBefore(FileState.LOADING.name(), before)) {
+            try {
+                transactionTemplate.execute(status -> {
+                    fileRepository.findForUpdate(uuid)
+                            .filter(f -> FileState.LOADING.name().equals(f.getState()))
+                            .ifPresent(fileRepository::delete);
+                    return null;
+                });
+            } catch (Exception e) {
+                log.error("Cannot delete not committed file " + uuid, e);
+            }
+        }
+
+        Date stagedBefore = Date.from(before.toInstant());
+
+        for (Result<Item> result : minioClient.listObjects(bucket, stagingDirectory + "/")) {
+            Item item = result.get();
+            if (item.lastModified().before(stagedBefore)) removeContent(Paths.get(item.objectName()), null);
+        }
+    }
+
+    /**
+     * Get presigned URL from cache, or sign a new one
+     * <p>
+     * URL is kept in cache for a shorter period, than it is valid,
+     * so the client has some time to use it after it was taken from cache
+     *
+     * @param method HTTP method, allowed by URL
+     * @param path   path to file in storage
+     * @param uuid   file identifier
+     * @return presigned URL
+     */
+    @SneakyThrows
+    private PresignedUrl presign(HttpMethod method, Path path, UUID uuid) {
+        String key = method + " " + path;
+
+        PresignedUrl presignedUrl = presignedUrls.get(key);
+
+        if (presignedUrl != null) return presignedUrl;
+
+        long signedAt = System.currentTimeMillis();
+
+        String url = method == HttpMethod.GET
+                ? minioClient.presignedGetObject(bucket, path.toString(), presignedExpirySeconds)
+                : minioClient.presignedPutObject(bucket, path.toString(), presignedExpirySeconds);
+
+        presignedUrl = PresignedUrl.builder()
+                .uuid(uuid)
+                .method(method.name())
+                .url(url)
+                .expiresAt(OffsetDateTime.now().plusSeconds(presignedExpirySeconds))
+                .build();
+
+        presignedUrls.put(key, presignedUrl,
+                signedAt + (presignedExpirySeconds - presignedRenewBeforeSeconds) * 1000L);
+
+        return presignedUrl;
+    }
+
+    private void checkPresignedMode() {
+        if (!presignedEnabled) {
+            throw new UnsupportedOperationException(messageSource.getMessage("file.presigned.disabled",
+                    null, LocaleContextHolder.getLocale()));
+        }
+    }
+
+    private IllegalArgumentException illegalArgument(String code) {
+        String message = messageSource.getMessage(code, null, LocaleContextHolder.getLocale());
+        log.info(message);
+        return new IllegalArgumentException(message);
     }
 
     /**
@@ -105,6 +492,26 @@ public class FileService implements IFileService {
         return Paths.get(pathAsString);
     }
 
+    /**
+     * Build a path to content of file - either by its hash, or by its identifier
+     *
+     * @param file description of file
+     * @return path {@link Path} to content
+     */
+    public Path getPathToContent(FileDetailed file) {
+        if (file.getHash() != null) return getPathToBlob(file.getHash());
+
+        return getPathToFile(file.getFileType(), file.getUuid());
+    }
+
+    private Path getPathToBlob(String hash) {
+        return Paths.get(blobDirectory, hash);
+    }
+
+    private Path getPathToStaging(UUID uuid) {
+        return Paths.get(stagingDirectory, uuid.toString());
+    }
+
     /**
      * Get a directory for the specified file type
      *
@@ -138,8 +545,10 @@ public class FileService implements IFileService {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Find description of file, its content is not touched - see {@link #openContent(FileDetailed)}
+     */
     @Override
-    @SneakyThrows
     public Optional<FileDetailed> findById(UUID uuid) {
 
         // Find file description in repository
@@ -149,18 +558,27 @@ public class FileService implements IFileService {
         if (!entityOptional.isPresent()) return Optional.empty();
 
         // Convert file get extract from Optional
-        FileDetailed fileDetailed = entityOptional.map(e -> conversionService.convert(e, FileDetailed.class)).get();
+        return entityOptional.map(e -> conversionService.convert(e, FileDetailed.class));
+    }
 
-        // Get path for the file
-        Path path = getPathToFile(fileDetailed.getFileType(), fileDetailed.getUuid());
+    @Override
+    @SneakyThrows
+    public InputStream openContent(FileDetailed file) {
+        checkLoaded(file);
 
-        // Get an actual file from storage
-        InputStream inputStream = minioService.get(path);
+        Path path = getPathToContent(file);
 
-        // Put it into object and return
-        fileDetailed.setInputStream(inputStream);
+        return minioClient.getObject(bucket, path.toString());
+    }
+
+    @Override
+    @SneakyThrows
+    public InputStream openContent(FileDetailed file, long offset, long length) {
+        checkLoaded(file);
+
+        Path path = getPathToContent(file);
 
-        return Optional.of(fileDetailed);
+        return minioClient.getObject(bucket, path.toString(), offset, length);
     }
 
     @Override
@@ -170,11 +588,11 @@ public class FileService implements IFileService {
 
     @Override
     public Iterable<FileBrief> findAll() {
-        Iterable<FileEntity> userEntities = fileRepository.findAll();
+        List<FileEntity> entities = fileRepository.findFirstPage(null, PageRequest.of(0, unpagedLimit));
 
         List<FileBrief> savedDto = new ArrayList<>();
 
-        for (FileEntity e : userEntities) {
+        for (FileEntity e : entities) {
             FileBrief convert = conversionService.convert(e, FileBrief.class);
             savedDto.add(convert);
         }
@@ -182,6 +600,33 @@ public class FileService implements IFileService {
         return savedDto;
     }
 
+    @Override
+    public KeysetPage<FileBrief> findPage(PageQuery query) {
+        int limit = resolveLimit(query.getLimit(), defaultPageLimit, maxPageLimit);
+
+        // One extra row tells, whether there is a next page
+        Pageable pageable = PageRequest.of(0, limit + 1);
+
+        List<FileEntity> entities;
+
+        if (query.getContinuation() == null) {
+            entities = fileRepository.findFirstPage(query.getState(), pageable);
+        } else {
+            Keyset after = Keyset.decode(query.getContinuation());
+            entities = fileRepository.findNextPage(after.getDtCreate(), after.getUuid(), query.getState(), pageable);
+        }
+
+        return toPage(entities, limit, e -> conversionService.convert(e, FileBrief.class),
+                e -> new Keyset(e.getDtCreate(), e.getUuid()));
+    }
+
+    @Override
+    public long export(OutputStream output) {
+        try (Stream<FileEntity> entities = fileRepository.streamAll()) {
+            return ndjsonExporter.export(entities, e -> conversionService.convert(e, FileBrief.class), output);
+        }
+    }
+
     @Override
     public Iterable<FileBrief> findAllById(Iterable<UUID> uuids) {
         Iterable<FileEntity> userEntities = fileRepository.findAllById(uuids);
@@ -189,6 +634,9 @@ public class FileService implements IFileService {
         List<FileBrief> savedDto = new ArrayList<>();
 
         for (FileEntity e : userEntities) {
+            // Files, those are still loading, are never listed
+            if (FileState.LOADING.name().equals(e.getState())) continue;
+
             FileBrief convert = conversionService.convert(e, FileBrief.class);
             savedDto.add(convert);
         }
@@ -196,6 +644,16 @@ public class FileService implements IFileService {
         return savedDto;
     }
 
+    /**
+     * Chunks are read on other threads, each one in its own transaction,
+     * so the caller must not hold a connection meanwhile
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<FileBrief> findBatch(List<UUID> uuids) {
+        return batchLookup.find(uuids, this::findAllById, FileBrief::getUuid);
+    }
+
     @Override
     public long count() {
         return fileRepository.count();
@@ -203,25 +661,19 @@ public class FileService implements IFileService {
 
     @Override
     @Transactional
-    @SneakyThrows
     public void deleteById(UUID uuid, Date version) {
-        // Check if such file exists
-        if (!existsById(uuid)) {
+        // Description is needed to find the file in storage
+        Optional<FileDetailed> file = findById(uuid);
+
+        if (!file.isPresent()) {
             String message = messageSource.getMessage("file.not.exists",
                     null, LocaleContextHolder.getLocale());
             log.info(message);
             throw new IllegalArgumentException(message);
         }
 
-        // We know for sure such file exists
-        FileDetailed versionOfUserFromDB = fileRepository.findById(uuid)
-                .map(e -> conversionService.convert(e, FileDetailed.class))
-                .get();
-
-        long createDate = convertOffsetDateTimeToMills(versionOfUserFromDB.getDtCreate());
-
-        // Compare the versions of entities
-        if (version.getTime() != createDate) {
+        // Check the version and delete file description in a single statement
+        if (fileRepository.deleteByIdAndVersion(uuid, version) == 0) {
             String message = messageSource.getMessage("delete.version",
                     null, LocaleContextHolder.getLocale());
             log.info(message);
@@ -229,13 +681,59 @@ public class FileService implements IFileService {
         }
 
         // Get path for the file
-        Path path = getPathToFile(versionOfUserFromDB.getFileType(), versionOfUserFromDB.getUuid());
+        Path path = getPathToContent(file.get());
+        String hash = file.get().getHash();
+
+        // Shared content is deleted from storage only together with the last reference to it
+        if (hash != null) fileBlobRepository.release(hash);
+
+        // Storage is touched only after commit, so that content of a rolled back deletion stays
+        afterCommit(() -> removeContent(path, hash));
+
+        // URL of deleted file is not given anymore, at least by this node
+        if (presignedUrls != null) presignedUrls.remove(HttpMethod.GET + " " + path);
+    }
 
-        // Delete from storage
-        minioService.remove(path);
+    /**
+     * Remove content from storage, shared content - only if nothing refers to it anymore
+     * <p>
+     * Row of shared content is deleted in its own transaction and stays locked while the content is removed,
+     * so a concurrent upload of the same content waits and then stores it once again.
+     * Content, that cannot be removed, is only logged - the description of file is already deleted
+     *
+     * @param path path to content
+     * @param hash SHA-256 of shared content OR null
+     */
+    private void removeContent(Path path, String hash) {
+        try {
+            if (hash == null) {
+                minioService.remove(path);
+                return;
+            }
+
+            transactionTemplate.execute(status -> {
+                if (fileBlobRepository.deleteUnreferenced(hash) == 1) remove(path);
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("Cannot remove " + path + " from storage", e);
+        }
+    }
+
+    @SneakyThrows
+    private void remove(Path path) {
+        minioClient.removeObject(bucket, path.toString());
+    }
+
+    @Override
+    public List<FileDetailed> findAllAttachedToUser(UUID userUuid) {
+        List<FileDetailed> files = new ArrayList<>();
+
+        for (FileEntity e : fileRepository.findAllAttachedToUser(userUuid)) {
+            files.add(conversionService.convert(e, FileDetailed.class));
+        }
 
-        // Delete file
-        fileRepository.deleteById(uuid);
+        return files;
     }
 
 }
@@ -0,0 +1,104 @@
+package com.anyservice.service.user;
+
+import com.anyservice.entity.user.CountryEntity;
+import com.anyservice.repository.CountryRepository;
+import com.anyservice.service.api.ICountryRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.function.Function;
+
+import static java.util.Comparator.comparing;
+import static java.util.Comparator.naturalOrder;
+import static java.util.Comparator.nullsLast;
+
+/**
+ * Countries are a static dictionary, so they are read from database once
+ * and kept in immutable maps - one for every kind of lookup
+ */
+@Service
+@Log4j2
+public class CountryRegistry implements ICountryRegistry {
+
+    private final CountryRepository countryRepository;
+
+    private List<CountryEntity> countries;
+    private Map<UUID, CountryEntity> byUuid;
+    private Map<String, CountryEntity> byAlpha2;
+    private Map<String, CountryEntity> byAlpha3;
+    private Map<Integer, CountryEntity> byNumber;
+
+    public CountryRegistry(CountryRepository countryRepository) {
+        this.countryRepository = countryRepository;
+    }
+
+    @PostConstruct
+    public void init() {
+        List<CountryEntity> all = new ArrayList<>(countryRepository.findAll());
+        all.sort(comparing(CountryEntity::getCountry, nullsLast(naturalOrder())));
+
+        countries = Collections.unmodifiableList(all);
+        byUuid = index(all, CountryEntity::getUuid);
+        byAlpha2 = index(all, c -> upperCase(c.getAlpha2()));
+        byAlpha3 = index(all, c -> upperCase(c.getAlpha3()));
+        byNumber = index(all, CountryEntity::getNumber);
+
+        log.info("Country registry is loaded with " + countries.size() + " countries");
+    }
+
+    @Override
+    public List<CountryEntity> findAll() {
+        return countries;
+    }
+
+    @Override
+    public Optional<CountryEntity> findById(UUID uuid) {
+        return Optional.ofNullable(uuid != null ? byUuid.get(uuid) : null);
+    }
+
+    @Override
+    public Optional<CountryEntity> findByAlpha2(String alpha2) {
+        return Optional.ofNullable(byAlpha2.get(upperCase(alpha2)));
+    }
+
+    @Override
+    public Optional<CountryEntity> findByAlpha3(String alpha3) {
+        return Optional.ofNullable(byAlpha3.get(upperCase(alpha3)));
+    }
+
+    @Override
+    public Optional<CountryEntity> findByNumber(Integer number) {
+        return Optional.ofNullable(number != null ? byNumber.get(number) : null);
+    }
+
+    @Override
+    public CountryEntity resolve(CountryEntity country) {
+        if (country == null) return null;
+
+        // Getters of proxy would initialize it with a select
+        UUID uuid = country instanceof HibernateProxy
+                ? (UUID) ((HibernateProxy) country).getHibernateLazyInitializer().getIdentifier()
+                : country.getUuid();
+
+        return findById(uuid).orElse(country);
+    }
+
+    private static <K> Map<K, CountryEntity> index(List<CountryEntity> countries,
+                                                   Function<CountryEntity, K> key) {
+        Map<K, CountryEntity> index = new HashMap<>();
+
+        for (CountryEntity country : countries) {
+            K k = key.apply(country);
+            if (k != null) index.putIfAbsent(k, country);
+        }
+
+        return Collections.unmodifiableMap(index);
+    }
+
+    private static String upperCase(String code) {
+        return code != null ? code.toUpperCase(Locale.ROOT) : null;
+    }
+}
@@ -1,32 +1,41 @@
 package com.anyservice.service.user;
 
+import com.anyservice.core.SmtpConnectionPool;
 import com.anyservice.dto.user.UserDetailed;
 import com.anyservice.service.api.ICustomMailSender;
-import freemarker.template.Configuration;
-import freemarker.template.Template;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.core.convert.ConversionService;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.ui.freemarker.FreeMarkerTemplateUtils;
 
+import javax.mail.MessagingException;
 import javax.mail.internet.MimeMessage;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Service
 @Log4j2
 public class CustomMailSender implements ICustomMailSender {
 
     private final JavaMailSender sender;
-    private final Configuration freemarkerConfig;
     private final ConversionService conversionService;
     private final MessageSource messageSource;
+    private final VerificationEmailRenderer verificationEmailRenderer;
+    private final SmtpConnectionPool smtpConnectionPool;
+    private final ThreadPoolExecutor mailSendingExecutor;
 
     @Value("${spring.mail.username}")
     private String mailLogin;
@@ -37,92 +46,109 @@ public class CustomMailSender implements ICustomMailSender {
     @Value("${spring.application.test}")
     private boolean applicationTest;
 
-    public CustomMailSender(JavaMailSender sender, Configuration freemarkerConfig,
-                            ConversionService conversionService, MessageSource messageSource) {
+    public CustomMailSender(JavaMailSender sender, ConversionService conversionService,
+                            MessageSource messageSource, VerificationEmailRenderer verificationEmailRenderer,
+                            SmtpConnectionPool smtpConnectionPool,
+                            @Qualifier("mailSendingExecutor") ThreadPoolExecutor mailSendingExecutor) {
         this.sender = sender;
-        this.freemarkerConfig = freemarkerConfig;
         this.conversionService = conversionService;
         this.messageSource = messageSource;
-        freemarkerConfig.setClassForTemplateLoading(this.getClass(), "/");
+        this.verificationEmailRenderer = verificationEmailRenderer;
+        this.smtpConnectionPool = smtpConnectionPool;
+        this.mailSendingExecutor = mailSendingExecutor;
     }
 
     @Override
-    public void sendVerificationCode(UserDetailed user, UUID verificationCode) {
-        MimeMessage message = sender.createMimeMessage();
+    public void sendVerificationCode(UserDetailed user, String verificationCode) {
+        String initials = conversionService.convert(user.getInitials(), String.class);
 
-        MimeMessageHelper helper = new MimeMessageHelper(message);
+        sendVerificationCode(user.getContacts().getEmail(), initials, user.getUuid(), verificationCode,
+                LocaleContextHolder.getLocale());
+    }
 
-        // Prepare variables for a message
-        Map<String, Object> model = prepareModel(user, verificationCode);
+    @Override
+    public void sendVerificationCode(String email, String initials, UUID uuid, String verificationCode,
+                                     Locale locale) {
+        MimeMessage message = createVerificationMessage(email, initials, uuid, verificationCode, locale);
 
-        // Get user email address
-        String userEmailAddress = user.getContacts().getEmail();
+        // To not to spam emails and not to be blocked by mail server during tests
+        if (applicationTest) return;
 
         try {
-            // Get template
-            Template t = freemarkerConfig.getTemplate("/mail/verification.ftl");
+            smtpConnectionPool.send(message);
+        } catch (Throwable e) {
+            throw verificationEmailError(e);
+        }
+    }
 
-            // Set prepared variables to template and convert it to string
-            String text = FreeMarkerTemplateUtils.processTemplateIntoString(t, model);
+    @Override
+    public MimeMessage createVerificationMessage(String email, String initials, UUID uuid, String verificationCode,
+                                                 Locale locale) {
+        MimeMessage message = sender.createMimeMessage();
+
+        MimeMessageHelper helper = new MimeMessageHelper(message);
+
+        try {
+            // Only initials and the link are filled, the rest of the text is pre-rendered for the locale
+            String text = verificationEmailRenderer.renderText(initials,
+                    buildVerificationLink(uuid, verificationCode), locale);
 
             // Fill the message
             helper.setFrom(mailLogin);
-            helper.setTo(userEmailAddress);
+            helper.setTo(email);
             helper.setText(text, true); // set to html
-            helper.setSubject(messageSource.getMessage("user.verification.email.subject",
-                    null, LocaleContextHolder.getLocale()));
-
-            // To not to spam emails and not to be blocked by mail server during tests
-            if (!applicationTest) {
-                // Send message
-                sender.send(message);
-            }
+            helper.setSubject(verificationEmailRenderer.renderSubject(locale));
         } catch (Throwable e) {
-            String errorMessage = messageSource.getMessage("user.verification.email.error",
-                    new Object[]{e.getMessage()}, LocaleContextHolder.getLocale());
-
-            log.error(errorMessage, e.getMessage());
-            throw new RuntimeException(errorMessage, e);
+            throw verificationEmailError(e);
         }
+
+        return message;
+    }
+
+    @Override
+    public Map<MimeMessage, Exception> sendAll(Collection<MimeMessage> messages) {
+        Map<MimeMessage, Exception> failures = new ConcurrentHashMap<>();
+
+        // To not to spam emails and not to be blocked by mail server during tests
+        if (applicationTest || messages.isEmpty()) return failures;
+
+        // Every thread of executor takes its own connection from the pool
+        CompletableFuture<?>[] futures = messages.stream()
+                .map(message -> CompletableFuture.runAsync(() -> send(message), mailSendingExecutor)
+                        .exceptionally(e -> {
+                            failures.put(message, e instanceof CompletionException && e.getCause() != null
+                                    ? (Exception) e.getCause() : (Exception) e);
+                            return null;
+                        }))
+                .toArray(CompletableFuture[]::new);
+
+        CompletableFuture.allOf(futures).join();
+
+        return failures;
     }
 
     /**
-     * Prepare a set of variables (model) to be set to template further
-     *
-     * @param user             user
-     * @param verificationCode verification code
-     * @return map of variables_names - variables_values for message template
+     * Close SMTP connections, those are not used for a while
      */
-    private Map<String, Object> prepareModel(UserDetailed user, UUID verificationCode) {
-        Map<String, Object> model = new HashMap<>();
+    @Scheduled(fixedDelayString = "${mail.smtp.pool.eviction.millis}")
+    public void evictIdleConnections() {
+        smtpConnectionPool.evictIdle();
+    }
 
-        String initials = conversionService.convert(user.getInitials(), String.class);
-        String verificationLink = buildVerificationLink(user.getUuid(), verificationCode);
-
-        // Text messages on specific language
-        String greetings = messageSource.getMessage("user.verification.email.greetings",
-                null, LocaleContextHolder.getLocale());
-        String explanation = messageSource.getMessage("user.verification.email.explanation",
-                null, LocaleContextHolder.getLocale());
-        String whatToDo = messageSource.getMessage("user.verification.email.whattodo",
-                null, LocaleContextHolder.getLocale());
-        String linkText = messageSource.getMessage("user.verification.email.linktext",
-                null, LocaleContextHolder.getLocale());
-        String ifWrongAddress = messageSource.getMessage("user.verification.email.ifwrongaddress",
-                null, LocaleContextHolder.getLocale());
-        String companyCredentials = messageSource.getMessage("user.verification.email.companycredentials",
-                null, LocaleContextHolder.getLocale());
-
-        model.put("greetings", greetings);
-        model.put("initials", initials);
-        model.put("explanation", explanation);
-        model.put("whattodo", whatToDo);
-        model.put("link", verificationLink);
-        model.put("linktext", linkText);
-        model.put("ifwrongaddress", ifWrongAddress);
-        model.put("companycredentials", companyCredentials);
-
-        return model;
+    private void send(MimeMessage message) {
+        try {
+            smtpConnectionPool.send(message);
+        } catch (MessagingException e) {
+            throw new MailSendException(e.getMessage(), e);
+        }
+    }
+
+    private RuntimeException verificationEmailError(Throwable e) {
+        String errorMessage = messageSource.getMessage("user.verification.email.error",
+                new Object[]{e.getMessage()}, LocaleContextHolder.getLocale());
+
+        log.error(errorMessage, e.getMessage());
+        return new RuntimeException(errorMessage, e);
     }
 
     /**
@@ -132,7 +158,7 @@ public class CustomMailSender implements ICustomMailSender {
      * @param verificationCode code for verification of user's account
      * @return complete url for clicking
      */
-    private String buildVerificationLink(UUID uuid, UUID verificationCode) {
+    private String buildVerificationLink(UUID uuid, String verificationCode) {
         return applicationUrl +
                 "/user/verification" +
                 "/" + uuid +
@@ -0,0 +1,213 @@
+package com.anyservice.service.user;
+
+import com.anyservice.config.HazelcastDataSerializableFactory;
+import com.anyservice.core.KeyedTokenBucket;
+import com.anyservice.core.exceptions.TooManyLoginAttemptsException;
+import com.anyservice.service.api.ILoginThrottle;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.ITopic;
+import com.hazelcast.core.Message;
+import com.hazelcast.core.MessageListener;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Token buckets of login attempts per user name and per client address
+ * <p>
+ * Every user name and every address has its own bucket, so attempts against one of them never limit the others.
+ * User names are compared ignoring case and surrounding spaces, so that their variants share the bucket
+ * <p>
+ * Attempts are counted locally without any locks and periodically published to the other nodes
+ * through Hazelcast topic, so the limits are shared by the cluster with a delay of one sync period
+ */
+@Service
+@Log4j2
+public class LoginThrottle implements ILoginThrottle, MessageListener<LoginThrottle.Attempts> {
+
+    public static final String SYNC_TOPIC = "loginThrottleTopic";
+
+    private final HazelcastInstance hazelcastInstance;
+    private final MessageSource messageSource;
+
+    @Value("${security.login.throttle.max.keys}")
+    private int maxKeys;
+
+    @Value("${security.login.throttle.user.name.capacity}")
+    private int userNameCapacity;
+
+    @Value("${security.login.throttle.user.name.refill.seconds}")
+    private long userNameRefillSeconds;
+
+    @Value("${security.login.throttle.address.capacity}")
+    private int addressCapacity;
+
+    @Value("${security.login.throttle.address.refill.seconds}")
+    private long addressRefillSeconds;
+
+    private KeyedTokenBucket userNames;
+    private KeyedTokenBucket addresses;
+    private ITopic<Attempts> syncTopic;
+
+    public LoginThrottle(HazelcastInstance hazelcastInstance, MessageSource messageSource) {
+        this.hazelcastInstance = hazelcastInstance;
+        this.messageSource = messageSource;
+    }
+
+    @PostConstruct
+    public void init() {
+        userNames = new KeyedTokenBucket(maxKeys, userNameCapacity, userNameRefillSeconds * 1000);
+        addresses = new KeyedTokenBucket(maxKeys, addressCapacity, addressRefillSeconds * 1000);
+
+        syncTopic = hazelcastInstance.getTopic(SYNC_TOPIC);
+        syncTopic.addMessageListener(this);
+    }
+
+    @Override
+    public void acquire(String userName, String clientAddress) {
+        userName = normalize(userName);
+        clientAddress = normalizeAddress(clientAddress);
+
+        if (clientAddress != null) {
+            long waitMillis = addresses.tryAcquire(clientAddress);
+            if (waitMillis > 0) throw tooManyAttempts(waitMillis);
+        }
+
+        if (userName != null) {
+            long waitMillis = userNames.tryAcquire(userName);
+
+            if (waitMillis > 0) {
+                // The attempt is not made, so the address should not pay for it
+                if (clientAddress != null) addresses.release(clientAddress);
+                throw tooManyAttempts(waitMillis);
+            }
+        }
+    }
+
+    @Override
+    public void release(String userName, String clientAddress) {
+        userName = normalize(userName);
+        clientAddress = normalizeAddress(clientAddress);
+
+        if (userName != null) userNames.release(userName);
+        if (clientAddress != null) addresses.release(clientAddress);
+    }
+
+    /**
+     * Publish attempts counted locally since the previous sync
+     */
+    @Scheduled(fixedDelayString = "${security.login.throttle.sync.millis}")
+    public void sync() {
+        Attempts attempts = new Attempts(userNames.drainPending(), addresses.drainPending());
+
+        if (attempts.isEmpty()) return;
+
+        try {
+            syncTopic.publish(attempts);
+        } catch (Exception e) {
+            // Every node still limits attempts made through it
+            log.error("Cannot publish login attempts", e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message<Attempts> message) {
+        // Local attempts are already counted
+        if (message.getPublishingMember() != null && message.getPublishingMember().localMember()) return;
+
+        Attempts attempts = message.getMessageObject();
+
+        attempts.userNames.forEach(userNames::apply);
+        attempts.addresses.forEach(addresses::apply);
+    }
+
+    private static String normalize(String userName) {
+        return userName != null ? userName.trim().toLowerCase(Locale.ROOT) : null;
+    }
+
+    private static String normalizeAddress(String clientAddress) {
+        return clientAddress != null ? clientAddress.trim() : null;
+    }
+
+    private TooManyLoginAttemptsException tooManyAttempts(long waitMillis) {
+        String message = messageSource.getMessage("login.throttle.too.many.attempts",
+                null, LocaleContextHolder.getLocale());
+
+        // Round up, so that the client does not come back too early
+        return new TooManyLoginAttemptsException(message, (waitMillis + 999) / 1000);
+    }
+
+    /**
+     * Attempts made on a node during one sync period, by user name and by address
+     */
+    public static class Attempts implements IdentifiedDataSerializable {
+        private Map<String, Long> userNames;
+        private Map<String, Long> addresses;
+
+        /**
+         * For deserialization only
+         */
+        public Attempts() {
+        }
+
+        public Attempts(Map<String, Long> userNames, Map<String, Long> addresses) {
+            this.userNames = userNames;
+            this.addresses = addresses;
+        }
+
+        public boolean isEmpty() {
+            return userNames.isEmpty() && addresses.isEmpty();
+        }
+
+        @Override
+        public int getFactoryId() {
+            return HazelcastDataSerializableFactory.FACTORY_ID;
+        }
+
+        @Override
+        public int getId() {
+            return HazelcastDataSerializableFactory.LOGIN_ATTEMPTS;
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            writeAttempts(out, userNames);
+            writeAttempts(out, addresses);
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            userNames = readAttempts(in);
+            addresses = readAttempts(in);
+        }
+
+        private static void writeAttempts(ObjectDataOutput out, Map<String, Long> attempts) throws IOException {
+            out.writeInt(attempts.size());
+            for (Map.Entry<String, Long> attempt : attempts.entrySet()) {
+                out.writeUTF(attempt.getKey());
+                out.writeLong(attempt.getValue());
+            }
+        }
+
+        private static Map<String, Long> readAttempts(ObjectDataInput in) throws IOException {
+            int size = in.readInt();
+            Map<String, Long> attempts = new HashMap<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                attempts.put(in.readUTF(), in.readLong());
+            }
+            return attempts;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.anyservice.service.user;
+
+import com.anyservice.core.enums.MailState;
+import com.anyservice.core.enums.MailType;
+import com.anyservice.dto.user.UserDetailed;
+import com.anyservice.entity.mail.MailOutboxEntity;
+import com.anyservice.repository.MailOutboxRepository;
+import com.anyservice.service.api.IMailOutbox;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+@Service
+public class MailOutbox implements IMailOutbox {
+
+    public static final String USER_UUID = "userUuid";
+    public static final String INITIALS = "initials";
+    public static final String VERIFICATION_CODE = "verificationCode";
+
+    private final MailOutboxRepository mailOutboxRepository;
+    private final ConversionService conversionService;
+
+    public MailOutbox(MailOutboxRepository mailOutboxRepository, ConversionService conversionService) {
+        this.mailOutboxRepository = mailOutboxRepository;
+        this.conversionService = conversionService;
+    }
+
+    @Override
+    @Transactional
+    public void enqueueVerificationCode(UserDetailed user, String verificationCode) {
+        OffsetDateTime now = OffsetDateTime.now();
+
+        // Everything, that is needed to render the email later
+        Map<String, String> payload = new HashMap<>();
+        payload.put(USER_UUID, user.getUuid().toString());
+        payload.put(INITIALS, conversionService.convert(user.getInitials(), String.class));
+        payload.put(VERIFICATION_CODE, verificationCode);
+
+        MailOutboxEntity mail = MailOutboxEntity.builder()
+                .uuid(UUID.randomUUID())
+                .dtCreate(now)
+                .type(MailType.VERIFICATION.name())
+                .recipient(user.getContacts().getEmail())
+                .locale(LocaleContextHolder.getLocale().toLanguageTag())
+                .payload(payload)
+                .state(MailState.PENDING.name())
+                .attempts(0)
+                .nextAttemptAt(now)
+                .build();
+
+        mailOutboxRepository.save(mail);
+    }
+}
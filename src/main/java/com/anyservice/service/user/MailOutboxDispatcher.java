@@ -0,0 +1,288 @@
+package com.anyservice.service.user;
+
+import com.anyservice.core.enums.MailState;
+import com.anyservice.core.enums.MailType;
+import com.anyservice.entity.mail.MailOutboxEntity;
+import com.anyservice.repository.MailOutboxRepository;
+import com.anyservice.service.api.ICustomMailSender;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.mail.internet.MimeMessage;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.anyservice.service.user.MailOutbox.*;
+
+/**
+ * Sends emails from outbox in batches, outside of any transaction
+ * <p>
+ * Emails of a batch are sent in parallel through pooled SMTP connections.
+ * <p>
+ * Batch is taken in a short transaction, that moves the next attempt of its emails forward by a lease period,
+ * so that they are not taken again by this or another node while being sent.
+ * Failed emails are retried with exponential backoff and dead-lettered, when all the attempts are spent.
+ * Sent emails are deleted after retention period
+ */
+@Service
+@Log4j2
+public class MailOutboxDispatcher {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final MailOutboxRepository mailOutboxRepository;
+    private final ICustomMailSender mailSender;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${mail.outbox.batch.size}")
+    private int batchSize;
+
+    @Value("${mail.outbox.max.attempts}")
+    private int maxAttempts;
+
+    @Value("${mail.outbox.lease.seconds}")
+    private long leaseSeconds;
+
+    @Value("${mail.outbox.backoff.initial.seconds}")
+    private long initialBackoffSeconds;
+
+    @Value("${mail.outbox.backoff.max.seconds}")
+    private long maxBackoffSeconds;
+
+    @Value("${mail.outbox.retention.days}")
+    private long retentionDays;
+
+    @Value("${mail.outbox.scheduled}")
+    private boolean scheduled;
+
+    private Counter sentCounter;
+    private Counter failedCounter;
+    private Counter deadCounter;
+    private Timer sendTimer;
+
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong lagSeconds = new AtomicLong();
+
+    public MailOutboxDispatcher(MailOutboxRepository mailOutboxRepository, ICustomMailSender mailSender,
+                                TransactionTemplate transactionTemplate, MeterRegistry meterRegistry) {
+        this.mailOutboxRepository = mailOutboxRepository;
+        this.mailSender = mailSender;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        sentCounter = meterRegistry.counter("mail.outbox.sent");
+        failedCounter = meterRegistry.counter("mail.outbox.failed");
+        deadCounter = meterRegistry.counter("mail.outbox.dead");
+        sendTimer = Timer.builder("mail.outbox.send.latency")
+                .description("Time of sending one batch")
+                .register(meterRegistry);
+
+        Gauge.builder("mail.outbox.pending", pending, AtomicLong::get)
+                .register(meterRegistry);
+        Gauge.builder("mail.outbox.lag.seconds", lagSeconds, AtomicLong::get)
+                .description("Age of the oldest pending email")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Send due emails by schedule, unless it is disabled
+     */
+    @Scheduled(fixedDelayString = "${mail.outbox.poll.millis}")
+    public void scheduledDispatch() {
+        if (scheduled) dispatch();
+    }
+
+    /**
+     * Delete old sent emails by schedule, unless it is disabled
+     */
+    @Scheduled(fixedDelayString = "${mail.outbox.retention.sweep.millis}")
+    public void scheduledPurge() {
+        if (scheduled) purge();
+    }
+
+    /**
+     * Send one batch of due emails
+     *
+     * @return amount of emails, taken from outbox
+     */
+    public int dispatch() {
+        List<MailOutboxEntity> batch;
+
+        try {
+            batch = takeBatch();
+        } catch (Exception e) {
+            log.error("Cannot take emails from outbox", e);
+            return 0;
+        }
+
+        Map<MimeMessage, MailOutboxEntity> messages = new LinkedHashMap<>();
+
+        for (MailOutboxEntity mail : batch) {
+            try {
+                messages.put(createMessage(mail), mail);
+            } catch (Exception e) {
+                saveFailure(mail, e);
+            }
+        }
+
+        Map<MimeMessage, Exception> failures = sendTimer.record(() -> mailSender.sendAll(messages.keySet()));
+
+        List<UUID> sent = new ArrayList<>();
+
+        for (Map.Entry<MimeMessage, MailOutboxEntity> entry : messages.entrySet()) {
+            Exception failure = failures.get(entry.getKey());
+
+            if (failure == null) {
+                sent.add(entry.getValue().getUuid());
+            } else {
+                saveFailure(entry.getValue(), failure);
+            }
+        }
+
+        if (!sent.isEmpty()) {
+            transactionTemplate.execute(status -> mailOutboxRepository.markSent(sent, MailState.SENT.name(),
+                    OffsetDateTime.now(), Collections.emptyMap()));
+            sentCounter.increment(sent.size());
+        }
+
+        updateBacklog();
+
+        return batch.size();
+    }
+
+    /**
+     * Delete emails, those were sent longer than retention period ago
+     *
+     * @return amount of deleted emails
+     */
+    public int purge() {
+        try {
+            Integer deleted = transactionTemplate.execute(status -> mailOutboxRepository.deleteByStateAndDtSentBefore(
+                    MailState.SENT.name(), OffsetDateTime.now().minusDays(retentionDays)));
+
+            return deleted != null ? deleted : 0;
+        } catch (Exception e) {
+            log.error("Cannot delete sent emails from outbox", e);
+            return 0;
+        }
+    }
+
+    /**
+     * Take due emails and lease them for the time of sending
+     *
+     * @return leased emails, detached from persistence context
+     */
+    private List<MailOutboxEntity> takeBatch() {
+        List<MailOutboxEntity> batch = transactionTemplate.execute(status -> {
+            OffsetDateTime now = OffsetDateTime.now();
+            List<MailOutboxEntity> due = mailOutboxRepository.findDueForUpdate(now, batchSize);
+
+            // Managed entities are flushed at commit
+            for (MailOutboxEntity mail : due) {
+                mail.setAttempts(mail.getAttempts() + 1);
+                mail.setNextAttemptAt(now.plusSeconds(leaseSeconds));
+            }
+
+            return due;
+        });
+
+        return batch != null ? batch : Collections.emptyList();
+    }
+
+    private MimeMessage createMessage(MailOutboxEntity mail) {
+        MailType type = MailType.valueOf(mail.getType());
+
+        switch (type) {
+            case VERIFICATION:
+                return mailSender.createVerificationMessage(mail.getRecipient(),
+                        mail.getPayload().get(INITIALS),
+                        UUID.fromString(mail.getPayload().get(USER_UUID)),
+                        mail.getPayload().get(VERIFICATION_CODE),
+                        mail.getLocale() != null ? Locale.forLanguageTag(mail.getLocale()) : Locale.getDefault());
+            default:
+                throw new IllegalStateException("Unknown type of email " + type);
+        }
+    }
+
+    /**
+     * Schedule the next attempt OR dead-letter the email, if there are no attempts left
+     *
+     * @param mail  email
+     * @param cause reason of the failure
+     */
+    private void saveFailure(MailOutboxEntity mail, Exception cause) {
+        failedCounter.increment();
+
+        boolean dead = mail.getAttempts() >= maxAttempts;
+
+        MailState state = dead ? MailState.DEAD : MailState.PENDING;
+        OffsetDateTime nextAttemptAt = dead ? mail.getNextAttemptAt() : OffsetDateTime.now().plus(backoff(mail.getAttempts()));
+
+        String error = String.valueOf(cause.getMessage());
+        if (error.length() > MAX_ERROR_LENGTH) error = error.substring(0, MAX_ERROR_LENGTH);
+
+        if (dead) {
+            deadCounter.increment();
+            log.error("Email " + mail.getUuid() + " is dead-lettered after " + mail.getAttempts() + " attempts", cause);
+        } else {
+            log.warn("Email " + mail.getUuid() + " is not sent, attempt " + mail.getAttempts() + ": " + error);
+        }
+
+        String lastError = error;
+
+        try {
+            transactionTemplate.execute(status -> mailOutboxRepository.markFailed(mail.getUuid(), state.name(),
+                    nextAttemptAt, lastError));
+        } catch (Exception e) {
+            // The lease will expire and the email will be retried anyway
+            log.error("Cannot save failure of email " + mail.getUuid(), e);
+        }
+    }
+
+    /**
+     * Exponential delay before the next attempt, with a little jitter, so that failed emails are spread in time
+     *
+     * @param attempts amount of already made attempts
+     * @return delay
+     */
+    private Duration backoff(int attempts) {
+        long seconds = initialBackoffSeconds << Math.min(attempts - 1, 30);
+        if (seconds <= 0 || seconds > maxBackoffSeconds) seconds = maxBackoffSeconds;
+
+        long jitterMillis = ThreadLocalRandom.current().nextLong(seconds * 100 + 1);
+
+        return Duration.ofSeconds(seconds).plusMillis(jitterMillis);
+    }
+
+    private void updateBacklog() {
+        try {
+            pending.set(mailOutboxRepository.countByState(MailState.PENDING.name()));
+
+            OffsetDateTime oldest = mailOutboxRepository.findOldestDtCreate(MailState.PENDING.name());
+            lagSeconds.set(oldest != null ? Duration.between(oldest, OffsetDateTime.now()).getSeconds() : 0);
+        } catch (Exception e) {
+            log.error("Cannot measure outbox backlog", e);
+        }
+    }
+}
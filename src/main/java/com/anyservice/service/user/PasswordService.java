@@ -1,22 +1,206 @@
 package com.anyservice.service.user;
 
+import com.anyservice.core.exceptions.ServiceOverloadedException;
 import com.anyservice.service.api.IPasswordService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.log4j.Log4j2;
 import org.mindrot.jbcrypt.BCrypt;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Supplier;
+
 @Service
+@Log4j2
 public class PasswordService implements IPasswordService {
 
+    /**
+     * Limits of cost, allowed by BCrypt
+     */
+    private static final int MIN_LOG_ROUNDS = 4;
+    private static final int MAX_LOG_ROUNDS = 30;
+
+    private final ThreadPoolExecutor passwordHashingExecutor;
+    private final MessageSource messageSource;
+    private final MeterRegistry meterRegistry;
+
     @Value("${user.validation.password.rounds}")
     private int logRounds;
 
+    @Value("${user.validation.password.executor.retry.after.seconds}")
+    private long retryAfterSeconds;
+
+    @Value("${user.validation.password.calibration.enabled}")
+    private boolean calibrationEnabled;
+
+    @Value("${user.validation.password.calibration.budget.millis}")
+    private long calibrationBudgetMillis;
+
+    @Value("${user.validation.password.calibration.min.rounds}")
+    private int calibrationMinRounds;
+
+    private Timer hashTimer;
+    private Timer verifyTimer;
+
+    public PasswordService(@Qualifier("passwordHashingExecutor") ThreadPoolExecutor passwordHashingExecutor,
+                           MessageSource messageSource, MeterRegistry meterRegistry) {
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.messageSource = messageSource;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        hashTimer = Timer.builder("password.hashing.latency")
+                .tag("operation", "hash")
+                .register(meterRegistry);
+        verifyTimer = Timer.builder("password.hashing.latency")
+                .tag("operation", "verify")
+                .register(meterRegistry);
+
+        Gauge.builder("password.hashing.queue.size", passwordHashingExecutor, e -> e.getQueue().size())
+                .register(meterRegistry);
+        Gauge.builder("password.hashing.active", passwordHashingExecutor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+        Gauge.builder("password.hashing.rounds", this, PasswordService::getLogRounds)
+                .register(meterRegistry);
+
+        if (calibrationEnabled) {
+            logRounds = calibrate();
+        }
+    }
+
+    /**
+     * Find the highest cost, hashing with that fits into the configured latency budget on this hardware
+     * <p>
+     * Every next cost doubles the time of hashing,
+     * so we are increasing it until the next one does not fit into budget anymore
+     *
+     * @return calibrated cost, but not less than configured minimum
+     */
+    private int calibrate() {
+        final String sample = "calibration" + System.nanoTime();
+
+        int rounds = Math.max(MIN_LOG_ROUNDS, calibrationMinRounds);
+
+        // Warm up, so that the first measurement is not affected by class loading and JIT
+        BCrypt.hashpw(sample, BCrypt.gensalt(MIN_LOG_ROUNDS));
+
+        long millis = measure(sample, rounds);
+
+        while (rounds < MAX_LOG_ROUNDS && millis * 2 <= calibrationBudgetMillis) {
+            rounds++;
+            millis = measure(sample, rounds);
+        }
+
+        // The last measured cost could exceed the budget
+        if (millis > calibrationBudgetMillis && rounds > calibrationMinRounds) rounds--;
+
+        log.info("BCrypt cost calibrated to " + rounds + " for the budget of " + calibrationBudgetMillis + " ms");
+
+        return rounds;
+    }
+
+    private static long measure(String sample, int rounds) {
+        long start = System.nanoTime();
+        BCrypt.hashpw(sample, BCrypt.gensalt(rounds));
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    /**
+     * Current cost of hashing
+     *
+     * @return log2 of the number of rounds
+     */
+    public int getLogRounds() {
+        return logRounds;
+    }
+
     public String hash(String password) {
-        return BCrypt.hashpw(password, BCrypt.gensalt(logRounds));
+        return join(hashAsync(password));
     }
 
     public boolean verifyHash(String password, String hash) {
-        return BCrypt.checkpw(password, hash);
+        return join(verifyHashAsync(password, hash));
+    }
+
+    @Override
+    public boolean needsRehash(String hash) {
+        return extractLogRounds(hash) < logRounds;
+    }
+
+    /**
+     * Extract the cost from BCrypt hash, that looks like $2a$12$...
+     *
+     * @param hash BCrypt hash
+     * @return cost OR -1 if hash has unknown format
+     */
+    private static int extractLogRounds(String hash) {
+        if (hash == null || hash.length() < 7 || hash.charAt(0) != '$') return -1;
+
+        // Minor version of algorithm may be absent - $2$12$...
+        int offset = hash.charAt(3) == '$' ? 4 : 3;
+
+        try {
+            return Integer.parseInt(hash.substring(offset, offset + 2));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> hashAsync(String password) {
+        return submit(() -> hashTimer.record(() -> BCrypt.hashpw(password, BCrypt.gensalt(logRounds))));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> verifyHashAsync(String password, String hash) {
+        return submit(() -> verifyTimer.record(() -> BCrypt.checkpw(password, hash)));
+    }
+
+    /**
+     * Submit hashing task into dedicated executor
+     *
+     * @param task hashing task
+     * @param <T>  type of result
+     * @return future result of a task
+     * @throws ServiceOverloadedException if the queue of executor is full
+     */
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, passwordHashingExecutor);
+        } catch (RejectedExecutionException e) {
+            String message = messageSource.getMessage("password.service.overloaded",
+                    null, LocaleContextHolder.getLocale());
+            throw new ServiceOverloadedException(message, retryAfterSeconds, e);
+        }
+    }
+
+    /**
+     * Wait for result and throw up the original exception, if any
+     *
+     * @param future future result
+     * @param <T>    type of result
+     * @return result
+     */
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw e;
+        }
     }
 
 }
@@ -0,0 +1,95 @@
+package com.anyservice.service.user;
+
+import com.anyservice.core.ExpiringLruCache;
+import com.anyservice.service.api.IPrincipalCache;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.ITopic;
+import com.hazelcast.core.Message;
+import com.hazelcast.core.MessageListener;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.UUID;
+
+import static com.anyservice.core.TransactionCallbacks.afterCommit;
+
+/**
+ * Bounded node-local cache of authenticated principals
+ * <p>
+ * Entries are invalidated on all nodes of a cluster through Hazelcast topic,
+ * and also expire by themselves after configured period of time
+ */
+@Service
+@Log4j2
+public class PrincipalCache implements IPrincipalCache, MessageListener<UUID> {
+
+    public static final String INVALIDATION_TOPIC = "principalInvalidationTopic";
+
+    private final HazelcastInstance hazelcastInstance;
+
+    @Value("${security.principal.cache.size}")
+    private int maxSize;
+
+    @Value("${security.principal.cache.ttl.seconds}")
+    private long ttlSeconds;
+
+    private ExpiringLruCache<String, UserDetails> principals;
+    private ITopic<UUID> invalidationTopic;
+
+    public PrincipalCache(HazelcastInstance hazelcastInstance) {
+        this.hazelcastInstance = hazelcastInstance;
+    }
+
+    @PostConstruct
+    public void init() {
+        principals = new ExpiringLruCache<>(maxSize);
+
+        invalidationTopic = hazelcastInstance.getTopic(INVALIDATION_TOPIC);
+        invalidationTopic.addMessageListener(this);
+    }
+
+    @Override
+    public UserDetails getUserFromCache(String username) {
+        return principals.get(username);
+    }
+
+    @Override
+    public void putUserInCache(UserDetails user) {
+        principals.put(user.getUsername(), user, System.currentTimeMillis() + ttlSeconds * 1000);
+    }
+
+    @Override
+    public void removeUserFromCache(String username) {
+        principals.remove(username);
+    }
+
+    @Override
+    public void evict(UUID uuid) {
+        // Publish only committed changes, otherwise other nodes could load the old version once again
+        afterCommit(() -> publishEviction(uuid));
+    }
+
+    /**
+     * Remove principal locally and notify all the other nodes
+     *
+     * @param uuid user identifier
+     */
+    private void publishEviction(UUID uuid) {
+        removeUserFromCache(uuid.toString());
+
+        try {
+            invalidationTopic.publish(uuid);
+        } catch (Exception e) {
+            // Entry will expire on other nodes by ttl anyway
+            log.error("Cannot publish principal eviction for user " + uuid, e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message<UUID> message) {
+        removeUserFromCache(message.getMessageObject().toString());
+    }
+}
@@ -0,0 +1,194 @@
+package com.anyservice.service.user;
+
+import com.anyservice.config.HazelcastDataSerializableFactory;
+import com.anyservice.core.CountingBloomFilter;
+import com.anyservice.repository.UserRepository;
+import com.anyservice.service.api.IUserNameIndex;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.ITopic;
+import com.hazelcast.core.Message;
+import com.hazelcast.core.MessageListener;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.stream.Stream;
+
+import static com.anyservice.core.TransactionCallbacks.afterCommit;
+
+/**
+ * Counting Bloom filter of all user names, built from a streaming scan of users at startup
+ * <p>
+ * Until it's built, every name is reported as possibly taken.
+ * Changes are applied locally and published to the other nodes through Hazelcast topic
+ */
+@Service
+@Log4j2
+public class UserNameIndex implements IUserNameIndex, MessageListener<UserNameIndex.Change> {
+
+    public static final String CHANGES_TOPIC = "userNameIndexTopic";
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final HazelcastInstance hazelcastInstance;
+
+    @Value("${user.username.index.expected.size}")
+    private int expectedSize;
+
+    @Value("${user.username.index.false.positive.rate}")
+    private double falsePositiveRate;
+
+    private volatile CountingBloomFilter filter;
+    private volatile CountingBloomFilter building;
+
+    private ITopic<Change> changesTopic;
+
+    public UserNameIndex(UserRepository userRepository, TransactionTemplate transactionTemplate,
+                         HazelcastInstance hazelcastInstance) {
+        this.userRepository = userRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.hazelcastInstance = hazelcastInstance;
+    }
+
+    @PostConstruct
+    public void init() {
+        changesTopic = hazelcastInstance.getTopic(CHANGES_TOPIC);
+        changesTopic.addMessageListener(this);
+    }
+
+    /**
+     * Build the filter from all the names in database
+     * <p>
+     * Names added meanwhile get into the new filter as well,
+     * while removals are skipped for it - that can only lead to false "taken" answers
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        CountingBloomFilter newFilter = new CountingBloomFilter(expectedSize, falsePositiveRate);
+        building = newFilter;
+
+        try {
+            Long count = transactionTemplate.execute(status -> {
+                try (Stream<String> userNames = userRepository.streamAllUserNames()) {
+                    return userNames.peek(newFilter::add).count();
+                }
+            });
+
+            filter = newFilter;
+
+            log.info("User name index is built from " + count + " users");
+        } catch (Exception e) {
+            // Every name stays possibly taken, so it only costs a query
+            log.error("Cannot build user name index", e);
+        } finally {
+            building = null;
+        }
+    }
+
+    @Override
+    public boolean mightExist(String userName) {
+        CountingBloomFilter current = filter;
+        return current == null || current.mightContain(userName);
+    }
+
+    @Override
+    public void add(String userName) {
+        // Even if the transaction is rolled back, it costs only a false "taken" answer
+        addLocally(userName);
+        afterCommit(() -> publish(new Change(userName, true)));
+    }
+
+    @Override
+    public void remove(String userName) {
+        // Until the transaction is committed, the name is still taken
+        afterCommit(() -> {
+            removeLocally(userName);
+            publish(new Change(userName, false));
+        });
+    }
+
+    @Override
+    public void onMessage(Message<Change> message) {
+        // Local changes are already applied
+        if (message.getPublishingMember() != null && message.getPublishingMember().localMember()) return;
+
+        Change change = message.getMessageObject();
+
+        if (change.added) {
+            addLocally(change.userName);
+        } else {
+            removeLocally(change.userName);
+        }
+    }
+
+    private void addLocally(String userName) {
+        CountingBloomFilter current = filter;
+        CountingBloomFilter next = building;
+
+        if (current != null) current.add(userName);
+        if (next != null && next != current) next.add(userName);
+    }
+
+    private void removeLocally(String userName) {
+        CountingBloomFilter current = filter;
+        if (current != null) current.remove(userName);
+    }
+
+    private void publish(Change change) {
+        try {
+            changesTopic.publish(change);
+        } catch (Exception e) {
+            // Other nodes will see it after their next rebuild, meanwhile only the database check is reliable
+            log.error("Cannot publish user name index change", e);
+        }
+    }
+
+    /**
+     * Name of a user, that was taken or released
+     */
+    public static class Change implements IdentifiedDataSerializable {
+        private String userName;
+        private boolean added;
+
+        /**
+         * For deserialization only
+         */
+        public Change() {
+        }
+
+        public Change(String userName, boolean added) {
+            this.userName = userName;
+            this.added = added;
+        }
+
+        @Override
+        public int getFactoryId() {
+            return HazelcastDataSerializableFactory.FACTORY_ID;
+        }
+
+        @Override
+        public int getId() {
+            return HazelcastDataSerializableFactory.USER_NAME_CHANGE;
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            out.writeUTF(userName);
+            out.writeBoolean(added);
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            userName = in.readUTF();
+            added = in.readBoolean();
+        }
+    }
+}
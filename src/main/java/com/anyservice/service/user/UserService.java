@@ -1,7 +1,11 @@
 package com.anyservice.service.user;
 
+import com.anyservice.core.Keyset;
 import com.anyservice.core.enums.UserRole;
 import com.anyservice.core.enums.UserState;
+import com.anyservice.core.exceptions.ServiceOverloadedException;
+import com.anyservice.dto.api.KeysetPage;
+import com.anyservice.dto.api.PageQuery;
 import com.anyservice.dto.file.FileDetailed;
 import com.anyservice.dto.user.UserBrief;
 import com.anyservice.dto.user.UserDetailed;
@@ -9,28 +13,46 @@ import com.anyservice.dto.user.UserForChangePassword;
 import com.anyservice.entity.user.UserEntity;
 import com.anyservice.repository.UserRepository;
 import com.anyservice.service.aop.markers.RemovePasswordFromReturningValue;
-import com.anyservice.service.api.ICustomMailSender;
 import com.anyservice.service.api.IFileService;
+import com.anyservice.service.api.ILoginThrottle;
+import com.anyservice.service.api.IMailOutbox;
 import com.anyservice.service.api.IPasswordService;
+import com.anyservice.service.api.IPrincipalCache;
+import com.anyservice.service.api.IUserNameIndex;
 import com.anyservice.service.api.IUserService;
+import com.anyservice.service.api.IVerificationCodeService;
+import com.anyservice.service.converters.user.entity_dto.UserEntityToDetailedConverter;
+import com.anyservice.service.batch.BatchLookup;
+import com.anyservice.service.export.NdjsonExporter;
 import com.anyservice.service.validators.api.IUserValidator;
 import com.anyservice.web.security.exceptions.UserNotFoundException;
 import com.anyservice.web.security.exceptions.WrongPasswordException;
 import lombok.extern.log4j.Log4j2;
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.cache.Cache;
-import org.springframework.cache.CacheManager;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.core.convert.ConversionService;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.beans.PropertyDescriptor;
+import java.io.OutputStream;
 import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.anyservice.core.DateUtils.convertOffsetDateTimeToDate;
-import static com.anyservice.core.DateUtils.convertOffsetDateTimeToMills;
+import static com.anyservice.core.KeysetPagination.resolveLimit;
+import static com.anyservice.core.KeysetPagination.toPage;
 import static org.springframework.context.i18n.LocaleContextHolder.getLocale;
 
 @Service
@@ -38,27 +60,66 @@ import static org.springframework.context.i18n.LocaleContextHolder.getLocale;
 @Log4j2
 public class UserService implements IUserService {
 
+    /**
+     * Names of fields of {@link UserDetailed}, those can be requested
+     */
+    private static final Set<String> FIELDS = Collections.unmodifiableSet(
+            Arrays.stream(BeanUtils.getPropertyDescriptors(UserDetailed.class))
+                    .map(PropertyDescriptor::getName)
+                    .filter(name -> !"class".equals(name) && !"password".equals(name))
+                    .collect(Collectors.toSet()));
+
     private final UserRepository userRepository;
     private final ConversionService conversionService;
     private final IUserValidator userValidator;
     private final IPasswordService passwordService;
     private final MessageSource messageSource;
-    private final CacheManager cacheManager;
-    private final ICustomMailSender mailSender;
+    private final IVerificationCodeService verificationCodeService;
+    private final IMailOutbox mailOutbox;
     private final IFileService fileService;
+    private final IPrincipalCache principalCache;
+    private final TransactionTemplate transactionTemplate;
+    private final ILoginThrottle loginThrottle;
+    private final NdjsonExporter ndjsonExporter;
+    private final BatchLookup batchLookup;
+    private final IUserNameIndex userNameIndex;
+    private final UserEntityToDetailedConverter userEntityToDetailedConverter;
+    private final ThreadPoolExecutor passwordRehashExecutor;
+
+    @Value("${pagination.limit.default}")
+    private int defaultPageLimit;
+
+    @Value("${pagination.limit.max}")
+    private int maxPageLimit;
+
+    @Value("${pagination.unpaged.limit}")
+    private int unpagedLimit;
 
     public UserService(UserRepository userRepository, ConversionService conversionService,
                        IUserValidator userValidator, IPasswordService passwordService,
-                       MessageSource messageSource, CacheManager cacheManager,
-                       ICustomMailSender mailSender, IFileService fileService) {
+                       MessageSource messageSource, IVerificationCodeService verificationCodeService,
+                       IMailOutbox mailOutbox, IFileService fileService,
+                       IPrincipalCache principalCache, TransactionTemplate transactionTemplate,
+                       ILoginThrottle loginThrottle, NdjsonExporter ndjsonExporter,
+                       IUserNameIndex userNameIndex,
+                       UserEntityToDetailedConverter userEntityToDetailedConverter, BatchLookup batchLookup,
+                       @Qualifier("passwordRehashExecutor") ThreadPoolExecutor passwordRehashExecutor) {
         this.userRepository = userRepository;
         this.conversionService = conversionService;
         this.userValidator = userValidator;
         this.passwordService = passwordService;
         this.messageSource = messageSource;
-        this.cacheManager = cacheManager;
-        this.mailSender = mailSender;
+        this.verificationCodeService = verificationCodeService;
+        this.mailOutbox = mailOutbox;
         this.fileService = fileService;
+        this.principalCache = principalCache;
+        this.transactionTemplate = transactionTemplate;
+        this.loginThrottle = loginThrottle;
+        this.ndjsonExporter = ndjsonExporter;
+        this.batchLookup = batchLookup;
+        this.userNameIndex = userNameIndex;
+        this.userEntityToDetailedConverter = userEntityToDetailedConverter;
+        this.passwordRehashExecutor = passwordRehashExecutor;
     }
 
     @Override
@@ -95,19 +156,17 @@ public class UserService implements IUserService {
         // Save new user
         UserEntity savedEntity = userRepository.saveAndFlush(entity);
 
+        // The name is taken from now on
+        userNameIndex.add(savedEntity.getUserName());
+
         // Return saved user back
         UserDetailed savedUser = conversionService.convert(savedEntity, UserDetailed.class);
 
         // Generate verification code
-        UUID verificationCode = UUID.randomUUID();
+        String verificationCode = verificationCodeService.generate(savedUser.getUuid(), savedUser.getDtUpdate());
 
-        // Send verification code to user's email
-        mailSender.sendVerificationCode(savedUser, verificationCode);
-
-        Cache verificationCodeMap = cacheManager.getCache("verificationCodeMap");
-
-        // Save verification code to cache for further verification
-        verificationCodeMap.put(savedUser.getUuid(), verificationCode);
+        // Verification code is sent to user's email after the transaction is committed
+        mailOutbox.enqueueVerificationCode(savedUser, verificationCode);
 
         return savedUser;
     }
@@ -141,44 +200,43 @@ public class UserService implements IUserService {
     @Transactional
     @RemovePasswordFromReturningValue
     public UserDetailed update(UserDetailed user, UUID uuid, Date version) {
-        // Check if such user exists
-        if (!existsById(uuid)) {
-            String message = messageSource.getMessage("user.not.exists",
-                    null, LocaleContextHolder.getLocale());
-            log.info(message);
-            throw new IllegalArgumentException(message);
+        // Identifier is needed to validate uniqueness of the user name
+        user.setUuid(uuid);
+
+        // Validate user, before the row is locked
+        Map<String, Object> errors = userValidator.validateUpdates(user);
+
+        if (!errors.isEmpty()) {
+            log.info(StringUtils.join(errors));
+            throw new IllegalArgumentException(errors.toString());
         }
 
-        // We know for sure such user exists
-        UserDetailed versionOfUserFromDB = findByIdWithPassword(uuid).get();
+        OffsetDateTime dtUpdate = OffsetDateTime.now();
 
-        long lastUpdateDate = convertOffsetDateTimeToMills(versionOfUserFromDB.getDtUpdate());
+        // Check the version and take the row in a single statement
+        if (userRepository.updateVersion(uuid, version, dtUpdate) == 0) {
+            // Find out the reason only if the update has failed
+            boolean exists = existsById(uuid);
 
-        // Compare the versions of entities
-        if (version.getTime() != lastUpdateDate) {
-            String message = messageSource.getMessage("user.update.version",
+            String message = messageSource.getMessage(exists ? "user.update.version" : "user.not.exists",
                     null, LocaleContextHolder.getLocale());
             log.info(message);
-            throw new NullPointerException(message);
+
+            if (exists) throw new NullPointerException(message);
+            throw new IllegalArgumentException(message);
         }
 
+        // We know for sure such user exists and nobody can change it until the end of transaction
+        UserEntity versionOfUserFromDB = userRepository.findById(uuid).get();
+
         // Set all the system fields
-        user.setUuid(versionOfUserFromDB.getUuid());
         user.setDtCreate(versionOfUserFromDB.getDtCreate());
         user.setPasswordUpdateDate(versionOfUserFromDB.getPasswordUpdateDate());
-        user.setDtUpdate(OffsetDateTime.now());
+        user.setDtUpdate(dtUpdate);
 
         // For example - role and state of user should not be updated with this method
-        user.setRole(versionOfUserFromDB.getRole());
-        user.setState(versionOfUserFromDB.getState());
-
-        // Validate user
-        Map<String, Object> errors = userValidator.validateUpdates(user);
-
-        if (!errors.isEmpty()) {
-            log.info(StringUtils.join(errors));
-            throw new IllegalArgumentException(errors.toString());
-        }
+        user.setRole(UserRole.valueOf(versionOfUserFromDB.getRole()));
+        user.setState(UserState.valueOf(versionOfUserFromDB.getState()));
 
         // Set password hash from the DB (change password operation not allowed in this method)
         user.setPassword(versionOfUserFromDB.getPassword());
@@ -194,8 +252,21 @@ public class UserService implements IUserService {
             throw new RuntimeException(message);
         }
 
+        // Remember the old name, before it's replaced
+        String oldUserName = versionOfUserFromDB.getUserName();
+
         // Save updated user to DB
         UserEntity savedEntity = userRepository.saveAndFlush(entity);
+
+        // The new name is taken and the old one is released, if it was changed
+        if (!oldUserName.equals(savedEntity.getUserName())) {
+            userNameIndex.add(savedEntity.getUserName());
+            userNameIndex.remove(oldUserName);
+        }
+
+        // Cached principal is outdated now
+        principalCache.evict(uuid);
+
         return conversionService.convert(savedEntity, UserDetailed.class);
     }
 
@@ -257,6 +328,9 @@ public class UserService implements IUserService {
         // Save updated user to DB
         UserEntity savedEntity = userRepository.saveAndFlush(entity);
 
+        // Cached principal is outdated now
+        principalCache.evict(uuid);
+
         return conversionService.convert(savedEntity, UserDetailed.class);
     }
 
@@ -273,6 +347,33 @@ public class UserService implements IUserService {
         return userDetailedWithPassword;
     }
 
+    @Override
+    public Optional<UserDetailed> findById(UUID uuid, Set<String> fields) {
+        if (fields == null || fields.isEmpty()) return findById(uuid);
+
+        for (String field : fields) {
+            if (!FIELDS.contains(field)) {
+                String message = messageSource.getMessage("user.field.unknown",
+                        new Object[]{field}, LocaleContextHolder.getLocale());
+                log.info(message);
+                throw new IllegalArgumentException(message);
+            }
+        }
+
+        // Associations, those are not needed for requested fields, are never loaded
+        Set<String> associations = fields.stream()
+                .map(UserEntityToDetailedConverter.ASSOCIATIONS::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+
+        return userRepository.findById(uuid, associations)
+                .map(entity -> userEntityToDetailedConverter.convert(entity, fields))
+                .map(user -> {
+                    user.setPassword(null);
+                    return user;
+                });
+    }
+
     /**
      * Finds user by given identifier with password
      *
@@ -304,11 +405,11 @@ public class UserService implements IUserService {
 
     @Override
     public Iterable<UserBrief> findAll() {
-        Iterable<UserEntity> userEntities = userRepository.findAll();
+        List<UserEntity> entities = userRepository.findFirstPage(null, null, PageRequest.of(0, unpagedLimit));
 
         List<UserBrief> savedDto = new ArrayList<>();
 
-        for (UserEntity e : userEntities) {
+        for (UserEntity e : entities) {
             UserBrief convert = conversionService.convert(e, UserBrief.class);
             savedDto.add(convert);
         }
@@ -316,6 +417,33 @@ public class UserService implements IUserService {
         return savedDto;
     }
 
+    @Override
+    public KeysetPage<UserBrief> findPage(PageQuery query) {
+        int limit = resolveLimit(query.getLimit(), defaultPageLimit, maxPageLimit);
+
+        // One extra row tells, whether there is a next page
+        Pageable pageable = PageRequest.of(0, limit + 1);
+
+        List<UserEntity> entities;
+
+        if (query.getContinuation() == null) {
+            entities = userRepository.findFirstPage(query.getState(), query.getRole(), pageable);
+        } else {
+            Keyset after = Keyset.decode(query.getContinuation());
+            entities = userRepository.findNextPage(after.getDtCreate(), after.getUuid(), query.getState(), query.getRole(), pageable);
+        }
+
+        return toPage(entities, limit, e -> conversionService.convert(e, UserBrief.class),
+                e -> new Keyset(e.getDtCreate(), e.getUuid()));
+    }
+
+    @Override
+    public long export(OutputStream output) {
+        try (Stream<UserEntity> entities = userRepository.streamAll()) {
+            return ndjsonExporter.export(entities, e -> conversionService.convert(e, UserBrief.class), output);
+        }
+    }
+
     @Override
     public Iterable<UserBrief> findAllById(Iterable<UUID> uuids) {
         Iterable<UserEntity> userEntities = userRepository.findAllById(uuids);
@@ -330,6 +458,16 @@ public class UserService implements IUserService {
         return savedDto;
     }
 
+    /**
+     * Chunks are read on other threads, each one in its own transaction,
+     * so the caller must not hold a connection meanwhile
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<UserBrief> findBatch(List<UUID> uuids) {
+        return batchLookup.find(uuids, this::findAllById, UserBrief::getUuid);
+    }
+
     @Override
     public long count() {
         return userRepository.count();
@@ -338,69 +476,51 @@ public class UserService implements IUserService {
     @Override
     @Transactional
     public void deleteById(UUID uuid, Date version) {
-        // Check if such user exists
-        if (!existsById(uuid)) {
-            String message = messageSource.getMessage("user.not.exists",
-                    null, LocaleContextHolder.getLocale());
-            log.info(message);
-            throw new IllegalArgumentException(message);
-        }
-
-        // We know for sure such user exists
-        UserDetailed versionOfUserFromDB = findByIdWithPassword(uuid).get();
+        // Links to the files are removed together with the user, so they are taken in advance
+        List<FileDetailed> attachedFiles = fileService.findAllAttachedToUser(uuid);
 
-        long lastUpdateDate = convertOffsetDateTimeToMills(versionOfUserFromDB.getDtUpdate());
+        // The same about the name, that should be released
+        Optional<String> userName = userRepository.findUserNameById(uuid);
 
-        // Compare the versions of entities
-        if (version.getTime() != lastUpdateDate) {
-            String message = messageSource.getMessage("delete.version",
+        // Check the version and delete user in a single statement
+        if (userRepository.deleteByIdAndVersion(uuid, version) == 0) {
+            // Find out the reason only if the delete has failed
+            String message = messageSource.getMessage(existsById(uuid) ? "delete.version" : "user.not.exists",
                     null, LocaleContextHolder.getLocale());
             log.info(message);
             throw new IllegalArgumentException(message);
         }
 
-        // Delete profile photo
-        FileDetailed profilePhoto = versionOfUserFromDB.getProfilePhoto();
-        if (profilePhoto != null) {
-            Date fileVersion = convertOffsetDateTimeToDate(profilePhoto.getDtCreate());
-            fileService.deleteById(profilePhoto.getUuid(), fileVersion);
-        }
+        // Delete profile photo and all attached documents
+        attachedFiles.forEach(f -> fileService.deleteById(f.getUuid(), convertOffsetDateTimeToDate(f.getDtCreate())));
 
-        // Delete all attached documents
-        deleteAllAttachedFiles(versionOfUserFromDB);
+        // The name is free from now on
+        userName.ifPresent(userNameIndex::remove);
 
-        // Delete user
-        userRepository.deleteById(uuid);
+        // Deleted user must not stay authenticated
+        principalCache.evict(uuid);
     }
 
-    /**
-     * Delete all user files
-     *
-     * @param user user with/without files
-     */
-    private void deleteAllAttachedFiles(UserDetailed user) {
-        // Create overall list for all files
-        List<FileDetailed> allFiles = new ArrayList<>();
-
-        // If there are some documents - add them to main list
-        List<FileDetailed> documents = user.getDocuments();
-        if (documents != null && !documents.isEmpty()) {
-            allFiles.addAll(documents);
-        }
-
-        // If there are some portfolio - add them to main list
-        List<FileDetailed> portfolio = user.getPortfolio();
-        if (portfolio != null && !portfolio.isEmpty()) {
-            allFiles.addAll(portfolio);
-        }
+    @Override
+    public boolean isUserNameAvailable(String userName) {
+        // Most of the free names are answered by the index without a query
+        if (!userNameIndex.mightExist(userName)) return true;
 
-        // Delete all files
-        allFiles.forEach(f -> fileService.deleteById(f.getUuid(), convertOffsetDateTimeToDate(f.getDtCreate())));
+        return !userRepository.existsByUserName(userName);
     }
 
     @Override
     @RemovePasswordFromReturningValue
     public UserDetailed findUserForLogin(String userName, String password) {
+        return findUserForLogin(userName, password, null);
+    }
+
+    @Override
+    @RemovePasswordFromReturningValue
+    public UserDetailed findUserForLogin(String userName, String password, String clientAddress) {
+
+        // Reject before spending anything on the attempt, if there were too many of them
+        loginThrottle.acquire(userName, clientAddress);
 
         // Find user with password
         UserDetailed user = findByUserNameWithPassword(userName);
@@ -412,16 +532,57 @@ public class UserService implements IUserService {
         }
 
         // Check whether password is correct by verifying the hash
-        boolean verificationSuccessful = passwordService.verifyHash(password, user.getPassword());
+        boolean verificationSuccessful;
+
+        try {
+            verificationSuccessful = passwordService.verifyHash(password, user.getPassword());
+        } catch (ServiceOverloadedException e) {
+            // The attempt is not made, so the client should not pay for it
+            loginThrottle.release(userName, clientAddress);
+            throw e;
+        }
 
         if (!verificationSuccessful) {
             throw new WrongPasswordException(messageSource.getMessage("security.controller.login.password.wrong",
                     null, getLocale()));
         }
 
+        // Only failed attempts are limited
+        loginThrottle.release(userName, clientAddress);
+
+        // If the hash was made with another cost - replace it, while we know the password
+        if (passwordService.needsRehash(user.getPassword())) {
+            rehashPasswordInBackground(user.getUuid(), password, user.getPassword());
+        }
+
         return user;
     }
 
+    /**
+     * Hash the password with the current cost and save it, without blocking the caller
+     * <p>
+     * It's just an optimization, so any failure is only logged.
+     * The new hash is saved on its own executor, not to hold a thread of hashing while waiting for a connection
+     *
+     * @param uuid     user identifier
+     * @param password verified password
+     * @param oldHash  current hash of the password
+     */
+    private void rehashPasswordInBackground(UUID uuid, String password, String oldHash) {
+        try {
+            passwordService.hashAsync(password)
+                    .thenAcceptAsync(newHash -> transactionTemplate.execute(status ->
+                            userRepository.updatePasswordHash(uuid, oldHash, newHash)), passwordRehashExecutor)
+                    .exceptionally(e -> {
+                        log.warn("Cannot rehash password of user " + uuid, e);
+                        return null;
+                    });
+        } catch (RuntimeException e) {
+            // Executor is busy - we'll do it next time
+            log.debug("Rehash of password of user " + uuid + " is postponed", e);
+        }
+    }
+
     @Override
     @RemovePasswordFromReturningValue
     public UserDetailed findByUserName(String userName) {
@@ -433,7 +594,7 @@ public class UserService implements IUserService {
     @Override
     @Transactional
     @RemovePasswordFromReturningValue
-    public UserDetailed verifyUser(UUID uuid, UUID code) {
+    public UserDetailed verifyUser(UUID uuid, String code) {
 
         // Check if such user exists
         if (!existsById(uuid)) {
@@ -458,14 +619,8 @@ public class UserService implements IUserService {
                     null, LocaleContextHolder.getLocale()));
         }
 
-        // Get map with cached verification codes
-        Cache verificationCodeMap = cacheManager.getCache("verificationCodeMap");
-
-        // Get expected verification code from a cache
-        UUID expectedVerificationCode = verificationCodeMap.get(uuid, UUID.class);
-
-        // Check if verification code is correct
-        if (!expectedVerificationCode.equals(code)) {
+        // Check if verification code is correct and not expired
+        if (!verificationCodeService.check(uuid, user.getDtUpdate(), code)) {
             throw new IllegalArgumentException(messageSource.getMessage("user.verification.code.wrong",
                     null, LocaleContextHolder.getLocale()));
         }
@@ -480,8 +635,11 @@ public class UserService implements IUserService {
         // return updated user
         UserDetailed updatedUser = conversionService.convert(savedEntity, UserDetailed.class);
 
-        // remove verification code from cache
-        verificationCodeMap.evictIfPresent(uuid);
+        // The code must not be used once again, even if the state of user is changed back
+        verificationCodeService.revoke(uuid);
+
+        // Cached principal is outdated now
+        principalCache.evict(uuid);
 
         return updatedUser;
     }
@@ -0,0 +1,157 @@
+package com.anyservice.service.user;
+
+import com.anyservice.core.enums.VerificationCodeMode;
+import com.anyservice.service.api.IVerificationCodeService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * In {@link VerificationCodeMode#HMAC} mode code consists of the moment of its expiration
+ * and HMAC-SHA256 signature of that moment, user identifier and the moment of the last update of a user.
+ * So it's checked without any shared state, and registration does not write into replicated map.
+ * The map keeps only revocations: the moments, before those all the codes of a user are invalid
+ */
+@Service
+public class VerificationCodeService implements IVerificationCodeService {
+
+    public static final String VERIFICATION_CODE_MAP = "verificationCodeMap";
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    /**
+     * 128 bits of signature are more than enough for a code, that lives several days
+     */
+    private static final int SIGNATURE_LENGTH = 16;
+    private static final int CODE_LENGTH = Long.BYTES + SIGNATURE_LENGTH;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final CacheManager cacheManager;
+
+    @Value("${user.verification.code.mode}")
+    private VerificationCodeMode mode;
+
+    @Value("${user.verification.code.key}")
+    private String key;
+
+    @Value("${spring.user.verification.seconds}")
+    private long liveSeconds;
+
+    private SecretKeySpec secretKey;
+
+    /**
+     * {@link Mac} is not thread-safe, and creation of it is not cheap
+     */
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::createMac);
+
+    public VerificationCodeService(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @PostConstruct
+    public void init() {
+        secretKey = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+    }
+
+    @Override
+    public String generate(UUID uuid, OffsetDateTime dtUpdate) {
+        if (mode == VerificationCodeMode.MAP) {
+            String code = UUID.randomUUID().toString();
+            getVerificationCodeMap().put(uuid, code);
+            return code;
+        }
+
+        long expiresAt = System.currentTimeMillis() + liveSeconds * 1000;
+
+        byte[] code = ByteBuffer.allocate(CODE_LENGTH)
+                .putLong(expiresAt)
+                .put(sign(uuid, dtUpdate, expiresAt))
+                .array();
+
+        return ENCODER.encodeToString(code);
+    }
+
+    @Override
+    public boolean check(UUID uuid, OffsetDateTime dtUpdate, String code) {
+        if (code == null) return false;
+
+        if (mode == VerificationCodeMode.MAP) {
+            // Expired code is absent
+            return code.equals(getVerificationCodeMap().get(uuid, String.class));
+        }
+
+        byte[] decoded;
+
+        try {
+            decoded = DECODER.decode(code);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+
+        if (decoded.length != CODE_LENGTH) return false;
+
+        ByteBuffer buffer = ByteBuffer.wrap(decoded);
+        long expiresAt = buffer.getLong();
+
+        if (expiresAt < System.currentTimeMillis()) return false;
+
+        byte[] signature = Arrays.copyOfRange(decoded, Long.BYTES, CODE_LENGTH);
+
+        // Comparison in constant time, so that signature cannot be guessed byte by byte
+        if (!MessageDigest.isEqual(signature, sign(uuid, dtUpdate, expiresAt))) return false;
+
+        Long revokedAt = getVerificationCodeMap().get(uuid, Long.class);
+
+        return revokedAt == null || expiresAt - liveSeconds * 1000 > revokedAt;
+    }
+
+    @Override
+    public void revoke(UUID uuid) {
+        if (mode == VerificationCodeMode.MAP) {
+            getVerificationCodeMap().evictIfPresent(uuid);
+        } else {
+            // Entry expires together with the last code, that could be generated before it
+            getVerificationCodeMap().put(uuid, System.currentTimeMillis());
+        }
+    }
+
+    private byte[] sign(UUID uuid, OffsetDateTime dtUpdate, long expiresAt) {
+        byte[] data = ByteBuffer.allocate(Long.BYTES * 4)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .putLong(dtUpdate != null ? dtUpdate.toInstant().toEpochMilli() : 0)
+                .putLong(expiresAt)
+                .array();
+
+        return Arrays.copyOf(macs.get().doFinal(data), SIGNATURE_LENGTH);
+    }
+
+    private Mac createMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(secretKey);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot create " + ALGORITHM, e);
+        }
+    }
+
+    private Cache getVerificationCodeMap() {
+        return cacheManager.getCache(VERIFICATION_CODE_MAP);
+    }
+}
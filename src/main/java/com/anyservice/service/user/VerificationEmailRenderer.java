@@ -0,0 +1,234 @@
+package com.anyservice.service.user;
+
+import com.anyservice.core.VersionedMessageSource;
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.ui.freemarker.FreeMarkerTemplateUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Renders verification emails from templates, those are pre-rendered once per locale
+ * <p>
+ * Everything except initials and the link depends only on locale, so the template is rendered
+ * with unique markers in place of them and split into static fragments.
+ * Rendering of an email is then just a concatenation of fragments and actual values.
+ * Pre-rendered templates are rendered again, when message bundles, those they are made of, are reloaded.
+ * Templates are kept only for supported locales, any other locale is served by the first of them
+ */
+@Component
+public class VerificationEmailRenderer {
+
+    private static final String TEMPLATE = "/mail/verification.ftl";
+    private static final String SUBJECT = "user.verification.email.subject";
+
+    private static final int INITIALS = 0;
+    private static final int LINK = 1;
+
+    private final Configuration freemarkerConfig;
+    private final VersionedMessageSource messageSource;
+    private final List<Locale> locales;
+
+    /**
+     * Markers must not be met in messages, so they are random
+     */
+    private final String[] markers = {marker("initials"), marker("link")};
+
+    private final Map<Locale, PreRendered> templates = new ConcurrentHashMap<>();
+
+    public VerificationEmailRenderer(Configuration freemarkerConfig, VersionedMessageSource messageSource,
+                                     @Value("${i18n.locales}") String[] locales) {
+        this.freemarkerConfig = freemarkerConfig;
+        this.messageSource = messageSource;
+        this.locales = Arrays.stream(locales).map(Locale::forLanguageTag).collect(Collectors.toList());
+        freemarkerConfig.setClassForTemplateLoading(this.getClass(), "/");
+    }
+
+    /**
+     * Render html text of verification email
+     *
+     * @param initials textual representation of user initials
+     * @param link     verification link
+     * @param locale   language of the email
+     * @return html text
+     */
+    public String renderText(String initials, String link, Locale locale) {
+        return preRendered(locale).render(initials != null ? initials : "", link);
+    }
+
+    /**
+     * @param locale language of the email
+     * @return subject of verification email
+     */
+    public String renderSubject(Locale locale) {
+        return preRendered(locale).subject;
+    }
+
+    private PreRendered preRendered(Locale locale) {
+        Locale supported = supported(locale);
+
+        // Message source reloads bundles only when they are looked up, so the check is made by the lookup
+        messageSource.getMessage(SUBJECT, null, supported);
+
+        PreRendered preRendered = templates.get(supported);
+
+        if (preRendered == null || preRendered.version != messageSource.getVersion()) {
+            // Rendering twice in a race is harmless, the result is the same
+            preRendered = preRender(supported);
+            templates.put(supported, preRendered);
+        }
+
+        return preRendered;
+    }
+
+    /**
+     * Find supported locale of the same language, so that clients cannot fill the cache with arbitrary locales
+     *
+     * @param locale requested locale
+     * @return supported locale OR the first of them, if the language is not supported
+     */
+    private Locale supported(Locale locale) {
+        for (Locale supported : locales) {
+            if (supported.getLanguage().equals(locale.getLanguage())) return supported;
+        }
+
+        return locales.get(0);
+    }
+
+    /**
+     * Render template with markers instead of dynamic values and split it by them
+     *
+     * @param locale language of the email
+     * @return pre-rendered template
+     */
+    private PreRendered preRender(Locale locale) {
+        // Taken before messages, so that a reload in the middle leads to one more rendering, not a stale one
+        long version = messageSource.getVersion();
+
+        String text;
+
+        try {
+            Template template = freemarkerConfig.getTemplate(TEMPLATE);
+            text = FreeMarkerTemplateUtils.processTemplateIntoString(template, prepareModel(locale));
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot render template " + TEMPLATE, e);
+        }
+
+        List<String> fragments = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+
+        int from = 0;
+
+        while (true) {
+            // The nearest marker of any kind
+            int slot = -1;
+            int position = -1;
+
+            for (int i = 0; i < markers.length; i++) {
+                int index = text.indexOf(markers[i], from);
+                if (index >= 0 && (position < 0 || index < position)) {
+                    position = index;
+                    slot = i;
+                }
+            }
+
+            if (slot < 0) break;
+
+            fragments.add(text.substring(from, position));
+            slots.add(slot);
+            from = position + markers[slot].length();
+        }
+
+        fragments.add(text.substring(from));
+
+        String subject = messageSource.getMessage(SUBJECT, null, locale);
+
+        return new PreRendered(fragments.toArray(new String[0]),
+                slots.stream().mapToInt(Integer::intValue).toArray(), subject, version);
+    }
+
+    /**
+     * Prepare a set of variables (model) to be set to template further
+     *
+     * @param locale language of the email
+     * @return map of variables_names - variables_values for message template
+     */
+    private Map<String, Object> prepareModel(Locale locale) {
+        Map<String, Object> model = new HashMap<>();
+
+        // Text messages on specific language
+        String greetings = messageSource.getMessage("user.verification.email.greetings",
+                null, locale);
+        String explanation = messageSource.getMessage("user.verification.email.explanation",
+                null, locale);
+        String whatToDo = messageSource.getMessage("user.verification.email.whattodo",
+                null, locale);
+        String linkText = messageSource.getMessage("user.verification.email.linktext",
+                null, locale);
+        String ifWrongAddress = messageSource.getMessage("user.verification.email.ifwrongaddress",
+                null, locale);
+        String companyCredentials = messageSource.getMessage("user.verification.email.companycredentials",
+                null, locale);
+
+        model.put("greetings", greetings);
+        model.put("initials", markers[INITIALS]);
+        model.put("explanation", explanation);
+        model.put("whattodo", whatToDo);
+        model.put("link", markers[LINK]);
+        model.put("linktext", linkText);
+        model.put("ifwrongaddress", ifWrongAddress);
+        model.put("companycredentials", companyCredentials);
+
+        return model;
+    }
+
+    private static String marker(String name) {
+        return "{" + name + ":" + UUID.randomUUID() + "}";
+    }
+
+    /**
+     * Static fragments of a template, interleaved with slots for dynamic values
+     */
+    private static class PreRendered {
+        private final String[] fragments;
+        private final int[] slots;
+        private final String subject;
+        private final long version;
+        private final int length;
+
+        private PreRendered(String[] fragments, int[] slots, String subject, long version) {
+            this.fragments = fragments;
+            this.slots = slots;
+            this.subject = subject;
+            this.version = version;
+
+            int length = 0;
+            for (String fragment : fragments) length += fragment.length();
+            this.length = length;
+        }
+
+        private String render(String initials, String link) {
+            // Exact size, so that builder never grows
+            int size = length;
+            for (int slot : slots) size += slot == INITIALS ? initials.length() : link.length();
+
+            StringBuilder text = new StringBuilder(size);
+
+            for (int i = 0; i < slots.length; i++) {
+                text.append(fragments[i]).append(slots[i] == INITIALS ? initials : link);
+            }
+
+            return text.append(fragments[slots.length]).toString();
+        }
+    }
+}
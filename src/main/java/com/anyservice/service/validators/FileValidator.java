@@ -8,6 +8,7 @@ import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import static com.anyservice.core.enums.FileExtension.isPhoto;
 import static com.anyservice.core.enums.FileExtension.pdf;
@@ -17,6 +18,8 @@ import static org.springframework.util.StringUtils.isEmpty;
 @Service
 public class FileValidator implements IFileValidator {
 
+    private static final Pattern SHA_256 = Pattern.compile("[0-9a-fA-F]{64}");
+
     private final MessageSource messageSource;
 
     public FileValidator(MessageSource messageSource) {
@@ -68,11 +71,17 @@ public class FileValidator implements IFileValidator {
 
         // Size must present
         Long size = file.getSize();
-        if (size == null || size == 0) {
+        if (size == null || size <= 0) {
             errors.put("file.size", getMessageSource().getMessage("file.size.empty",
                     null, getLocale()));
         }
 
+        // Declared hash of content must be a hex SHA-256
+        if (file.getHash() != null && !SHA_256.matcher(file.getHash()).matches()) {
+            errors.put("file.hash", getMessageSource().getMessage("file.hash.invalid",
+                    null, getLocale()));
+        }
+
         // Extension must present
         if (extension == null) {
             errors.put("file.extension", getMessageSource().getMessage("file.extension.empty",
@@ -3,7 +3,6 @@ package com.anyservice.service.validators;
 import com.anyservice.dto.user.UserDetailed;
 import com.anyservice.entity.user.Contacts;
 import com.anyservice.entity.user.Initials;
-import com.anyservice.entity.user.UserEntity;
 import com.anyservice.repository.UserRepository;
 import com.anyservice.service.user.PasswordService;
 import com.anyservice.service.validators.api.IUserValidator;
@@ -174,18 +173,15 @@ public class UserValidator implements IUserValidator {
                     null, getLocale()));
         } else {
 
-            // Make sure user with such userName does not already exist
-            UserEntity userFoundByUserName = userRepository.findFirstByUserName(userName);
+            // Make sure nobody else has such userName, it's the same user otherwise
+            boolean taken = userUuid == null
+                    ? userRepository.existsByUserName(userName)
+                    : userRepository.existsByUserNameAndUuidNot(userName, userUuid);
 
-            if (userFoundByUserName != null) {
-
-                // Make sure it's not the same user, with the same userName
-                if (!userFoundByUserName.getUuid().equals(userUuid)) {
-
-                    // Otherwise, - claim the mistake
-                    errors.put("username", getMessageSource().getMessage("user.username.exists",
-                            null, getLocale()));
-                }
+            // Otherwise, - claim the mistake
+            if (taken) {
+                errors.put("username", getMessageSource().getMessage("user.username.exists",
+                        null, getLocale()));
             }
 
             // Check if userName contains only allowed characters
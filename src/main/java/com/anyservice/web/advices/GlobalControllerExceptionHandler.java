@@ -1,15 +1,21 @@
 package com.anyservice.web.advices;
 
+import com.anyservice.core.exceptions.ServiceOverloadedException;
+import com.anyservice.core.exceptions.StateConflictException;
+import com.anyservice.core.exceptions.TooManyLoginAttemptsException;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.hateoas.mediatype.vnderrors.VndErrors;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 
 import java.util.Locale;
 import java.util.Objects;
@@ -58,6 +64,37 @@ public class GlobalControllerExceptionHandler {
     }
 
 
+    @ResponseBody
+    @ResponseStatus(CONFLICT)
+    @ExceptionHandler(StateConflictException.class)
+    public VndErrors stateConflictExceptionHandler(StateConflictException ex) {
+        return new VndErrors("error", ex.getMessage());
+    }
+
+    @ResponseBody
+    @ResponseStatus(PAYLOAD_TOO_LARGE)
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public VndErrors maxUploadSizeExceededExceptionHandler(MaxUploadSizeExceededException ex) {
+        return new VndErrors("error", messageSource.getMessage("file.size.too.large",
+                null, LocaleContextHolder.getLocale()));
+    }
+
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<VndErrors> serviceOverloadedExceptionHandler(ServiceOverloadedException ex) {
+        HttpHeaders httpHeaders = new HttpHeaders();
+        httpHeaders.set(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()));
+
+        return new ResponseEntity<>(new VndErrors("error", ex.getMessage()), httpHeaders, SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler(TooManyLoginAttemptsException.class)
+    public ResponseEntity<VndErrors> tooManyLoginAttemptsExceptionHandler(TooManyLoginAttemptsException ex) {
+        HttpHeaders httpHeaders = new HttpHeaders();
+        httpHeaders.set(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()));
+
+        return new ResponseEntity<>(new VndErrors("error", ex.getMessage()), httpHeaders, TOO_MANY_REQUESTS);
+    }
+
     @ResponseBody
     @ResponseStatus(INTERNAL_SERVER_ERROR)
     @ExceptionHandler(Exception.class)
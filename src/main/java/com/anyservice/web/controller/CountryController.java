@@ -0,0 +1,39 @@
+package com.anyservice.web.controller;
+
+import com.anyservice.entity.user.CountryEntity;
+import com.anyservice.service.api.ICountryRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@RestController
+@RequestMapping("/api/v1/country")
+public class CountryController {
+
+    private final ICountryRegistry countryRegistry;
+
+    @Value("${country.cache.seconds}")
+    private long cacheSeconds;
+
+    public CountryController(ICountryRegistry countryRegistry) {
+        this.countryRegistry = countryRegistry;
+    }
+
+    /**
+     * Dictionary of countries is static, so clients and proxies may keep it for a long time
+     *
+     * @return all the countries, ordered by name
+     */
+    @GetMapping
+    public ResponseEntity<List<CountryEntity>> findAll() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(cacheSeconds, TimeUnit.SECONDS).cachePublic())
+                .body(countryRegistry.findAll());
+    }
+}
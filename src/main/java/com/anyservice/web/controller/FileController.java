@@ -2,28 +2,45 @@ package com.anyservice.web.controller;
 
 import com.anyservice.core.enums.FileExtension;
 import com.anyservice.core.enums.FileType;
+import com.anyservice.dto.api.KeysetPage;
+import com.anyservice.dto.api.PageQuery;
 import com.anyservice.dto.file.FileBrief;
 import com.anyservice.dto.file.FileDetailed;
+import com.anyservice.dto.file.PresignedUrl;
 import com.anyservice.service.api.IFileService;
+import com.anyservice.service.export.NdjsonExporter;
 import com.anyservice.web.controller.api.ICRUDController;
 import lombok.Cleanup;
 import lombok.NonNull;
 import lombok.SneakyThrows;
 import lombok.extern.log4j.Log4j2;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.tomcat.util.http.fileupload.FileItemIterator;
+import org.apache.tomcat.util.http.fileupload.FileItemStream;
+import org.apache.tomcat.util.http.fileupload.impl.SizeException;
+import org.apache.tomcat.util.http.fileupload.servlet.ServletFileUpload;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URLEncoder;
-import java.util.Date;
-import java.util.List;
-import java.util.Optional;
-import java.util.UUID;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
 
 import static org.springframework.http.HttpStatus.*;
 
@@ -31,16 +48,35 @@ import static org.springframework.http.HttpStatus.*;
 @RestController
 @RequestMapping("/api/v1/file")
 public class FileController implements ICRUDController<FileBrief, FileDetailed, UUID, Long> {
+    private static final String FILE_FIELD = "file";
+    private static final String SIZE_FIELD = "size";
+    private static final String HASH_FIELD = "sha256";
+    private static final String BYTES = "bytes";
+
     private final IFileService fileService;
+    private final MultipartProperties multipartProperties;
+
+    @Value("${file.ranges.max}")
+    private int maxRanges;
 
-    public FileController(IFileService fileService) {
+    public FileController(IFileService fileService, MultipartProperties multipartProperties) {
         this.fileService = fileService;
+        this.multipartProperties = multipartProperties;
     }
 
+    /**
+     * Upload file
+     *
+     * @param type   type of file
+     * @param file   content of file
+     * @param sha256 optional SHA-256 of content - duplicates of already stored content are not uploaded again
+     * @return saved file
+     */
     @SneakyThrows
     @PostMapping("/upload/{type}")
     public ResponseEntity<FileDetailed> create(@PathVariable FileType type,
-                                               @NonNull @RequestParam("file") MultipartFile file) {
+                                               @NonNull @RequestParam(FILE_FIELD) MultipartFile file,
+                                               @RequestParam(value = HASH_FIELD, required = false) String sha256) {
 
         // Build file object
         FileDetailed detailed = FileDetailed.builder()
@@ -49,13 +85,143 @@ public class FileController implements ICRUDController<FileBrief, FileDetailed,
                 .size(file.getSize())
                 .inputStream(file.getInputStream())
                 .fileType(type)
+                .hash(sha256)
                 .build();
 
         // Save it
-        FileDetailed saved = fileService.create(detailed);
+        return created(fileService.create(detailed));
+    }
+
+    /**
+     * Upload file without spooling it to memory or disk: multipart body is read part by part,
+     * and content of the file part goes straight to storage.
+     * <p>
+     * Size of file must be declared before its content - in the "size" field, that precedes the "file" one,
+     * or in the Content-Length header of the file part. SHA-256 of content may be declared the same way
+     * in the "sha256" field - duplicates of already stored content are not uploaded again.
+     * Content, that differs from the declared size, is rejected
+     *
+     * @param type    type of file
+     * @param request multipart request, not parsed yet
+     * @return saved file
+     */
+    @SneakyThrows
+    @PostMapping(value = "/upload/{type}/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<FileDetailed> createStreaming(@PathVariable FileType type, HttpServletRequest request) {
+        ServletFileUpload upload = new ServletFileUpload();
+        upload.setFileSizeMax(multipartProperties.getMaxFileSize().toBytes());
+        upload.setSizeMax(multipartProperties.getMaxRequestSize().toBytes());
+
+        try {
+            return createStreaming(type, upload.getItemIterator(request));
+        } catch (Exception e) {
+            // Limits are exceeded while the body is read, possibly deep inside of storage client
+            if (ExceptionUtils.indexOfType(e, SizeException.class) >= 0) {
+                throw new MaxUploadSizeExceededException(upload.getFileSizeMax(), e);
+            }
+            throw e;
+        }
+    }
+
+    @SneakyThrows
+    private ResponseEntity<FileDetailed> createStreaming(FileType type, FileItemIterator items) {
+        Long size = null;
+        String sha256 = null;
+
+        while (items.hasNext()) {
+            FileItemStream item = items.next();
+
+            if (item.isFormField()) {
+                @Cleanup InputStream value = item.openStream();
+
+                if (SIZE_FIELD.equals(item.getFieldName())) {
+                    size = NumberUtils.toLong(IOUtils.toString(value, StandardCharsets.UTF_8).trim());
+                } else if (HASH_FIELD.equals(item.getFieldName())) {
+                    sha256 = IOUtils.toString(value, StandardCharsets.UTF_8).trim();
+                }
+                continue;
+            }
+
+            if (!FILE_FIELD.equals(item.getFieldName())) continue;
+
+            if (size == null && item.getHeaders() != null) {
+                size = NumberUtils.toLong(item.getHeaders().getHeader(HttpHeaders.CONTENT_LENGTH));
+            }
+
+            @Cleanup InputStream content = item.openStream();
+
+            FileDetailed detailed = FileDetailed.builder()
+                    .extension(FileExtension.findExtension(item.getContentType()))
+                    .name(item.getName())
+                    .size(size)
+                    .inputStream(content)
+                    .fileType(type)
+                    .hash(sha256)
+                    .build();
+
+            return created(fileService.create(detailed));
+        }
+
+        throw new IllegalArgumentException("file.upload.no.file");
+    }
+
+    /**
+     * Describe a new file and get a URL to upload its content directly into storage, bypassing the application
+     *
+     * @param type type of file
+     * @param file description of file: name, size and extension
+     * @return presigned URL for method PUT, valid for a short period
+     */
+    @PostMapping("/presigned/{type}")
+    public ResponseEntity<PresignedUrl> createPresigned(@PathVariable FileType type, @RequestBody FileDetailed file) {
+        file.setFileType(type);
+
+        PresignedUrl presignedUrl = fileService.createPresigned(file);
 
         HttpHeaders httpHeaders = new HttpHeaders();
 
+        // Put location of file description into headers
+        httpHeaders.setLocation(ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/api/v1/file/{id}")
+                .buildAndExpand(presignedUrl.getUuid())
+                .toUri());
+
+        return new ResponseEntity<>(presignedUrl, httpHeaders, CREATED);
+    }
+
+    /**
+     * Report, that content of file is uploaded through the presigned URL
+     *
+     * @param uuid file identifier
+     * @return description of saved file
+     */
+    @PostMapping("/{uuid}/commit")
+    public ResponseEntity<FileDetailed> commitPresigned(@PathVariable UUID uuid) {
+        return new ResponseEntity<>(fileService.commitPresigned(uuid), OK);
+    }
+
+    /**
+     * Get a URL to download content of file directly from storage, bypassing the application
+     *
+     * @param uuid file identifier
+     * @return presigned URL for method GET, valid for a short period
+     */
+    @GetMapping("/{uuid}/presigned")
+    public ResponseEntity<PresignedUrl> findPresignedUrl(@PathVariable UUID uuid) {
+        return fileService.findPresignedUrl(uuid)
+                .map(presignedUrl -> new ResponseEntity<>(presignedUrl, OK))
+                .orElseGet(() -> new ResponseEntity<>(null, NO_CONTENT));
+    }
+
+    /**
+     * Response for a just created file, with its location in headers
+     *
+     * @param saved created file
+     * @return response with status "Created"
+     */
+    private ResponseEntity<FileDetailed> created(FileDetailed saved) {
+        HttpHeaders httpHeaders = new HttpHeaders();
+
         UUID uuid = saved.getUuid();
 
         // Put identifier into headers
@@ -83,13 +249,19 @@ public class FileController implements ICRUDController<FileBrief, FileDetailed,
 
     /**
      * Find file and its content by its identifier
+     * <p>
+     * Single and multiple byte ranges of "Range" header are supported, overlapping and adjacent ranges are merged,
+     * and every merged range is read from storage separately.
+     * Ranges are ignored if "If-Range" does not match the file, if there are too many of them,
+     * or if they sum up to more than the whole file - then the whole content is sent
      *
      * @param uuid     file identifier
+     * @param request  {@link HttpServletRequest} with optional "Range" and "If-Range" headers
      * @param response {@link HttpServletResponse} through that file content will be passed to the client
      */
     @GetMapping("/{uuid}/load")
     @SneakyThrows
-    public void findById(@PathVariable UUID uuid, HttpServletResponse response) {
+    public void findById(@PathVariable UUID uuid, HttpServletRequest request, HttpServletResponse response) {
         // File file by identifier
         Optional<FileDetailed> fileDetailedOptional = fileService.findById(uuid);
 
@@ -99,8 +271,8 @@ public class FileController implements ICRUDController<FileBrief, FileDetailed,
         // If file present - extract it from Optional
         FileDetailed fileDetailed = fileDetailedOptional.get();
 
-        // Take file
-        @Cleanup InputStream inputStream = fileDetailed.getInputStream();
+        // Nothing is written into response, if there is no content yet
+        fileService.checkLoaded(fileDetailed);
 
         // Encode fileName
         String fileName = URLEncoder.encode(fileDetailed.getName(), "UTF-8");
@@ -111,17 +283,232 @@ public class FileController implements ICRUDController<FileBrief, FileDetailed,
         // Create contentDisposition header
         String contentDisposition = String.format("attachment; filename=\"%s\"", fileNameCleanedUp);
 
+        // Content of file never changes, so its identifier is a strong validator
+        String eTag = "\"" + uuid + "\"";
+        long lastModified = fileDetailed.getDtCreate().toInstant().toEpochMilli();
+
         // Fill response with needed meta information
         response.setHeader("Content-Disposition", contentDisposition);
-        response.setContentType(fileDetailed.getExtension().getContentType());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, BYTES);
+        response.setHeader(HttpHeaders.ETAG, eTag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+
+        Long size = fileDetailed.getSize();
+        List<HttpRange> ranges = size != null && isIfRangeMatched(request, eTag, lastModified)
+                ? parseRanges(request.getHeader(HttpHeaders.RANGE))
+                : Collections.emptyList();
+
+        // Otherwise a single request could make the file to be read from storage many times over
+        if (!ranges.isEmpty() && (ranges.size() > maxRanges || requestedLength(ranges, size) > size)) {
+            ranges = Collections.emptyList();
+        }
+
+        // Send the whole file, if no ranges were requested
+        if (ranges.isEmpty()) {
+            response.setContentType(fileDetailed.getExtension().getContentType());
+            if (size != null) response.setContentLengthLong(size);
+
+            // Take file
+            @Cleanup InputStream inputStream = fileService.openContent(fileDetailed);
+
+            // Copy file to response
+            IOUtils.copyLarge(inputStream, response.getOutputStream());
+
+            // Send response to the client
+            response.flushBuffer();
+            return;
+        }
+
+        // Ranges, those start beyond the end of file, cannot be satisfied
+        List<HttpRange> satisfiable = ranges.stream()
+                .filter(r -> r.getRangeStart(size) < size)
+                .collect(Collectors.toList());
 
-        // Copy file to response
-        IOUtils.copy(inputStream, response.getOutputStream());
+        if (satisfiable.isEmpty()) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, BYTES + " */" + size);
+            response.setStatus(REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            return;
+        }
+
+        List<HttpRange> merged = merge(satisfiable, size);
+
+        response.setStatus(PARTIAL_CONTENT.value());
+
+        if (merged.size() == 1) {
+            writeRange(fileDetailed, merged.get(0), response);
+        } else {
+            writeRanges(fileDetailed, merged, response);
+        }
 
         // Send response to the client
         response.flushBuffer();
     }
 
+    /**
+     * Check if the part of file, that client already has, is still actual
+     *
+     * @param request      request with optional "If-Range" header
+     * @param eTag         entity tag of file
+     * @param lastModified date of file in milliseconds
+     * @return true if there is no "If-Range" header or it matches the file
+     */
+    private static boolean isIfRangeMatched(HttpServletRequest request, String eTag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+
+        if (ifRange == null) return true;
+
+        // Entity tag must match strongly
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) return ifRange.equals(eTag);
+
+        // Otherwise it is a date, that has a precision of seconds
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) == lastModified / 1000 * 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Parse "Range" header, invalid header is ignored as well as absent one
+     *
+     * @param range value of header
+     * @return requested ranges OR an empty list
+     */
+    private static List<HttpRange> parseRanges(String range) {
+        try {
+            return HttpRange.parseRanges(range);
+        } catch (IllegalArgumentException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Sum up lengths of ranges, those can be satisfied
+     *
+     * @param ranges requested ranges
+     * @param size   size of file
+     * @return amount of requested bytes, overlapping ones are counted as many times as they are requested
+     */
+    private static long requestedLength(List<HttpRange> ranges, long size) {
+        long length = 0;
+
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(size);
+            if (start < size) length += range.getRangeEnd(size) - start + 1;
+        }
+
+        return length;
+    }
+
+    /**
+     * Merge overlapping and adjacent ranges, so that every byte of file is read at most once
+     *
+     * @param ranges satisfiable ranges
+     * @param size   size of file
+     * @return ranges in ascending order, those neither overlap nor touch each other
+     */
+    private static List<HttpRange> merge(List<HttpRange> ranges, long size) {
+        List<long[]> bounds = ranges.stream()
+                .map(r -> new long[]{r.getRangeStart(size), r.getRangeEnd(size)})
+                .sorted(Comparator.comparingLong(b -> b[0]))
+                .collect(Collectors.toList());
+
+        List<HttpRange> merged = new ArrayList<>();
+
+        long start = bounds.get(0)[0];
+        long end = bounds.get(0)[1];
+
+        for (long[] b : bounds.subList(1, bounds.size())) {
+            if (b[0] <= end + 1) {
+                end = Math.max(end, b[1]);
+            } else {
+                merged.add(HttpRange.createByteRange(start, end));
+                start = b[0];
+                end = b[1];
+            }
+        }
+
+        merged.add(HttpRange.createByteRange(start, end));
+
+        return merged;
+    }
+
+    /**
+     * Write a single range of file as the response body
+     *
+     * @param file     description of file
+     * @param range    satisfiable range
+     * @param response response with status "Partial Content"
+     */
+    @SneakyThrows
+    private void writeRange(FileDetailed file, HttpRange range, HttpServletResponse response) {
+        long size = file.getSize();
+        long start = range.getRangeStart(size);
+        long end = range.getRangeEnd(size);
+
+        response.setContentType(file.getExtension().getContentType());
+        response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(start, end, size));
+        response.setContentLengthLong(end - start + 1);
+
+        @Cleanup InputStream content = fileService.openContent(file, start, end - start + 1);
+        IOUtils.copyLarge(content, response.getOutputStream());
+    }
+
+    /**
+     * Write several ranges of file as a "multipart/byteranges" body
+     *
+     * @param file     description of file
+     * @param ranges   satisfiable ranges
+     * @param response response with status "Partial Content"
+     */
+    @SneakyThrows
+    private void writeRanges(FileDetailed file, List<HttpRange> ranges, HttpServletResponse response) {
+        long size = file.getSize();
+        String contentType = file.getExtension().getContentType();
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+
+        // Headers of parts are built beforehand, to know the length of the whole body
+        List<byte[]> headers = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(size);
+            long end = range.getRangeEnd(size);
+
+            byte[] header = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(start, end, size) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+
+            headers.add(header);
+            contentLength += header.length + end - start + 1;
+        }
+
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += closing.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+
+        OutputStream output = response.getOutputStream();
+
+        for (int i = 0; i < ranges.size(); i++) {
+            long start = ranges.get(i).getRangeStart(size);
+            long end = ranges.get(i).getRangeEnd(size);
+
+            output.write(headers.get(i));
+
+            @Cleanup InputStream content = fileService.openContent(file, start, end - start + 1);
+            IOUtils.copyLarge(content, output);
+        }
+
+        output.write(closing);
+    }
+
+    private static String contentRange(long start, long end, long size) {
+        return BYTES + " " + start + "-" + end + "/" + size;
+    }
+
     @Override
     @GetMapping("/exists/{uuid}")
     public ResponseEntity<Boolean> existsById(@PathVariable UUID uuid) {
@@ -138,6 +525,29 @@ public class FileController implements ICRUDController<FileBrief, FileDetailed,
         return new ResponseEntity<>(dtoIterable, OK);
     }
 
+    @Override
+    @GetMapping("/page")
+    public ResponseEntity<KeysetPage<FileBrief>> findPage(PageQuery query) {
+        KeysetPage<FileBrief> page = fileService.findPage(query);
+
+        return new ResponseEntity<>(page, OK);
+    }
+
+    /**
+     * Export metadata of all files as newline-delimited JSON, one object per line
+     *
+     * @param response {@link HttpServletResponse} through that objects are streamed to the client
+     */
+    @GetMapping("/export")
+    @SneakyThrows
+    public void export(HttpServletResponse response) {
+        response.setContentType(NdjsonExporter.CONTENT_TYPE);
+
+        fileService.export(response.getOutputStream());
+
+        response.flushBuffer();
+    }
+
     @Override
     @GetMapping("uuid/list/{uuids}")
     public ResponseEntity<Iterable<FileBrief>> findAllById(@PathVariable List<UUID> uuids) {
@@ -146,6 +556,18 @@ public class FileController implements ICRUDController<FileBrief, FileDetailed,
         return new ResponseEntity<>(dtoIterable, OK);
     }
 
+    /**
+     * Find briefs via list of identifiers, too large to be put into URL
+     *
+     * @param uuids identifiers
+     * @return found briefs, in the order of identifiers
+     */
+    @Override
+    @PostMapping("/batch")
+    public ResponseEntity<List<FileBrief>> findBatch(@RequestBody List<UUID> uuids) {
+        return new ResponseEntity<>(fileService.findBatch(uuids), OK);
+    }
+
     @Override
     @GetMapping("/count")
     public ResponseEntity<Long> count() {
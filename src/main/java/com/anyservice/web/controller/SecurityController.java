@@ -12,6 +12,8 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
+
 import static org.springframework.http.HttpStatus.OK;
 
 @Log4j2
@@ -34,12 +36,14 @@ public class SecurityController {
     /**
      * Token generation for this user
      *
-     * @param request all the data, to identify the user
+     * @param request       all the data, to identify the user
+     * @param servletRequest request itself, to identify the client
      * @return token for user
      */
     @PostMapping("/login")
-    public String login(@RequestBody Login request) {
-        UserDetailed user = userService.findUserForLogin(request.getUserName(), request.getPassword());
+    public String login(@RequestBody Login request, HttpServletRequest servletRequest) {
+        UserDetailed user = userService.findUserForLogin(request.getUserName(), request.getPassword(),
+                servletRequest.getRemoteAddr());
 
         return jwtUtil.generateToken(user);
     }
@@ -1,10 +1,16 @@
 package com.anyservice.web.controller;
 
+import com.anyservice.dto.api.KeysetPage;
+import com.anyservice.dto.api.PageQuery;
 import com.anyservice.dto.user.UserBrief;
 import com.anyservice.dto.user.UserDetailed;
 import com.anyservice.dto.user.UserForChangePassword;
 import com.anyservice.service.api.IUserService;
+import com.anyservice.service.export.NdjsonExporter;
 import com.anyservice.web.controller.api.ICRUDController;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.SneakyThrows;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
@@ -13,9 +19,11 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.constraints.NotNull;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.springframework.http.HttpStatus.*;
@@ -27,10 +35,12 @@ public class UserController implements ICRUDController<UserBrief, UserDetailed,
 
     private final IUserService userService;
     private final MessageSource messageSource;
+    private final ObjectMapper objectMapper;
 
-    public UserController(IUserService userService, MessageSource messageSource) {
+    public UserController(IUserService userService, MessageSource messageSource, ObjectMapper objectMapper) {
         this.userService = userService;
         this.messageSource = messageSource;
+        this.objectMapper = objectMapper;
     }
 
     @Override
@@ -110,7 +120,7 @@ public class UserController implements ICRUDController<UserBrief, UserDetailed,
      */
     @GetMapping("/verification/{uuid}/{code}")
     public ResponseEntity<UserDetailed> verifyUser(@NotNull @PathVariable UUID uuid,
-                                                   @NotNull @PathVariable UUID code) {
+                                                   @NotNull @PathVariable String code) {
         UserDetailed user;
 
         try {
@@ -134,6 +144,37 @@ public class UserController implements ICRUDController<UserBrief, UserDetailed,
                 .orElseGet(() -> new ResponseEntity<>(null, NO_CONTENT));
     }
 
+    /**
+     * Find user with only the requested fields, associations for the others are not loaded at all
+     *
+     * @param uuid   user identifier
+     * @param fields comma separated names of fields
+     * @return user with requested fields only
+     */
+    @GetMapping(value = "/{uuid}", params = "fields")
+    public ResponseEntity<ObjectNode> findById(@PathVariable UUID uuid, @RequestParam Set<String> fields) {
+        return userService.findById(uuid, fields)
+                .map(userDetailed -> {
+                    ObjectNode user = objectMapper.valueToTree(userDetailed);
+                    user.retain(fields);
+                    return new ResponseEntity<>(user, OK);
+                })
+                .orElseGet(() -> new ResponseEntity<>(null, NO_CONTENT));
+    }
+
+    /**
+     * Check whether user name is free, available for anyone
+     *
+     * @param userName name of a user
+     * @return whether the name is free
+     */
+    @GetMapping("/available/{userName}")
+    public ResponseEntity<Boolean> isUserNameAvailable(@PathVariable String userName) {
+        boolean available = userService.isUserNameAvailable(userName);
+
+        return new ResponseEntity<>(available, OK);
+    }
+
     @Override
     @GetMapping("/exists/{uuid}")
     public ResponseEntity<Boolean> existsById(@PathVariable UUID uuid) {
@@ -150,6 +191,29 @@ public class UserController implements ICRUDController<UserBrief, UserDetailed,
         return new ResponseEntity<>(dtoIterable, OK);
     }
 
+    @Override
+    @GetMapping("/page")
+    public ResponseEntity<KeysetPage<UserBrief>> findPage(PageQuery query) {
+        KeysetPage<UserBrief> page = userService.findPage(query);
+
+        return new ResponseEntity<>(page, OK);
+    }
+
+    /**
+     * Export all users as newline-delimited JSON, one object per line
+     *
+     * @param response {@link HttpServletResponse} through that objects are streamed to the client
+     */
+    @GetMapping("/export")
+    @SneakyThrows
+    public void export(HttpServletResponse response) {
+        response.setContentType(NdjsonExporter.CONTENT_TYPE);
+
+        userService.export(response.getOutputStream());
+
+        response.flushBuffer();
+    }
+
     @Override
     @GetMapping("uuid/list/{uuids}")
     public ResponseEntity<Iterable<UserBrief>> findAllById(@PathVariable List<UUID> uuids) {
@@ -158,6 +222,18 @@ public class UserController implements ICRUDController<UserBrief, UserDetailed,
         return new ResponseEntity<>(dtoIterable, OK);
     }
 
+    /**
+     * Find briefs via list of identifiers, too large to be put into URL
+     *
+     * @param uuids identifiers
+     * @return found briefs, in the order of identifiers
+     */
+    @Override
+    @PostMapping("/batch")
+    public ResponseEntity<List<UserBrief>> findBatch(@RequestBody List<UUID> uuids) {
+        return new ResponseEntity<>(userService.findBatch(uuids), OK);
+    }
+
     @Override
     @GetMapping("/count")
     public ResponseEntity<Long> count() {
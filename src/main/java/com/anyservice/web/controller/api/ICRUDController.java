@@ -1,6 +1,8 @@
 package com.anyservice.web.controller.api;
 
 import com.anyservice.dto.api.APrimary;
+import com.anyservice.dto.api.KeysetPage;
+import com.anyservice.dto.api.PageQuery;
 import org.springframework.http.ResponseEntity;
 
 import java.util.List;
@@ -29,8 +31,12 @@ public interface ICRUDController<BRIEF, DETAILED, ID, VERSION> {
 
     ResponseEntity<Iterable<BRIEF>> findAll();
 
+    ResponseEntity<KeysetPage<BRIEF>> findPage(PageQuery query);
+
     ResponseEntity<Iterable<BRIEF>> findAllById(List<ID> ids);
 
+    ResponseEntity<List<BRIEF>> findBatch(List<ID> ids);
+
     ResponseEntity<Long> count();
 
     ResponseEntity<?> deleteById(ID id, VERSION version);
@@ -2,8 +2,11 @@ package com.anyservice.web.security;
 
 import com.anyservice.core.DateUtils;
 import com.anyservice.dto.user.UserDetailed;
+import com.anyservice.service.api.IPrincipalCache;
 import com.anyservice.service.api.IUserService;
 import com.anyservice.web.security.dto.AuthDetails;
+import com.anyservice.web.security.dto.PrincipalSnapshot;
+import com.anyservice.web.security.exceptions.PasswordExpirationException;
 import com.anyservice.web.security.exceptions.UserNotFoundException;
 import com.anyservice.web.security.exceptions.api.LoginException;
 import org.springframework.beans.factory.annotation.Value;
@@ -12,14 +15,11 @@ import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.authentication.dao.AbstractUserDetailsAuthenticationProvider;
 import org.springframework.security.core.AuthenticationException;
-import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.util.Collection;
-import java.util.Collections;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -33,18 +33,24 @@ public class JwtAuthenticationProvider extends AbstractUserDetailsAuthentication
     @Value("${security.jwt.never}")
     private Long never;
 
-    public JwtAuthenticationProvider(IUserService userService, MessageSource messageSource, UserDetailed innerUser) {
+    public JwtAuthenticationProvider(IUserService userService, MessageSource messageSource, UserDetailed innerUser,
+                                     IPrincipalCache principalCache) {
         this.userService = userService;
         this.messageSource = messageSource;
         this.innerUser = innerUser;
+
+        // Retrieved principals are cached, so that the user is not loaded on every request
+        setUserCache(principalCache);
     }
 
     /**
      * Additional checks
-     * We do not use it, because it is conducted a bit later than we need it
+     * Checks whether the token was issued after the last password update,
+     * because cached principal does not depend on a token
      *
      * @param userDetails                         user that was sent here from
      *                                            {@link #retrieveUser(String, UsernamePasswordAuthenticationToken)}
+     *                                            or from the cache
      * @param usernamePasswordAuthenticationToken user representation that was sent here from
      *                                            {@link JwtAuthenticationFilter#attemptAuthentication(HttpServletRequest, HttpServletResponse)}
      * @throws AuthenticationException if something went wrong - let Spring framework do its job
@@ -53,6 +59,20 @@ public class JwtAuthenticationProvider extends AbstractUserDetailsAuthentication
     protected void additionalAuthenticationChecks(UserDetails userDetails,
                                                   UsernamePasswordAuthenticationToken usernamePasswordAuthenticationToken)
             throws AuthenticationException {
+        final AuthDetails authDetails = (AuthDetails) usernamePasswordAuthenticationToken.getDetails();
+
+        // Inner user does not have a password update date in token
+        if (authDetails.isInner()) return;
+
+        // Check whether passwordUpdateDates are equal
+        final Long passwordUpdateDate = Long.valueOf((JwtUtil.safeExtractKey(authDetails.getBody(), "passwordUpdateDate")));
+
+        final long actual = ((PrincipalSnapshot) userDetails).getPasswordUpdateDateInMills();
+
+        if (passwordUpdateDate != actual) {
+            throw new PasswordExpirationException(messageSource.getMessage("jwt.authentication.provider.password.expired",
+                    null, LocaleContextHolder.getLocale()));
+        }
     }
 
     /**
@@ -71,43 +91,30 @@ public class JwtAuthenticationProvider extends AbstractUserDetailsAuthentication
         final String credentials = String.valueOf(token.getCredentials());
 
         final UserDetailed user;
-        final boolean isCredentialsNonExpired;
 
         // If it's an inner user - treat it in special way
         if (authDetails.isInner()) {
             user = innerUser;
-            isCredentialsNonExpired = true;
         } else {
             // Otherwise, find user
             user = userService.findById(UUID.fromString(principal))
                     .orElseThrow(() -> new UserNotFoundException(messageSource.getMessage("jwt.authentication.provider.retrieve.user.not.found",
                             null, LocaleContextHolder.getLocale())));
-
-            // Check whether passwordUpdateDates are equal
-            final Long passwordUpdateDate = Long.valueOf((JwtUtil.safeExtractKey(authDetails.getBody(), "passwordUpdateDate")));
-
-            final Long actual = Optional.ofNullable(user.getPasswordUpdateDate())
-                    .map(DateUtils::convertOffsetDateTimeToMills)
-                    .orElse(never);
-
-            isCredentialsNonExpired = passwordUpdateDate.equals(actual);
         }
 
-        // Get all his authorities
-        final Collection<GrantedAuthority> authorities = Collections.singletonList(Optional.ofNullable(user)
-                .map(UserDetailed::getRole)
-                .map(EnumGrantedAuthority::new)
-                .orElseThrow(() -> new LoginException(messageSource.getMessage("jwt.authentication.provider.retrieve.user",
-                        null, LocaleContextHolder.getLocale()))));
-
-        // Set all the needed flags
-        final boolean isAccountNonExpired = true;
+        // User without role cannot obtain any authorities
+        if (user.getRole() == null) {
+            throw new LoginException(messageSource.getMessage("jwt.authentication.provider.retrieve.user",
+                    null, LocaleContextHolder.getLocale()));
+        }
 
-        final boolean isEnabled = user.getState().isEnabled();
-        final boolean isAccountNonLocked = user.getState().isNonLocked();
+        final long passwordUpdateDateInMills = Optional.ofNullable(user.getPasswordUpdateDate())
+                .map(DateUtils::convertOffsetDateTimeToMills)
+                .orElse(never);
 
-        // Return SpringSecurity representation of a user
-        return new org.springframework.security.core.userdetails.User(principal, credentials, isEnabled, isAccountNonExpired, isCredentialsNonExpired, isAccountNonLocked, authorities);
+        // Return SpringSecurity representation of a user with all the needed flags
+        return new PrincipalSnapshot(principal, credentials, user.getUuid(), user.getRole(), user.getState(),
+                user.getPasswordUpdateDate(), passwordUpdateDateInMills);
     }
 
     @Override
@@ -1,6 +1,7 @@
 package com.anyservice.web.security;
 
 import com.anyservice.core.DateUtils;
+import com.anyservice.core.ExpiringLruCache;
 import com.anyservice.dto.user.UserDetailed;
 import com.anyservice.service.api.IUserService;
 import com.anyservice.service.user.UserHolder;
@@ -13,6 +14,10 @@ import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.impl.DefaultClaims;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.SneakyThrows;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
@@ -23,9 +28,14 @@ import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.time.OffsetDateTime;
+import java.util.Base64;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -36,6 +46,7 @@ public class JwtUtil {
     private final IUserService userService;
     private final UserHolder userHolder;
     private final MessageSource messageSource;
+    private final MeterRegistry meterRegistry;
 
     @Value("${security.jwt.key}")
     private String jwtKey;
@@ -52,10 +63,34 @@ public class JwtUtil {
     @Value("${security.inner.key}")
     private String innerKey;
 
-    public JwtUtil(IUserService userService, UserHolder userHolder, MessageSource messageSource) {
+    @Value("${security.jwt.claims.cache.size}")
+    private int claimsCacheSize;
+
+    /**
+     * Already verified claims by digest of a token
+     */
+    private ExpiringLruCache<String, Claims> claimsCache;
+
+    public JwtUtil(IUserService userService, UserHolder userHolder, MessageSource messageSource,
+                   MeterRegistry meterRegistry) {
         this.userService = userService;
         this.userHolder = userHolder;
         this.messageSource = messageSource;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        claimsCache = new ExpiringLruCache<>(claimsCacheSize);
+
+        FunctionCounter.builder("jwt.claims.cache.requests", claimsCache, ExpiringLruCache::hits)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("jwt.claims.cache.requests", claimsCache, ExpiringLruCache::misses)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("jwt.claims.cache.size", claimsCache, ExpiringLruCache::size)
+                .register(meterRegistry);
     }
 
     /**
@@ -103,8 +138,9 @@ public class JwtUtil {
             }
 
             // If we do have usual token - do all the regular procedures to it
-            body = extractBodyFromToken(tokenString);
+            body = extractVerifiedBodyFromToken(tokenString);
 
+            // Cached claims are validated as well, so expiration works exactly the same way
             validateToken(body);
 
             uuid = safeExtractKey(body, "uuid");
@@ -213,6 +249,47 @@ public class JwtUtil {
         }
     }
 
+    /**
+     * Extract the body from token, or take it from cache if this token was already verified
+     * <p>
+     * Claims are kept in cache not longer than the token lives.
+     * Every caller gets its own copy, because claims are mutable and cached ones are shared between requests
+     *
+     * @param tokenString token
+     * @return body
+     */
+    private Claims extractVerifiedBodyFromToken(final String tokenString) {
+        final String digest = digest(tokenString);
+
+        Claims body = claimsCache.get(digest);
+
+        if (body == null) {
+            body = extractBodyFromToken(tokenString);
+
+            // Moment when token is not valid anymore
+            final long expiresAt = Long.parseLong(safeExtractKey(body, "ttl")) + ttlPeriod;
+
+            claimsCache.put(digest, body, expiresAt);
+        }
+
+        // Claims wrap the given map as it is, so the map is copied
+        return new DefaultClaims(new LinkedHashMap<>(body));
+    }
+
+    /**
+     * Calculate digest of a token, to not to keep tokens by themselves in memory
+     *
+     * @param tokenString token
+     * @return SHA-256 of a token in base64
+     */
+    @SneakyThrows
+    private static String digest(final String tokenString) {
+        byte[] hash = MessageDigest.getInstance("SHA-256")
+                .digest(tokenString.getBytes(StandardCharsets.UTF_8));
+
+        return Base64.getEncoder().encodeToString(hash);
+    }
+
     /**
      * Extract the body from token
      *
@@ -3,6 +3,7 @@ package com.anyservice.web.security;
 import com.anyservice.dto.user.UserDetailed;
 import com.anyservice.service.api.IUserService;
 import com.anyservice.service.user.UserHolder;
+import com.anyservice.web.security.dto.PrincipalSnapshot;
 import com.anyservice.web.security.exceptions.UserNotFoundException;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.MessageSource;
@@ -48,11 +49,15 @@ public class SecurityHelper {
         }
 
         UserDetailed user;
-        final String uuid = ((UserDetails) authentication.getPrincipal()).getUsername();
+        final Object principal = authentication.getPrincipal();
+        final String uuid = ((UserDetails) principal).getUsername();
 
         // Check if it's inner user
         if (innerKey.equals(uuid)) {
             user = innerUser;
+        } else if (principal instanceof PrincipalSnapshot) {
+            // Authentication provider has already loaded the user, so there is no need to load it again
+            user = ((PrincipalSnapshot) principal).toUserDetailed();
         } else {
             // Find user by id, or throw an exception if we don't find it
             user = userService.findById(UUID.fromString(uuid))
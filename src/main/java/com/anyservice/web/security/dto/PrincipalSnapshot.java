@@ -0,0 +1,57 @@
+package com.anyservice.web.security.dto;
+
+import com.anyservice.core.enums.UserRole;
+import com.anyservice.core.enums.UserState;
+import com.anyservice.dto.user.UserDetailed;
+import com.anyservice.web.security.EnumGrantedAuthority;
+import lombok.Getter;
+import org.springframework.security.core.userdetails.User;
+
+import java.time.OffsetDateTime;
+import java.util.Collections;
+import java.util.UUID;
+
+/**
+ * Minimal, token independent representation of an authenticated user
+ * <p>
+ * Keeps only those fields, that are needed by security chain and {@link com.anyservice.service.user.UserHolder},
+ * so it can be cached instead of loading and converting the whole user on every request
+ */
+@Getter
+public class PrincipalSnapshot extends User {
+
+    private final UUID uuid;
+    private final UserRole role;
+    private final UserState state;
+    private final OffsetDateTime passwordUpdateDate;
+
+    /**
+     * Password update date in mills, as it is stored in token
+     */
+    private final long passwordUpdateDateInMills;
+
+    public PrincipalSnapshot(String principal, String credentials, UUID uuid, UserRole role, UserState state,
+                             OffsetDateTime passwordUpdateDate, long passwordUpdateDateInMills) {
+        super(principal, credentials, state.isEnabled(), true, true, state.isNonLocked(),
+                Collections.singletonList(new EnumGrantedAuthority(role)));
+        this.uuid = uuid;
+        this.role = role;
+        this.state = state;
+        this.passwordUpdateDate = passwordUpdateDate;
+        this.passwordUpdateDateInMills = passwordUpdateDateInMills;
+    }
+
+    /**
+     * Convert snapshot into {@link UserDetailed} with only those fields filled, that snapshot contains
+     *
+     * @return {@link UserDetailed} with uuid, role, state and passwordUpdateDate
+     */
+    public UserDetailed toUserDetailed() {
+        return UserDetailed.builder()
+                .uuid(uuid)
+                .role(role)
+                .state(state)
+                .passwordUpdateDate(passwordUpdateDate)
+                .build();
+    }
+}
@@ -1,5 +1,6 @@
 package com.anyservice.web.security.filters;
 
+import com.anyservice.core.ExpiringLruCache;
 import com.anyservice.service.api.IUserService;
 import com.anyservice.web.security.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,7 +9,10 @@ import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.GenericFilterBean;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
 
+import javax.annotation.PostConstruct;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
@@ -16,11 +20,17 @@ import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 @Component
 public class TokenFilter extends GenericFilterBean {
 
+    /**
+     * Name of request attribute, that keeps already resolved token
+     */
+    public static final String RESOLVED_TOKEN_ATTRIBUTE = TokenFilter.class.getName() + ".RESOLVED_TOKEN";
+
     private final CacheManager cacheManager;
     private final IUserService userService;
     private final JwtUtil jwtUtil;
@@ -31,6 +41,17 @@ public class TokenFilter extends GenericFilterBean {
     @Value("${security.jwt.param.token.name}")
     private String paramTokenName;
 
+    @Value("${security.jwt.param.token.cache.size}")
+    private int resolvedTokensCacheSize;
+
+    @Value("${security.jwt.param.token.cache.seconds}")
+    private int resolvedTokensCacheSeconds;
+
+    /**
+     * Tokens, generated for one-time tokens from URL, by one-time token
+     */
+    private ExpiringLruCache<UUID, String> resolvedTokens;
+
     @Autowired
     public TokenFilter(CacheManager cacheManager, IUserService userService, JwtUtil jwtUtil) {
         this.cacheManager = cacheManager;
@@ -38,43 +59,116 @@ public class TokenFilter extends GenericFilterBean {
         this.jwtUtil = jwtUtil;
     }
 
+    @PostConstruct
+    public void init() {
+        resolvedTokens = new ExpiringLruCache<>(resolvedTokensCacheSize);
+    }
+
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
             throws IOException, ServletException {
         final HttpServletRequest httpRequest = (HttpServletRequest) request;
         HttpServletRequest wrapper = httpRequest;
-        if (httpRequest.getParameterMap().containsKey(paramTokenName)) {
+        String tokenParameter = findTokenParameter(httpRequest);
+        if (tokenParameter != null) {
+            // Resolve token only once per request, because its header is queried several times
+            String token = resolveToken(tokenParameter);
+
+            if (token != null) {
+                httpRequest.setAttribute(RESOLVED_TOKEN_ATTRIBUTE, token);
+            }
+
             wrapper = new TokenRequestWrapper(httpRequest);
         }
         chain.doFilter(wrapper, response);
     }
 
+    /**
+     * Find one-time token among parameters of request
+     * <p>
+     * Parameters of multipart request are taken from URL only,
+     * because the container would read and parse the whole body to find the rest of them
+     *
+     * @param request current request
+     * @return one-time token OR null if there is no such parameter
+     */
+    private String findTokenParameter(HttpServletRequest request) {
+        String contentType = request.getContentType();
+
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/")) {
+            return request.getParameter(paramTokenName);
+        }
+
+        if (request.getQueryString() == null) return null;
+
+        String value = UriComponentsBuilder.newInstance()
+                .query(request.getQueryString())
+                .build()
+                .getQueryParams()
+                .getFirst(paramTokenName);
+
+        return value != null ? UriUtils.decode(value, StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * Resolve one-time token from URL into a usual token:
+     * 1) Get user id from the map
+     * 2) Get user via id
+     * 3) Generate token for it
+     * <p>
+     * Result is kept for a short period of time, so the repeated downloads with the same link are cheap
+     *
+     * @param value one-time token from URL
+     * @return token OR null if it cannot be resolved
+     */
+    private String resolveToken(String value) {
+        final Cache uuidTokenMap = cacheManager.getCache("uuidTokenMap");
+
+        if (value == null || uuidTokenMap == null) return null;
+
+        final UUID oneTimeToken;
+
+        try {
+            oneTimeToken = UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        String token = resolvedTokens.get(oneTimeToken);
+
+        if (token == null) {
+            token = Optional.ofNullable(uuidTokenMap.get(oneTimeToken, UUID.class))
+                    .flatMap(userService::findById)
+                    .map(jwtUtil::generateToken)
+                    .orElse(null);
+
+            if (token != null) {
+                resolvedTokens.put(oneTimeToken, token,
+                        System.currentTimeMillis() + resolvedTokensCacheSeconds * 1000L);
+            }
+        }
+
+        return token;
+    }
+
     private class TokenRequestWrapper extends HttpServletRequestWrapper {
         public TokenRequestWrapper(HttpServletRequest request) {
             super(request);
         }
 
         /**
-         * if  jwtHeader was queried:
-         * 1) Find token in params
-         * 2) Get user id from the map
-         * 3) Get user via id
-         * 4) Generate token for it
-         * 5) Return as if it was stored in map
+         * if jwtHeader was queried - return token, resolved in {@link TokenFilter#resolveToken(String)},
+         * as if it was stored in headers
          *
          * @param name name of queried header
          * @return user token or any other header
          */
         @Override
         public String getHeader(String name) {
-            final Cache uuidTokenMap = cacheManager.getCache("uuidTokenMap");
-
-            if (!name.equalsIgnoreCase(jwtHeader) || uuidTokenMap == null) return super.getHeader(name);
+            if (!name.equalsIgnoreCase(jwtHeader)) return super.getHeader(name);
 
-            return Optional.ofNullable(this.getRequest().getParameter(paramTokenName))
-                    .map(value -> uuidTokenMap.get(UUID.fromString(value), UUID.class))
-                    .flatMap(userService::findById)
-                    .map(jwtUtil::generateToken)
+            return Optional.ofNullable(getAttribute(RESOLVED_TOKEN_ATTRIBUTE))
+                    .map(String::valueOf)
                     .orElse(super.getHeader(name));
         }
 
@@ -92,12 +186,15 @@ public class TokenFilter extends GenericFilterBean {
             return super.getHeaders(name);
         }
 
+        /**
+         * Request is wrapped only when it has a one-time token, so the header is always there
+         *
+         * @return names of all the headers
+         */
         @Override
         public Enumeration<String> getHeaderNames() {
             List<String> headerNames = Collections.list(super.getHeaderNames());
-            if (super.getParameterMap().containsKey(paramTokenName)) {
-                headerNames.add(jwtHeader);
-            }
+            headerNames.add(jwtHeader);
             return Collections.enumeration(headerNames);
         }
     }
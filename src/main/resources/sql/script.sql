@@ -8,6 +8,20 @@ create schema if not exists anyservice;
 comment on schema anyservice is 'Main schema for AnyService';
 
 -- FILE_DESCRIPTION
+drop table if exists file_blob cascade;
+create table file_blob
+(
+    hash      char(64)    not null primary key,
+    size      bigint      not null,
+    ref_count integer     not null,
+    dt_create timestamptz not null
+);
+comment on table file_blob is 'Content of files, stored once for every distinct content';
+comment on column file_blob.hash is 'Primary key - SHA-256 of content in hex, also the name of object in storage';
+comment on column file_blob.size is 'Size in bytes';
+comment on column file_blob.ref_count is 'Amount of file descriptions, those refer to the content';
+comment on column file_blob.dt_create is 'Date and time, when content was stored';
+
 drop table if exists file_description cascade;
 create table file_description
 (
@@ -17,7 +31,8 @@ create table file_description
     extension varchar(50),
     state     varchar(50),
     type      varchar(50)  not null,
-    dt_create timestamptz  not null
+    dt_create timestamptz  not null,
+    hash      char(64) references file_blob
 );
 comment on table file_description is 'Storage of files metadata';
 comment on column file_description.uuid is 'Primary key of a file';
@@ -27,6 +42,9 @@ comment on column file_description.extension is 'File extension';
 comment on column file_description.state is 'File state (LOADING or other)';
 comment on column file_description.type is 'Domain, that files belongs to (profile photo etc.)';
 comment on column file_description.dt_create is 'Date and time of file creation and also works as Version of a file';
+comment on column file_description.hash is 'Content of file OR null if it is stored by identifier of file';
+
+create index file_description_dt_create_uuid_idx on file_description (dt_create, uuid);
 
 drop table if exists countries cascade;
 create table if not exists countries
@@ -86,6 +104,8 @@ comment on column users.legal_status is 'User legal status (LLC etc.)';
 comment on column users.is_legal_status_verified is 'Is user status verified in application?';
 comment on column users.photo is 'User profile photo';
 
+create index users_dt_create_uuid_idx on users (dt_create, uuid);
+
 -- users_countries
 drop table if exists users_countries;
 create table users_countries
@@ -116,6 +136,37 @@ create table users_files
 
 comment on table users_files is 'Contains data of two "virtual columns": documents_photos and portfolio';
 
+-- MAIL_OUTBOX
+drop table if exists mail_outbox cascade;
+create table mail_outbox
+(
+    uuid            uuid        not null primary key,
+    dt_create       timestamptz not null default now(),
+    type            varchar(50) not null,
+    recipient       varchar     not null,
+    locale          varchar(35),
+    payload         jsonb       not null,
+    state           varchar(50) not null,
+    attempts        integer     not null default 0,
+    next_attempt_at timestamptz not null default now(),
+    last_error      text,
+    dt_sent         timestamptz
+);
+comment on table mail_outbox is 'Emails, written in the same transaction as the data they are about and sent asynchronously';
+comment on column mail_outbox.uuid is 'Primary key of an email';
+comment on column mail_outbox.dt_create is 'Date and time, when email was put into outbox';
+comment on column mail_outbox.type is 'Kind of email (VERIFICATION etc.)';
+comment on column mail_outbox.recipient is 'Email address of a recipient';
+comment on column mail_outbox.locale is 'Language tag, the email is rendered with';
+comment on column mail_outbox.payload is 'Variables of a template, cleared once email is sent';
+comment on column mail_outbox.state is 'State of an email (PENDING, SENT, DEAD)';
+comment on column mail_outbox.attempts is 'Amount of attempts to send';
+comment on column mail_outbox.next_attempt_at is 'Date and time of the next attempt OR end of the lease of the current one';
+comment on column mail_outbox.last_error is 'Reason of the last failed attempt';
+comment on column mail_outbox.dt_sent is 'Date and time of successful sending';
+
+create index mail_outbox_pending_idx on mail_outbox (next_attempt_at) where state = 'PENDING';
+
 drop table if exists orders cascade;
 create table if not exists orders
 (
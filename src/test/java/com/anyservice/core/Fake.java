@@ -0,0 +1,59 @@
+package com.anyservice.core;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * In-memory implementation of an interface (usually a repository), that answers only the given methods
+ * <p>
+ * Any other method throws {@link UnsupportedOperationException}, so that unexpected calls are not missed
+ *
+ * @param <T> interface
+ */
+public class Fake<T> {
+
+    private final Class<T> type;
+    private final Map<String, Function<Object[], Object>> answers = new HashMap<>();
+
+    private Fake(Class<T> type) {
+        this.type = type;
+    }
+
+    public static <T> Fake<T> of(Class<T> type) {
+        return new Fake<>(type);
+    }
+
+    /**
+     * Answer all the methods with given name
+     *
+     * @param method name of a method
+     * @param answer function of arguments of a call
+     * @return this fake
+     */
+    public Fake<T> on(String method, Function<Object[], Object> answer) {
+        answers.put(method, answer);
+        return this;
+    }
+
+    public T create() {
+        Object fake = Proxy.newProxyInstance(type.getClassLoader(), new Class[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Fake " + type.getSimpleName();
+            }
+
+            Function<Object[], Object> answer = answers.get(method.getName());
+            if (answer == null) throw new UnsupportedOperationException(method.getName());
+
+            return answer.apply(args != null ? args : new Object[0]);
+        });
+
+        return type.cast(fake);
+    }
+}
@@ -0,0 +1,96 @@
+package com.anyservice.core;
+
+import io.minio.MinioClient;
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Storage, that keeps objects in memory and counts calls to it
+ * <p>
+ * Only the methods used by the application are overridden, any other one would try to reach a real server
+ */
+public class InMemoryMinioClient extends MinioClient {
+
+    public static final String SIGNED_URL = "http://127.0.0.1:9000/signed";
+
+    /**
+     * Content by name of an object
+     */
+    public final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+
+    /**
+     * Amount of uploads
+     */
+    public final AtomicInteger puts = new AtomicInteger();
+
+    /**
+     * Amount of opened streams of content
+     */
+    public final AtomicInteger calls = new AtomicInteger();
+
+    /**
+     * Amount of signed URLs
+     */
+    public final AtomicInteger signs = new AtomicInteger();
+
+    public InMemoryMinioClient() throws Exception {
+        super("http://127.0.0.1:9000", "access", "secret");
+    }
+
+    @Override
+    public void putObject(String bucketName, String objectName, InputStream stream, long size,
+                          String contentType) {
+        puts.incrementAndGet();
+
+        try {
+            byte[] content = new byte[(int) size];
+            IOUtils.readFully(stream, content);
+            objects.put(objectName, content);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public InputStream getObject(String bucketName, String objectName) {
+        return getObject(bucketName, objectName, 0);
+    }
+
+    @Override
+    public InputStream getObject(String bucketName, String objectName, long offset) {
+        return getObject(bucketName, objectName, offset, (long) content(objectName).length - offset);
+    }
+
+    @Override
+    public InputStream getObject(String bucketName, String objectName, long offset, Long length) {
+        calls.incrementAndGet();
+        return new ByteArrayInputStream(content(objectName), (int) offset, length.intValue());
+    }
+
+    @Override
+    public void copyObject(String bucketName, String objectName, String destBucketName, String destObjectName) {
+        objects.put(destObjectName, content(objectName));
+    }
+
+    @Override
+    public void removeObject(String bucketName, String objectName) {
+        objects.remove(objectName);
+    }
+
+    @Override
+    public String presignedGetObject(String bucketName, String objectName, Integer expires) {
+        signs.incrementAndGet();
+        return SIGNED_URL;
+    }
+
+    private byte[] content(String objectName) {
+        byte[] content = objects.get(objectName);
+        if (content == null) throw new IllegalStateException("No object " + objectName);
+        return content;
+    }
+}
@@ -0,0 +1,129 @@
+package com.anyservice.tests.benchmark;
+
+import com.anyservice.config.HazelcastConfig;
+import com.anyservice.service.user.LoginThrottle;
+import com.hazelcast.config.Config;
+import com.hazelcast.config.SerializationConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compare sizes and throughput of default java serialization and compact one
+ * <p>
+ * Not a part of the test suite, since it takes a while and results depend on hardware - run it on demand:
+ * {@code mvn test -Dtest=HazelcastSerializationBenchmark}
+ */
+@Log4j2
+public class HazelcastSerializationBenchmark {
+
+    private static final int OPERATIONS = 100_000;
+
+    private final InternalSerializationService compact = new DefaultSerializationServiceBuilder()
+            .setConfig(HazelcastConfig.serializationConfig())
+            .build();
+
+    private final InternalSerializationService standard = new DefaultSerializationServiceBuilder()
+            .setConfig(new SerializationConfig())
+            .build();
+
+    /**
+     * Results are only logged
+     */
+    @Test
+    public void serializationBenchmark() {
+        UUID uuid = UUID.randomUUID();
+        LoginThrottle.Attempts attempts = createAttempts();
+
+        log.info("Serialized size of UUID: default - " + standard.toData(uuid).totalSize()
+                + " bytes, compact - " + compact.toData(uuid).totalSize() + " bytes");
+
+        // Before, attempts were java serialized, and their maps took most of the size
+        int mapsSize = standard.toData(ReflectionTestUtils.getField(attempts, "userNames")).totalSize()
+                + standard.toData(ReflectionTestUtils.getField(attempts, "addresses")).totalSize();
+
+        log.info("Serialized size of login attempts: java serialized maps - " + mapsSize
+                + " bytes, compact - " + compact.toData(attempts).totalSize() + " bytes");
+
+        // Warm up
+        roundTrips(standard, uuid);
+        roundTrips(compact, uuid);
+
+        log.info("UUID serialization round trips per second: default - " + roundTrips(standard, uuid)
+                + ", compact - " + roundTrips(compact, uuid));
+
+        HazelcastInstance standardInstance = createInstance(new SerializationConfig());
+        HazelcastInstance compactInstance = createInstance(HazelcastConfig.serializationConfig());
+
+        try {
+            putAndGet(standardInstance);
+            putAndGet(compactInstance);
+
+            log.info("Map put and get of UUID per second: default - " + putAndGet(standardInstance)
+                    + ", compact - " + putAndGet(compactInstance));
+        } finally {
+            standardInstance.shutdown();
+            compactInstance.shutdown();
+        }
+    }
+
+    private static long roundTrips(InternalSerializationService service, UUID uuid) {
+        long start = System.nanoTime();
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            Assert.assertNotNull(service.toObject(service.toData(uuid)));
+        }
+
+        return OPERATIONS * 1_000_000_000L / (System.nanoTime() - start);
+    }
+
+    private static long putAndGet(HazelcastInstance instance) {
+        IMap<UUID, UUID> map = instance.getMap("benchmark");
+        UUID[] keys = new UUID[1000];
+
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = UUID.randomUUID();
+        }
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            UUID key = keys[i % keys.length];
+            map.set(key, key);
+            Assert.assertNotNull(map.get(key));
+        }
+
+        return OPERATIONS * 1_000_000_000L / (System.nanoTime() - start);
+    }
+
+    private static HazelcastInstance createInstance(SerializationConfig serializationConfig) {
+        Config config = new Config()
+                .setInstanceName("serialization-benchmark-" + UUID.randomUUID())
+                .setSerializationConfig(serializationConfig);
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+
+        return Hazelcast.newHazelcastInstance(config);
+    }
+
+    private static LoginThrottle.Attempts createAttempts() {
+        Map<String, Long> userNames = new HashMap<>();
+        Map<String, Long> addresses = new HashMap<>();
+
+        for (int i = 0; i < 50; i++) {
+            userNames.put("user" + i, (long) i);
+            addresses.put("10.0.0." + i, (long) i * 2);
+        }
+
+        return new LoginThrottle.Attempts(userNames, addresses);
+    }
+}
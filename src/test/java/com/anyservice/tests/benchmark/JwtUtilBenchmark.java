@@ -0,0 +1,97 @@
+package com.anyservice.tests.benchmark;
+
+import com.anyservice.dto.user.UserDetailed;
+import com.anyservice.web.security.JwtUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.context.support.StaticMessageSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.UUID;
+
+/**
+ * Compare parsing of tokens, those were never seen (cold), with parsing of the same token again (warm),
+ * when verified claims are taken from cache
+ * <p>
+ * Not a part of the test suite, since it takes a while and results depend on hardware - run it on demand:
+ * {@code mvn test -Dtest=JwtUtilBenchmark}
+ */
+@Log4j2
+public class JwtUtilBenchmark {
+
+    private static final int TOKENS = 20_000;
+
+    private JwtUtil jwtUtil;
+
+    @BeforeClass
+    public void setup() {
+        StaticMessageSource messageSource = new StaticMessageSource();
+        messageSource.setUseCodeAsDefaultMessage(true);
+
+        jwtUtil = new JwtUtil(null, null, messageSource, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(jwtUtil, "jwtKey", "LKJIDJFV1aswZ");
+        ReflectionTestUtils.setField(jwtUtil, "ttlPeriod", 3_600_000L);
+        ReflectionTestUtils.setField(jwtUtil, "never", 1691300640540L);
+        ReflectionTestUtils.setField(jwtUtil, "zone", 3);
+        ReflectionTestUtils.setField(jwtUtil, "innerKey", "inner");
+        ReflectionTestUtils.setField(jwtUtil, "claimsCacheSize", 10_000);
+        jwtUtil.init();
+    }
+
+    /**
+     * Results are only logged
+     */
+    @Test
+    public void parsingBenchmark() {
+        // Warm up
+        measureCold();
+        measureWarm();
+
+        long cold = measureCold();
+        long warm = measureWarm();
+
+        log.info("Token parsing per token: cold (verified) - " + cold + " ns, warm (cached claims) - " + warm + " ns");
+    }
+
+    /**
+     * Every token is parsed once, so claims are verified every time
+     *
+     * @return average time in nanoseconds
+     */
+    private long measureCold() {
+        String[] tokens = new String[TOKENS];
+
+        for (int i = 0; i < TOKENS; i++) {
+            tokens[i] = jwtUtil.generateToken(UserDetailed.builder().uuid(UUID.randomUUID()).build());
+        }
+
+        long start = System.nanoTime();
+
+        for (String token : tokens) {
+            Assert.assertNotNull(jwtUtil.parseToken(token, null));
+        }
+
+        return (System.nanoTime() - start) / TOKENS;
+    }
+
+    /**
+     * The same token is parsed again and again, like requests of a single client
+     *
+     * @return average time in nanoseconds
+     */
+    private long measureWarm() {
+        String token = jwtUtil.generateToken(UserDetailed.builder().uuid(UUID.randomUUID()).build());
+        jwtUtil.parseToken(token, null);
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < TOKENS; i++) {
+            Assert.assertNotNull(jwtUtil.parseToken(token, null));
+        }
+
+        return (System.nanoTime() - start) / TOKENS;
+    }
+}
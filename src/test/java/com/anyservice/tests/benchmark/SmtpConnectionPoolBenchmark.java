@@ -0,0 +1,123 @@
+package com.anyservice.tests.benchmark;
+
+import com.anyservice.core.SmtpConnectionPool;
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compare sending through a new connection for every message with sending through pooled connections
+ * <p>
+ * Not a part of the test suite, since it takes a while and results depend on hardware - run it on demand:
+ * {@code mvn test -Dtest=SmtpConnectionPoolBenchmark}
+ */
+@Log4j2
+public class SmtpConnectionPoolBenchmark {
+
+    private static final int MESSAGES = 200;
+    private static final int THREADS = 4;
+
+    private GreenMail greenMail;
+    private JavaMailSenderImpl mailSender;
+
+    @BeforeClass
+    public void startMailServer() {
+        greenMail = new GreenMail(ServerSetupTest.SMTP);
+        greenMail.start();
+
+        Properties properties = new Properties();
+        properties.put("mail.smtp.auth", "false");
+
+        mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(ServerSetupTest.SMTP.getPort());
+        mailSender.setJavaMailProperties(properties);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopMailServer() {
+        if (greenMail != null) greenMail.stop();
+    }
+
+    /**
+     * Results are only logged
+     *
+     * @throws Exception if something goes wrong - let interpret it as failed test
+     */
+    @Test
+    public void sendingBenchmark() throws Exception {
+        long start = System.nanoTime();
+        sendInParallel(null);
+        long unpooledMillis = (System.nanoTime() - start) / 1_000_000;
+
+        long pooledMillis;
+        try (SmtpConnectionPool pool = new SmtpConnectionPool(mailSender.getSession(), "smtp", "localhost",
+                ServerSetupTest.SMTP.getPort(), null, null, THREADS, 1000, 60_000, 10_000)) {
+            start = System.nanoTime();
+            sendInParallel(pool);
+            pooledMillis = (System.nanoTime() - start) / 1_000_000;
+        }
+
+        Assert.assertTrue(greenMail.waitForIncomingEmail(5000, MESSAGES * 2));
+
+        log.info(MESSAGES + " messages in " + THREADS + " threads: "
+                + "connection per message - " + unpooledMillis + " ms, "
+                + "pooled connections - " + pooledMillis + " ms");
+    }
+
+    /**
+     * Send messages from several threads
+     *
+     * @param pool pool of connections OR null to open a new connection for every message
+     * @throws Exception if any message is not sent
+     */
+    private void sendInParallel(SmtpConnectionPool pool) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+
+            for (int i = 0; i < MESSAGES; i++) {
+                MimeMessage message = createMessage(i);
+
+                futures.add(executor.submit(() -> {
+                    if (pool != null) {
+                        pool.send(message);
+                    } else {
+                        mailSender.send(message);
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private MimeMessage createMessage(int number) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        message.setFrom("sender@localhost");
+        message.setRecipients(MimeMessage.RecipientType.TO, "recipient" + number + "@localhost");
+        message.setSubject("Message " + number);
+        message.setText("Message " + number);
+        return message;
+    }
+}
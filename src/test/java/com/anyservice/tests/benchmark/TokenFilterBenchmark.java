@@ -0,0 +1,141 @@
+package com.anyservice.tests.benchmark;
+
+import com.anyservice.core.Fake;
+import com.anyservice.dto.user.UserDetailed;
+import com.anyservice.service.api.IUserService;
+import com.anyservice.web.security.JwtUtil;
+import com.anyservice.web.security.filters.TokenFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.support.StaticMessageSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletRequest;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Compare requests with one-time tokens, those were never resolved (cold),
+ * with repeated requests with the same one-time token (warm), when the token is taken from cache
+ * <p>
+ * Every request queries the header of token several times, as security filters do.
+ * Users are taken from a fake service, so only the work of the filter itself is measured
+ * <p>
+ * Not a part of the test suite, since it takes a while and results depend on hardware - run it on demand:
+ * {@code mvn test -Dtest=TokenFilterBenchmark}
+ */
+@Log4j2
+public class TokenFilterBenchmark {
+
+    private static final int REQUESTS = 20_000;
+    private static final int HEADER_QUERIES = 3;
+    private static final String JWT_HEADER = "JX-TOKEN";
+
+    private TokenFilter tokenFilter;
+    private Cache uuidTokenMap;
+
+    @BeforeClass
+    public void setup() {
+        StaticMessageSource messageSource = new StaticMessageSource();
+        messageSource.setUseCodeAsDefaultMessage(true);
+
+        JwtUtil jwtUtil = new JwtUtil(null, null, messageSource, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(jwtUtil, "jwtKey", "LKJIDJFV1aswZ");
+        ReflectionTestUtils.setField(jwtUtil, "never", 1691300640540L);
+        ReflectionTestUtils.setField(jwtUtil, "zone", 3);
+
+        IUserService userService = Fake.of(IUserService.class)
+                .on("findById", args -> Optional.of(UserDetailed.builder().uuid((UUID) args[0]).build()))
+                .create();
+
+        ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager("uuidTokenMap");
+        uuidTokenMap = cacheManager.getCache("uuidTokenMap");
+
+        tokenFilter = new TokenFilter(cacheManager, userService, jwtUtil);
+        ReflectionTestUtils.setField(tokenFilter, "jwtHeader", JWT_HEADER);
+        ReflectionTestUtils.setField(tokenFilter, "paramTokenName", "token");
+        ReflectionTestUtils.setField(tokenFilter, "resolvedTokensCacheSize", 1000);
+        ReflectionTestUtils.setField(tokenFilter, "resolvedTokensCacheSeconds", 60);
+        tokenFilter.init();
+    }
+
+    /**
+     * Results are only logged
+     *
+     * @throws Exception if something goes wrong - let interpret it as failed test
+     */
+    @Test
+    public void resolvingBenchmark() throws Exception {
+        // Warm up
+        measureCold();
+        measureWarm();
+
+        long cold = measureCold();
+        long warm = measureWarm();
+
+        log.info("Request with one-time token: cold (resolved) - " + cold + " ns, warm (cached token) - "
+                + warm + " ns");
+    }
+
+    /**
+     * Every one-time token is used once
+     *
+     * @return average time in nanoseconds
+     */
+    private long measureCold() throws Exception {
+        String[] oneTimeTokens = new String[REQUESTS];
+
+        for (int i = 0; i < REQUESTS; i++) {
+            UUID oneTimeToken = UUID.randomUUID();
+            uuidTokenMap.put(oneTimeToken, UUID.randomUUID());
+            oneTimeTokens[i] = oneTimeToken.toString();
+        }
+
+        long start = System.nanoTime();
+
+        for (String oneTimeToken : oneTimeTokens) {
+            filter(oneTimeToken);
+        }
+
+        return (System.nanoTime() - start) / REQUESTS;
+    }
+
+    /**
+     * The same one-time token is used again and again, like repeated downloads with the same link
+     *
+     * @return average time in nanoseconds
+     */
+    private long measureWarm() throws Exception {
+        UUID oneTimeToken = UUID.randomUUID();
+        uuidTokenMap.put(oneTimeToken, UUID.randomUUID());
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < REQUESTS; i++) {
+            filter(oneTimeToken.toString());
+        }
+
+        return (System.nanoTime() - start) / REQUESTS;
+    }
+
+    private void filter(String oneTimeToken) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setParameter("token", oneTimeToken);
+
+        FilterChain chain = (req, res) -> {
+            for (int i = 0; i < HEADER_QUERIES; i++) {
+                Assert.assertNotNull(((HttpServletRequest) req).getHeader(JWT_HEADER));
+            }
+        };
+
+        tokenFilter.doFilter(request, new MockHttpServletResponse(), chain);
+    }
+}
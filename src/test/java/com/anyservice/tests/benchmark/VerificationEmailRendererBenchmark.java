@@ -0,0 +1,117 @@
+package com.anyservice.tests.benchmark;
+
+import com.anyservice.core.VersionedMessageSource;
+import com.anyservice.service.user.VerificationEmailRenderer;
+import com.sun.management.ThreadMXBean;
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.ui.freemarker.FreeMarkerTemplateUtils;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+/**
+ * Compare rendering by Freemarker with all the messages looked up every time and pre-rendered templates
+ * <p>
+ * Not a part of the test suite, since it takes a while and results depend on hardware - run it on demand:
+ * {@code mvn test -Dtest=VerificationEmailRendererBenchmark}
+ */
+@Log4j2
+public class VerificationEmailRendererBenchmark {
+
+    private static final int EMAILS = 20_000;
+
+    private static final String[] MESSAGES = {"greetings", "explanation", "whattodo", "linktext",
+            "ifwrongaddress", "companycredentials"};
+
+    private Configuration freemarkerConfig;
+    private VersionedMessageSource messageSource;
+    private VerificationEmailRenderer renderer;
+
+    @BeforeClass
+    public void setup() {
+        freemarkerConfig = new Configuration(Configuration.VERSION_2_3_28);
+
+        messageSource = new VersionedMessageSource();
+        messageSource.setBasenames("i18n/web-messages");
+        messageSource.setDefaultEncoding("UTF-8");
+        messageSource.setUseCodeAsDefaultMessage(true);
+
+        renderer = new VerificationEmailRenderer(freemarkerConfig, messageSource, new String[]{"en", "ru"});
+    }
+
+    /**
+     * Results are only logged
+     *
+     * @throws Exception if something goes wrong - let interpret it as failed test
+     */
+    @Test
+    public void renderingBenchmark() throws Exception {
+        String initials = "Firstname Middlename Lastname";
+        String link = "http://localhost/user/verification/" + UUID.randomUUID() + "/" + UUID.randomUUID();
+
+        // Warm up
+        measure(() -> renderWithFreemarker(initials, link, Locale.ENGLISH));
+        measure(() -> renderer.renderText(initials, link, Locale.ENGLISH));
+
+        long[] freemarker = measure(() -> renderWithFreemarker(initials, link, Locale.ENGLISH));
+        long[] preRendered = measure(() -> renderer.renderText(initials, link, Locale.ENGLISH));
+
+        log.info("Verification email per message: "
+                + "freemarker - " + freemarker[0] + " ns, " + freemarker[1] + " bytes allocated; "
+                + "pre-rendered - " + preRendered[0] + " ns, " + preRendered[1] + " bytes allocated");
+    }
+
+    /**
+     * Render email many times
+     *
+     * @param render rendering of a single email
+     * @return average time in nanoseconds and average allocated bytes per email
+     * @throws Exception if rendering fails
+     */
+    private static long[] measure(Callable<String> render) throws Exception {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+
+        int length = 0;
+        for (int i = 0; i < EMAILS; i++) {
+            length += render.call().length();
+        }
+
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        Assert.assertTrue(length > 0);
+
+        return new long[]{nanos / EMAILS, allocated / EMAILS};
+    }
+
+    /**
+     * The way emails were rendered before templates were pre-rendered
+     */
+    private String renderWithFreemarker(String initials, String link, Locale locale) throws Exception {
+        Map<String, Object> model = new HashMap<>();
+
+        for (String message : MESSAGES) {
+            model.put(message, messageSource.getMessage("user.verification.email." + message, null, locale));
+        }
+
+        model.put("initials", initials);
+        model.put("link", link);
+
+        Template template = freemarkerConfig.getTemplate("/mail/verification.ftl");
+
+        return FreeMarkerTemplateUtils.processTemplateIntoString(template, model);
+    }
+}
@@ -10,6 +10,7 @@ import com.anyservice.dto.DetailedWrapper;
 import com.anyservice.dto.api.APrimary;
 import com.anyservice.dto.file.FileBrief;
 import com.anyservice.dto.file.FileDetailed;
+import com.anyservice.dto.file.PresignedUrl;
 import com.anyservice.service.file.FileService;
 import com.anyservice.tests.api.ICRUDTest;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -17,11 +18,17 @@ import com.hazelcast.cp.internal.util.Tuple2;
 import com.jlefebure.spring.boot.minio.MinioService;
 import lombok.SneakyThrows;
 import lombok.Synchronized;
+import org.apache.commons.io.IOUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.MessageSource;
+import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.ResultMatcher;
@@ -29,8 +36,13 @@ import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.Date;
 import java.util.List;
 import java.util.UUID;
 
@@ -44,6 +56,8 @@ import static com.anyservice.core.enums.FileType.PROFILE_PHOTO;
 import static java.util.Comparator.comparing;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 public class FileIntegrationTest extends TestConfig implements ICRUDTest<FileBrief, FileDetailed> {
 
@@ -57,6 +71,9 @@ public class FileIntegrationTest extends TestConfig implements ICRUDTest<FileBri
     @Autowired
     private FileService fileService;
 
+    @Autowired
+    private MessageSource messageSource;
+
     /**
      * Data provider for {@link this#uploadGetLoadDeleteTest(MockMultipartFile, FileType, boolean)}
      *
@@ -274,6 +291,237 @@ public class FileIntegrationTest extends TestConfig implements ICRUDTest<FileBri
         Assert.assertEquals(available, 0);
     }
 
+    /**
+     * Version of a file is checked by the delete statement by itself
+     *
+     * @throws Exception if something goes wrong - let interpret it as failed test
+     */
+    @Test
+    public void deleteVersionCheckTest() throws Exception {
+        FileDetailed file = createNewItem();
+        UUID uuid = file.getUuid();
+
+        Date version = new Date(convertOffsetDateTimeToMills(fileService.findById(uuid).get().getDtCreate()));
+
+        // Outdated version of existing file
+        expectFailure(() -> fileService.deleteById(uuid, new Date(version.getTime() - 1)), "delete.version");
+        Assert.assertTrue(fileService.existsById(uuid));
+
+        // Unknown file
+        expectFailure(() -> fileService.deleteById(UUID.randomUUID(), version), "file.not.exists");
+
+        // Current version
+        fileService.deleteById(uuid, version);
+        Assert.assertFalse(fileService.existsById(uuid));
+    }
+
+    /**
+     * Run action and make sure, it fails with the given message
+     *
+     * @param action      action
+     * @param messageCode code of expected message
+     */
+    private void expectFailure(Runnable action, String messageCode) {
+        try {
+            action.run();
+            Assert.fail("Expected failure with " + messageCode);
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals(e.getMessage(),
+                    messageSource.getMessage(messageCode, null, LocaleContextHolder.getLocale()));
+        }
+    }
+
+    /**
+     * Load single and multiple ranges of file, with and without a matching "If-Range"
+     *
+     * @throws Exception if something goes wrong - let interpret it as failed test
+     */
+    @Test
+    public void loadRangesTest() throws Exception {
+        initializeFileTestUtils();
+
+        Tuple2<MockMultipartFile, FileDetailed> file = fileTestUtils.createFile(DOCUMENT, FileExtension.pdf);
+        byte[] content = file.element1.getBytes();
+        int size = content.length;
+
+        String url = baseUrl + "/" + file.element2.getUuid() + "/load";
+
+        // Whole file
+        MockHttpServletResponse whole = mockMvc.perform(get(url)
+                .headers(getHeaders()))
+                .andExpect(expectOk)
+                .andReturn()
+                .getResponse();
+
+        Assert.assertEquals(whole.getContentAsByteArray(), content);
+        Assert.assertEquals(whole.getContentLengthLong(), size);
+        Assert.assertEquals(whole.getHeader(HttpHeaders.ACCEPT_RANGES), "bytes");
+
+        // The first byte only
+        MockHttpServletResponse single = mockMvc.perform(get(url)
+                .headers(getHeaders())
+                .header(HttpHeaders.RANGE, "bytes=0-0"))
+                .andExpect(status().isPartialContent())
+                .andReturn()
+                .getResponse();
+
+        Assert.assertEquals(single.getContentAsByteArray(), new byte[]{content[0]});
+        Assert.assertEquals(single.getHeader(HttpHeaders.CONTENT_RANGE), "bytes 0-0/" + size);
+
+        // The first and the last bytes in a multipart body
+        MockHttpServletResponse multiple = mockMvc.perform(get(url)
+                .headers(getHeaders())
+                .header(HttpHeaders.RANGE, "bytes=0-0,-1"))
+                .andExpect(status().isPartialContent())
+                .andReturn()
+                .getResponse();
+
+        Assert.assertTrue(multiple.getContentType().startsWith("multipart/byteranges"));
+        Assert.assertEquals(multiple.getContentLengthLong(), multiple.getContentAsByteArray().length);
+        Assert.assertTrue(multiple.getContentAsString().contains("bytes " + (size - 1) + "-" + (size - 1) + "/" + size));
+
+        // Outdated validator - the whole file is sent
+        mockMvc.perform(get(url)
+                .headers(getHeaders())
+                .header(HttpHeaders.RANGE, "bytes=0-0")
+                .header(HttpHeaders.IF_RANGE, "\"" + UUID.randomUUID() + "\""))
+                .andExpect(expectOk);
+
+        // Range beyond the end of file
+        mockMvc.perform(get(url)
+                .headers(getHeaders())
+                .header(HttpHeaders.RANGE, "bytes=" + size + "-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable());
+
+        deleteAll();
+    }
+
+    /**
+     * Upload file directly into storage through a presigned URL, commit it and download it the same way
+     *
+     * @throws Exception if something goes wrong - let interpret it as failed test
+     */
+    @Test
+    public void presignedUploadAndDownloadTest() throws Exception {
+        // Presigned mode is disabled by default
+        Object service = AopTestUtils.getTargetObject(fileService);
+        ReflectionTestUtils.setField(service, "presignedEnabled", true);
+
+        try {
+            FileExtension extension = FileExtension.pdf;
+            byte[] content = randomString(1, 99).getBytes();
+
+            FileDetailed description = FileDetailed.builder()
+                    .name(randomString(1, 50) + "." + extension)
+                    .size((long) content.length)
+                    .extension(extension)
+                    .build();
+
+            String createdAsString = mockMvc.perform(post(baseUrl + "/presigned/" + DOCUMENT.name())
+                    .headers(getHeaders())
+                    .contentType(getContentType())
+                    .content(getObjectMapper().writeValueAsString(description)))
+                    .andExpect(expectCreated)
+                    .andReturn()
+                    .getResponse()
+                    .getContentAsString();
+
+            PresignedUrl upload = getObjectMapper().readValue(createdAsString, PresignedUrl.class);
+
+            // Nothing is uploaded yet
+            mockMvc.perform(post(baseUrl + "/" + upload.getUuid() + "/commit")
+                    .headers(getHeaders()))
+                    .andExpect(expectBadRequest);
+
+            // Content of loading file is not available
+            mockMvc.perform(get(baseUrl + "/" + upload.getUuid() + "/load")
+                    .headers(getHeaders()))
+                    .andExpect(status().isConflict());
+
+            // Upload content directly into storage
+            HttpURLConnection connection = (HttpURLConnection) new URL(upload.getUrl()).openConnection();
+            connection.setRequestMethod(upload.getMethod());
+            connection.setDoOutput(true);
+            connection.getOutputStream().write(content);
+            Assert.assertEquals(connection.getResponseCode(), 200);
+
+            mockMvc.perform(post(baseUrl + "/" + upload.getUuid() + "/commit")
+                    .headers(getHeaders()))
+                    .andExpect(expectOk);
+
+            // URL is still valid, but committed content is not changed by it anymore
+            connection = (HttpURLConnection) new URL(upload.getUrl()).openConnection();
+            connection.setRequestMethod(upload.getMethod());
+            connection.setDoOutput(true);
+            connection.getOutputStream().write(new byte[content.length]);
+            Assert.assertEquals(connection.getResponseCode(), 200);
+
+            String downloadAsString = mockMvc.perform(get(baseUrl + "/" + upload.getUuid() + "/presigned")
+                    .headers(getHeaders()))
+                    .andExpect(expectOk)
+                    .andReturn()
+                    .getResponse()
+                    .getContentAsString();
+
+            PresignedUrl download = getObjectMapper().readValue(downloadAsString, PresignedUrl.class);
+
+            // Download content directly from storage
+            try (InputStream downloaded = new URL(download.getUrl()).openStream()) {
+                Assert.assertEquals(IOUtils.toByteArray(downloaded), content);
+            }
+        } finally {
+            ReflectionTestUtils.setField(service, "presignedEnabled", false);
+            deleteAll();
+        }
+    }
+
+    /**
+     * Upload file through the streaming endpoint, with the size declared before content, and load it back
+     *
+     * @throws Exception if something goes wrong - let interpret it as failed test
+     */
+    @Test
+    public void streamingUploadTest() throws Exception {
+        FileExtension extension = FileExtension.pdf;
+        String fileName = randomString(1, 50) + "." + extension;
+        byte[] content = randomString(1, 99).getBytes();
+
+        String boundary = UUID.randomUUID().toString();
+
+        // Build multipart body by hand: size field goes first, then the file itself
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"size\"\r\n\r\n"
+                + content.length + "\r\n"
+                + "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + fileName + "\"\r\n"
+                + "Content-Type: " + extension.getContentType() + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.write(content);
+        body.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        String headerLocation = mockMvc.perform(post(baseUrl + "/upload/" + DOCUMENT.name() + "/stream")
+                .headers(getHeaders())
+                .contentType("multipart/form-data; boundary=" + boundary)
+                .content(body.toByteArray()))
+                .andExpect(expectCreated)
+                .andReturn()
+                .getResponse()
+                .getHeader("Location");
+
+        UUID uuid = getUuidFromHeaderLocation(headerLocation);
+
+        // Load file by uuid and compare contents
+        MockHttpServletResponse obtainedFile = mockMvc.perform(get(baseUrl + "/" + uuid + "/load")
+                .headers(getHeaders()))
+                .andExpect(expectOk)
+                .andReturn()
+                .getResponse();
+
+        Assert.assertEquals(obtainedFile.getContentAsByteArray(), content);
+
+        deleteAll();
+    }
+
     @Test
     @Override
     public void createAndSelectTest() throws Exception {
@@ -0,0 +1,145 @@
+package com.anyservice.tests.integration;
+
+import com.anyservice.config.TestConfig;
+import com.anyservice.core.enums.MailState;
+import com.anyservice.dto.user.UserDetailed;
+import com.anyservice.entity.mail.MailOutboxEntity;
+import com.anyservice.entity.user.Contacts;
+import com.anyservice.entity.user.Initials;
+import com.anyservice.repository.MailOutboxRepository;
+import com.anyservice.service.api.IMailOutbox;
+import com.anyservice.service.user.MailOutboxDispatcher;
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import org.junit.Assert;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.mail.internet.MimeMessage;
+import java.util.UUID;
+
+import static com.anyservice.core.RandomValuesGenerator.randomString;
+
+/**
+ * Emails are sent to the local SMTP server, so outbox rows must be really committed -
+ * that's why tests are not wrapped into the usual rolled back transaction
+ * <p>
+ * Scheduled dispatching is disabled for all test contexts (see environment.properties),
+ * otherwise dispatchers of other cached contexts would take rows of these tests, so dispatch is called directly
+ */
+@TestPropertySource(properties = {
+        "spring.application.test=false",
+        "spring.mail.host=localhost",
+        "spring.mail.port=3025",
+        "spring.mail.password=",
+        "spring.mail.properties.mail.smtp.auth=false",
+        "spring.mail.properties.mail.smtp.starttls.enable=false",
+        "mail.outbox.backoff.initial.seconds=3600"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class MailOutboxIntegrationTest extends TestConfig {
+
+    @Autowired
+    private IMailOutbox mailOutbox;
+
+    @Autowired
+    private MailOutboxDispatcher mailOutboxDispatcher;
+
+    @Autowired
+    private MailOutboxRepository mailOutboxRepository;
+
+    private GreenMail greenMail;
+
+    @BeforeClass
+    public void startMailServer() {
+        greenMail = new GreenMail(ServerSetupTest.SMTP);
+        greenMail.start();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopMailServer() {
+        greenMail.stop();
+    }
+
+    /**
+     * Put verification email into outbox and check, that dispatcher delivers it
+     *
+     * @throws Exception if something goes wrong - let interpret it as failed test
+     */
+    @Test
+    public void dispatchTest() throws Exception {
+        String email = randomString(5, 20).toLowerCase() + "@localhost";
+
+        mailOutbox.enqueueVerificationCode(createUser(email), UUID.randomUUID().toString());
+        MailOutboxEntity mail = findByRecipient(email);
+
+        Assert.assertEquals(MailState.PENDING.name(), mail.getState());
+
+        mailOutboxDispatcher.dispatch();
+
+        Assert.assertTrue(greenMail.waitForIncomingEmail(5000, 1));
+
+        boolean received = false;
+        for (MimeMessage message : greenMail.getReceivedMessages()) {
+            if (email.equals(message.getAllRecipients()[0].toString())) received = true;
+        }
+        Assert.assertTrue(received);
+
+        MailOutboxEntity sent = mailOutboxRepository.findById(mail.getUuid()).orElseThrow(NullPointerException::new);
+
+        Assert.assertEquals(MailState.SENT.name(), sent.getState());
+        Assert.assertEquals(1, sent.getAttempts().intValue());
+        Assert.assertNotNull(sent.getDtSent());
+        Assert.assertTrue(sent.getPayload().isEmpty());
+    }
+
+    /**
+     * Email, that could not be sent, stays in outbox and is rescheduled
+     */
+    @Test(dependsOnMethods = "dispatchTest")
+    public void retryTest() {
+        String email = randomString(5, 20).toLowerCase() + "@localhost";
+
+        mailOutbox.enqueueVerificationCode(createUser(email), UUID.randomUUID().toString());
+        MailOutboxEntity mail = findByRecipient(email);
+
+        greenMail.stop();
+        try {
+            mailOutboxDispatcher.dispatch();
+        } finally {
+            startMailServer();
+        }
+
+        MailOutboxEntity failed = mailOutboxRepository.findById(mail.getUuid()).orElseThrow(NullPointerException::new);
+
+        Assert.assertEquals(MailState.PENDING.name(), failed.getState());
+        Assert.assertEquals(1, failed.getAttempts().intValue());
+        Assert.assertNotNull(failed.getLastError());
+        Assert.assertTrue(failed.getNextAttemptAt().isAfter(mail.getNextAttemptAt()));
+    }
+
+    private MailOutboxEntity findByRecipient(String email) {
+        return mailOutboxRepository.findAll().stream()
+                .filter(m -> email.equals(m.getRecipient()))
+                .findFirst()
+                .orElseThrow(NullPointerException::new);
+    }
+
+    private UserDetailed createUser(String email) {
+        return UserDetailed.builder()
+                .uuid(UUID.randomUUID())
+                .initials(Initials.builder()
+                        .firstName(randomString(2, 20))
+                        .lastName(randomString(2, 20))
+                        .build())
+                .contacts(Contacts.builder()
+                        .email(email)
+                        .build())
+                .build();
+    }
+}
@@ -0,0 +1,53 @@
+package com.anyservice.tests.integration;
+
+import com.anyservice.config.TestConfig;
+import com.anyservice.entity.user.CountryEntity;
+import com.anyservice.repository.CountryRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Entities are put into the second level cache only after commit,
+ * that's why tests are not wrapped into the usual rolled back transaction
+ */
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class SecondLevelCacheIntegrationTest extends TestConfig {
+
+    @Autowired
+    private CountryRepository countryRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Country, that was read once, must be taken from the cache next time
+     */
+    @Test
+    public void countryCacheTest() {
+        List<CountryEntity> countries = countryRepository.findAll();
+        Assert.assertFalse(countries.isEmpty(), "Dictionary of countries is empty");
+
+        UUID uuid = countries.get(0).getUuid();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        CacheRegionStatistics region = statistics.getDomainDataRegionStatistics("countries");
+
+        long hits = region.getHitCount();
+
+        // Every call is a separate transaction and persistence context
+        countryRepository.findById(uuid);
+        countryRepository.findById(uuid);
+
+        Assert.assertEquals(region.getHitCount() - hits, 2);
+    }
+}
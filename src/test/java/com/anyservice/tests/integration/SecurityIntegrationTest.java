@@ -4,15 +4,16 @@ import com.anyservice.core.enums.UserRole;
 import com.anyservice.core.enums.UserState;
 import com.anyservice.dto.DetailedWrapper;
 import com.anyservice.dto.user.UserDetailed;
+import com.anyservice.entity.mail.MailOutboxEntity;
 import com.anyservice.entity.user.UserEntity;
+import com.anyservice.repository.MailOutboxRepository;
 import com.anyservice.repository.UserRepository;
+import com.anyservice.service.user.MailOutbox;
 import com.anyservice.web.security.dto.Login;
 import com.anyservice.web.security.dto.ManualToken;
 import org.junit.Assert;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.Cache;
-import org.springframework.cache.CacheManager;
 import org.springframework.core.convert.ConversionService;
 import org.springframework.http.HttpHeaders;
 import org.springframework.test.web.servlet.ResultActions;
@@ -36,10 +37,10 @@ public class SecurityIntegrationTest extends UserIntegrationTest {
     private Long never;
 
     @Autowired
-    private CacheManager cacheManager;
+    private UserRepository userRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private MailOutboxRepository mailOutboxRepository;
 
     @Autowired
     private ConversionService conversionService;
@@ -113,11 +114,13 @@ public class SecurityIntegrationTest extends UserIntegrationTest {
         // Select user via identifier
         UserDetailed selectedUser = select(uuid);
 
-        // Get verification keys storage
-        Cache verificationCodeMap = cacheManager.getCache("verificationCodeMap");
-
-        // Find needed verification code
-        UUID verificationCode = verificationCodeMap.get(uuid, UUID.class);
+        // Find verification code in the email, that is going to be sent to the user
+        String verificationCode = mailOutboxRepository.findAll().stream()
+                .map(MailOutboxEntity::getPayload)
+                .filter(payload -> uuid.toString().equals(payload.get(MailOutbox.USER_UUID)))
+                .map(payload -> payload.get(MailOutbox.VERIFICATION_CODE))
+                .findFirst()
+                .orElse(null);
 
         // Assert it's present
         Assert.assertNotNull(verificationCode);
@@ -138,7 +141,7 @@ public class SecurityIntegrationTest extends UserIntegrationTest {
      * @return verified user
      * @throws Exception if something goes wrong - let interpret it as failed test
      */
-    private UserDetailed verifyUser(UUID uuid, UUID code, ResultMatcher expect) throws Exception {
+    private UserDetailed verifyUser(UUID uuid, String code, ResultMatcher expect) throws Exception {
         String contentAsString = getMockMvc().perform(
                 get(getExtendedUrl() + "/verification/" + uuid + "/" + code)
                         .headers(getHeaders())
@@ -16,10 +16,16 @@ import com.anyservice.repository.CountryRepository;
 import com.anyservice.service.api.IUserService;
 import com.anyservice.tests.api.ICRUDTest;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.hazelcast.cp.internal.util.Tuple2;
 import lombok.Synchronized;
+import lombok.extern.log4j.Log4j2;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.core.env.Environment;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
@@ -29,6 +35,10 @@ import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+
 import java.util.*;
 
 import static com.anyservice.core.RandomValuesGenerator.randomNumber;
@@ -37,9 +47,11 @@ import static com.anyservice.core.TestingUtilityClass.PASSWORD_MAX_LENGTH;
 import static com.anyservice.core.TestingUtilityClass.PASSWORD_MIN_LENGTH;
 import static java.util.Comparator.comparing;
 import static org.apache.commons.lang3.RandomStringUtils.random;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 
 
+@Log4j2
 public class UserIntegrationTest extends TestConfig implements ICRUDTest<UserBrief, UserDetailed> {
 
     @Autowired
@@ -52,6 +64,15 @@ public class UserIntegrationTest extends TestConfig implements ICRUDTest<UserBri
     @Autowired
     private CountryRepository countryRepository;
 
+    @Autowired
+    private MessageSource messageSource;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     @Value("${user.validation.password.length.min}")
     private int passwordMinLength;
 
@@ -349,6 +370,62 @@ public class UserIntegrationTest extends TestConfig implements ICRUDTest<UserBri
         remove(uuid, version, expectBadRequest);
     }
 
+    /**
+     * Versions are checked by the statements of update and delete by themselves,
+     * the reason of a failure is told only afterwards
+     *
+     * @throws Exception if something goes wrong - let interpret it as failed test
+     */
+    @Test
+    public void updateAndDeleteVersionCheckTest() throws Exception {
+        UUID uuid = create().getUuid();
+        UserDetailed createdUser = select(uuid);
+
+        Date version = new Date(DateUtils.convertOffsetDateTimeToMills(createdUser.getDtUpdate()));
+        Date staleVersion = new Date(version.getTime() - 1);
+
+        // Outdated version of existing user
+        expectFailure(() -> userService.update(createNewItem(), uuid, staleVersion),
+                NullPointerException.class, "user.update.version");
+        expectFailure(() -> userService.deleteById(uuid, staleVersion),
+                IllegalArgumentException.class, "delete.version");
+
+        // Unknown user
+        UUID unknown = UUID.randomUUID();
+        expectFailure(() -> userService.update(createNewItem(), unknown, version),
+                IllegalArgumentException.class, "user.not.exists");
+        expectFailure(() -> userService.deleteById(unknown, version),
+                IllegalArgumentException.class, "user.not.exists");
+
+        // Current version moves forward with every update
+        UserDetailed updatedUser = userService.update(createNewItem(), uuid, version);
+        Date updatedVersion = new Date(DateUtils.convertOffsetDateTimeToMills(updatedUser.getDtUpdate()));
+
+        expectFailure(() -> userService.deleteById(uuid, version),
+                IllegalArgumentException.class, "delete.version");
+
+        userService.deleteById(uuid, updatedVersion);
+        Assert.assertFalse(userService.existsById(uuid));
+    }
+
+    /**
+     * Run action and make sure, it fails with the given message
+     *
+     * @param action         action
+     * @param exceptionClass expected class of exception
+     * @param messageCode    code of expected message
+     */
+    private void expectFailure(Runnable action, Class<? extends Exception> exceptionClass, String messageCode) {
+        try {
+            action.run();
+            Assert.fail("Expected " + exceptionClass.getSimpleName() + " with " + messageCode);
+        } catch (Exception e) {
+            Assert.assertEquals(e.getClass(), exceptionClass);
+            Assert.assertEquals(e.getMessage(),
+                    messageSource.getMessage(messageCode, null, LocaleContextHolder.getLocale()));
+        }
+    }
+
     /**
      * Create user then change its password and make sure it's actually changed
      *
@@ -663,6 +740,90 @@ public class UserIntegrationTest extends TestConfig implements ICRUDTest<UserBri
         remove(userUuid, version);
     }
 
+    /**
+     * Only requested fields must be returned
+     *
+     * @throws Exception if something goes wrong - let interpret it as failed test
+     */
+    @Test
+    public void selectWithFieldsTest() throws Exception {
+        UUID uuid = create().getUuid();
+
+        String content = getMockMvc().perform(get(getExtendedUrl() + "/" + uuid)
+                .param("fields", "initials,contacts")
+                .headers(getHeaders())
+                .contentType(getContentType()))
+                .andExpect(expectOk)
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        JsonNode user = getObjectMapper().readTree(content);
+
+        Assert.assertEquals(user.size(), 2);
+        Assert.assertTrue(user.hasNonNull("initials"));
+        Assert.assertTrue(user.has("contacts"));
+
+        getMockMvc().perform(get(getExtendedUrl() + "/" + uuid)
+                .param("fields", "initials,password")
+                .headers(getHeaders())
+                .contentType(getContentType()))
+                .andExpect(expectBadRequest);
+    }
+
+    /**
+     * Count queries, needed to find user with the common sets of fields
+     * <p>
+     * Counts are only logged, except the cheapest set, which must take a single query
+     *
+     * @throws Exception if something goes wrong - let interpret it as failed test
+     */
+    @Test
+    public void selectWithFieldsQueryCountTest() throws Exception {
+        initializeFileTestUtils();
+
+        UserDetailed userDetailed = createNewItem();
+        userDetailed.setDocuments(fileTestUtils.extractFiles(fileTestUtils.createDocuments(2),
+                fileTestUtils::extractDTOFiles));
+        userDetailed.setPortfolio(fileTestUtils.extractFiles(fileTestUtils.createPortfolio(2),
+                fileTestUtils::extractDTOFiles));
+
+        UUID uuid = create(userDetailed).getUuid();
+
+        Assert.assertEquals(countQueries(uuid, "initials,contacts"), 1);
+
+        log.info("Queries to find user with fields: " +
+                "initials,contacts - " + countQueries(uuid, "initials,contacts") +
+                ", +defaultCountry - " + countQueries(uuid, "initials,contacts,defaultCountry") +
+                ", +profilePhoto - " + countQueries(uuid, "initials,contacts,profilePhoto") +
+                ", documents,portfolio - " + countQueries(uuid, "documents,portfolio") +
+                ", all - " + countQueries(uuid, null));
+    }
+
+    /**
+     * Find user with an empty persistence context and second level cache
+     *
+     * @param uuid   user identifier
+     * @param fields comma separated fields OR null for all of them
+     * @return amount of executed queries
+     */
+    private long countQueries(UUID uuid, String fields) {
+        entityManager.flush();
+        entityManager.clear();
+        entityManagerFactory.getCache().evictAll();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long before = statistics.getPrepareStatementCount();
+
+        if (fields == null) {
+            userService.findById(uuid);
+        } else {
+            userService.findById(uuid, new HashSet<>(Arrays.asList(fields.split(","))));
+        }
+
+        return statistics.getPrepareStatementCount() - before;
+    }
+
     @Synchronized
     private void initializeFileTestUtils() {
         if (fileTestUtils == null) {
@@ -0,0 +1,126 @@
+package com.anyservice.tests.unit;
+
+import com.anyservice.core.NoTransactionManager;
+import com.anyservice.core.exceptions.ServiceOverloadedException;
+import com.anyservice.service.batch.BatchLookup;
+import org.springframework.context.support.StaticMessageSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Lookup is checked without database - chunks are "read" by the given functions
+ */
+public class BatchLookupUnitTest {
+
+    private static final int CHUNK_SIZE = 4;
+    private static final int MAX_SIZE = 100;
+
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(3, 3, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(10), new ThreadPoolExecutor.AbortPolicy());
+
+    @AfterClass(alwaysRun = true)
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void orderTest() {
+        List<Integer> ids = IntStream.range(0, 30).boxed().collect(Collectors.toList());
+        Collections.shuffle(ids);
+
+        // Some of them do not exist, and some are requested twice
+        Set<Integer> existing = ids.stream().filter(id -> id % 3 != 0).collect(Collectors.toSet());
+
+        List<Integer> requested = new ArrayList<>(ids);
+        requested.add(ids.get(5));
+        requested.add(1, null);
+
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        List<Integer> chunkSizes = Collections.synchronizedList(new ArrayList<>());
+
+        List<String> found = createLookup(executor).find(requested, chunk -> {
+            threads.add(Thread.currentThread().getName());
+            chunkSizes.add(chunk.size());
+
+            // Database returns rows in any order
+            List<String> rows = chunk.stream()
+                    .filter(existing::contains)
+                    .map(String::valueOf)
+                    .collect(Collectors.toList());
+            Collections.reverse(rows);
+
+            return rows;
+        }, Integer::valueOf);
+
+        List<String> expected = ids.stream()
+                .filter(existing::contains)
+                .map(String::valueOf)
+                .collect(Collectors.toList());
+
+        Assert.assertEquals(found, expected);
+        Assert.assertEquals(chunkSizes.size(), 8);
+        Assert.assertTrue(chunkSizes.stream().allMatch(size -> size <= CHUNK_SIZE));
+        Assert.assertFalse(threads.contains(Thread.currentThread().getName()));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void maxSizeTest() {
+        List<Integer> ids = IntStream.range(0, MAX_SIZE + 1).boxed().collect(Collectors.toList());
+
+        createLookup(executor).find(ids, chunk -> chunk, (Integer id) -> id);
+    }
+
+    @Test(expectedExceptions = ServiceOverloadedException.class)
+    public void overloadedTest() throws Exception {
+        ThreadPoolExecutor busy = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1), new ThreadPoolExecutor.AbortPolicy());
+        CountDownLatch release = new CountDownLatch(1);
+
+        try {
+            // The only thread is busy, so there is room for one chunk only
+            busy.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            List<Integer> ids = IntStream.range(0, CHUNK_SIZE * 2).boxed().collect(Collectors.toList());
+            createLookup(busy).find(ids, chunk -> chunk, (Integer id) -> id);
+        } finally {
+            release.countDown();
+            busy.shutdown();
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void failedChunkTest() {
+        List<Integer> ids = IntStream.range(0, CHUNK_SIZE * 2).boxed().collect(Collectors.toList());
+
+        createLookup(executor).find(ids, chunk -> {
+            if (chunk.contains(CHUNK_SIZE)) throw new IllegalStateException("Cannot read a chunk");
+            return chunk;
+        }, (Integer id) -> id);
+    }
+
+    private static BatchLookup createLookup(ThreadPoolExecutor executor) {
+        StaticMessageSource messageSource = new StaticMessageSource();
+        messageSource.setUseCodeAsDefaultMessage(true);
+
+        BatchLookup lookup = new BatchLookup(executor, new NoTransactionManager(), messageSource);
+
+        ReflectionTestUtils.setField(lookup, "chunkSize", CHUNK_SIZE);
+        ReflectionTestUtils.setField(lookup, "maxSize", MAX_SIZE);
+        ReflectionTestUtils.setField(lookup, "retryAfterSeconds", 1L);
+
+        return lookup;
+    }
+}
@@ -0,0 +1,208 @@
+package com.anyservice.tests.unit;
+
+import com.anyservice.core.Fake;
+import com.anyservice.core.InMemoryMinioClient;
+import com.anyservice.core.NoTransactionManager;
+import com.anyservice.core.enums.FileExtension;
+import com.anyservice.core.enums.FileType;
+import com.anyservice.dto.file.FileDetailed;
+import com.anyservice.entity.file.FileEntity;
+import com.anyservice.repository.FileBlobRepository;
+import com.anyservice.repository.FileRepository;
+import com.anyservice.service.converters.file.dto_entity.FileDetailedToEntityConverter;
+import com.anyservice.service.converters.file.entity_dto.FileEntityToDetailedConverter;
+import com.anyservice.service.file.FileService;
+import com.anyservice.service.validators.FileValidator;
+import org.springframework.context.support.StaticMessageSource;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.*;
+
+/**
+ * Deduplication is checked without database and storage - both are replaced by in-memory fakes
+ */
+public class ContentAddressedStorageUnitTest {
+
+    private static final byte[] CONTENT = "the same document".getBytes(StandardCharsets.UTF_8);
+
+    private final Map<UUID, FileEntity> files = new HashMap<>();
+    private final Map<String, Integer> blobs = new HashMap<>();
+
+    private InMemoryMinioClient minioClient;
+    private FileService fileService;
+
+    @BeforeMethod
+    public void setup() throws Exception {
+        files.clear();
+        blobs.clear();
+
+        FileRepository fileRepository = Fake.of(FileRepository.class)
+                .on("saveAndFlush", args -> {
+                    FileEntity entity = (FileEntity) args[0];
+                    files.put(entity.getUuid(), entity);
+                    return entity;
+                })
+                .on("findById", args -> Optional.ofNullable(files.get((UUID) args[0])))
+                .on("deleteByIdAndVersion", args -> files.remove((UUID) args[0]) != null ? 1 : 0)
+                .create();
+
+        FileBlobRepository fileBlobRepository = Fake.of(FileBlobRepository.class)
+                .on("existsById", args -> blobs.containsKey((String) args[0]))
+                .on("acquire", args -> blobs.merge((String) args[0], 1, Integer::sum))
+                .on("release", args -> blobs.computeIfPresent((String) args[0], (h, refCount) -> refCount - 1) != null
+                        ? 1 : 0)
+                .on("deleteUnreferenced", args -> {
+                    String hash = (String) args[0];
+                    return blobs.get(hash) != null && blobs.get(hash) <= 0 && blobs.remove(hash) != null ? 1 : 0;
+                })
+                .create();
+
+        StaticMessageSource messageSource = new StaticMessageSource();
+        messageSource.setUseCodeAsDefaultMessage(true);
+
+        DefaultConversionService conversionService = new DefaultConversionService();
+        conversionService.addConverter(new FileDetailedToEntityConverter());
+        conversionService.addConverter(new FileEntityToDetailedConverter());
+
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("spring.minio.folder.user.documents", "user/documents");
+
+        minioClient = new InMemoryMinioClient();
+
+        fileService = new FileService(fileRepository, fileBlobRepository, null, minioClient, messageSource,
+                conversionService, environment, new FileValidator(messageSource), null, null,
+                new NoTransactionManager());
+        ReflectionTestUtils.setField(fileService, "bucket", "anyservice");
+        ReflectionTestUtils.setField(fileService, "blobDirectory", "blob");
+        ReflectionTestUtils.setField(fileService, "stagingDirectory", "blob/staging");
+        ReflectionTestUtils.setField(fileService, "deduplicationEnabled", true);
+    }
+
+    @Test
+    public void undeclaredDuplicateTest() {
+        FileDetailed first = fileService.create(newFile(CONTENT, null));
+        FileDetailed second = fileService.create(newFile(CONTENT, null));
+
+        Assert.assertEquals(first.getHash(), sha256(CONTENT));
+        Assert.assertEquals(second.getHash(), first.getHash());
+
+        // Both are uploaded to be hashed, but only the first one is kept
+        Assert.assertEquals(minioClient.puts.get(), 2);
+        Assert.assertEquals(minioClient.objects.keySet(), Collections.singleton("blob/" + first.getHash()));
+        Assert.assertEquals(blobs.get(first.getHash()), Integer.valueOf(2));
+    }
+
+    @Test
+    public void declaredDuplicateTest() {
+        fileService.create(newFile(CONTENT, sha256(CONTENT)));
+        FileDetailed duplicate = fileService.create(newFile(CONTENT, sha256(CONTENT).toUpperCase(Locale.ROOT)));
+
+        // Duplicate is only read to verify its hash
+        Assert.assertEquals(minioClient.puts.get(), 1);
+        Assert.assertEquals(duplicate.getHash(), sha256(CONTENT));
+        Assert.assertEquals(minioClient.objects.keySet(), Collections.singleton("blob/" + sha256(CONTENT)));
+        Assert.assertEquals(blobs.get(sha256(CONTENT)), Integer.valueOf(2));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void declaredDuplicateMismatchTest() {
+        fileService.create(newFile(CONTENT, null));
+
+        // Content cannot be taken over just by its hash
+        fileService.create(newFile("another document".getBytes(StandardCharsets.UTF_8), sha256(CONTENT)));
+    }
+
+    @Test
+    public void declaredNewMismatchTest() {
+        try {
+            fileService.create(newFile(CONTENT, sha256("another document".getBytes(StandardCharsets.UTF_8))));
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // Uploaded object is not kept under a wrong hash
+            Assert.assertTrue(minioClient.objects.isEmpty());
+        }
+    }
+
+    @Test
+    public void truncatedContentTest() {
+        FileDetailed file = newFile(CONTENT, null);
+        file.setSize((long) CONTENT.length - 1);
+
+        try {
+            fileService.create(file);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // Nothing is stored from content, that is longer than declared
+            Assert.assertTrue(minioClient.objects.isEmpty());
+            Assert.assertTrue(blobs.isEmpty());
+        }
+    }
+
+    @Test
+    public void deleteTest() {
+        FileDetailed first = fileService.create(newFile(CONTENT, null));
+        FileDetailed second = fileService.create(newFile(CONTENT, sha256(CONTENT)));
+
+        fileService.deleteById(first.getUuid(), new Date());
+
+        // Content is still referred by the second file
+        Assert.assertEquals(minioClient.objects.size(), 1);
+        Assert.assertEquals(blobs.get(first.getHash()), Integer.valueOf(1));
+
+        fileService.deleteById(second.getUuid(), new Date());
+
+        Assert.assertTrue(minioClient.objects.isEmpty());
+        Assert.assertTrue(blobs.isEmpty());
+    }
+
+    @Test
+    public void deleteAfterCommitTest() {
+        FileDetailed file = fileService.create(newFile(CONTENT, null));
+
+        TransactionSynchronizationManager.initSynchronization();
+
+        try {
+            fileService.deleteById(file.getUuid(), new Date());
+
+            // Deletion can still be rolled back, so the content stays
+            Assert.assertEquals(minioClient.objects.size(), 1);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        Assert.assertTrue(minioClient.objects.isEmpty());
+        Assert.assertTrue(blobs.isEmpty());
+    }
+
+    private static FileDetailed newFile(byte[] content, String hash) {
+        return FileDetailed.builder()
+                .name("document.pdf")
+                .extension(FileExtension.pdf)
+                .fileType(FileType.DOCUMENT)
+                .size((long) content.length)
+                .inputStream(new ByteArrayInputStream(content))
+                .hash(hash)
+                .build();
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return String.format("%064x", new BigInteger(1, MessageDigest.getInstance("SHA-256").digest(content)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.anyservice.tests.unit;
+
+import com.anyservice.core.CountingBloomFilter;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Filter is checked on amounts of values, those it is made for, so false "present" answers are rare
+ */
+public class CountingBloomFilterUnitTest {
+
+    private static final int VALUES = 1000;
+
+    @Test
+    public void addRemoveTest() {
+        CountingBloomFilter filter = new CountingBloomFilter(VALUES, 0.01);
+
+        for (int i = 0; i < VALUES; i++) {
+            filter.add("user" + i);
+        }
+
+        for (int i = 0; i < VALUES; i++) {
+            Assert.assertTrue(filter.mightContain("user" + i));
+        }
+
+        for (int i = 0; i < VALUES; i++) {
+            filter.remove("user" + i);
+        }
+
+        // Every counter is back to zero
+        for (int i = 0; i < VALUES; i++) {
+            Assert.assertFalse(filter.mightContain("user" + i));
+        }
+    }
+
+    @Test
+    public void repeatedAddTest() {
+        CountingBloomFilter filter = new CountingBloomFilter(VALUES, 0.01);
+
+        filter.add("user");
+        filter.add("user");
+
+        filter.remove("user");
+        Assert.assertTrue(filter.mightContain("user"));
+
+        filter.remove("user");
+        Assert.assertFalse(filter.mightContain("user"));
+    }
+
+    @Test
+    public void falsePositiveRateTest() {
+        CountingBloomFilter filter = new CountingBloomFilter(VALUES, 0.01);
+
+        for (int i = 0; i < VALUES; i++) {
+            filter.add("user" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < VALUES * 10; i++) {
+            if (filter.mightContain("absent" + i)) falsePositives++;
+        }
+
+        // Configured rate with a margin
+        Assert.assertTrue(falsePositives < VALUES * 10 * 0.03, "False positives: " + falsePositives);
+    }
+
+    /**
+     * Counter holds up to 15 additions, after that it's unknown how many of them there were
+     */
+    @Test
+    public void saturationTest() {
+        CountingBloomFilter filter = new CountingBloomFilter(VALUES, 0.01);
+
+        for (int i = 0; i < 20; i++) {
+            filter.add("user");
+        }
+
+        for (int i = 0; i < 20; i++) {
+            filter.remove("user");
+        }
+
+        // Saturated counters are never decremented, so the value can never be lost
+        Assert.assertTrue(filter.mightContain("user"));
+    }
+
+    /**
+     * Exactly the maximum of additions saturates counters as well
+     */
+    @Test
+    public void saturationBoundaryTest() {
+        CountingBloomFilter filter = new CountingBloomFilter(VALUES, 0.01);
+
+        for (int i = 0; i < 15; i++) {
+            filter.add("user");
+        }
+
+        for (int i = 0; i < 15; i++) {
+            filter.remove("user");
+        }
+
+        Assert.assertTrue(filter.mightContain("user"));
+
+        CountingBloomFilter notSaturated = new CountingBloomFilter(VALUES, 0.01);
+
+        for (int i = 0; i < 14; i++) {
+            notSaturated.add("user");
+        }
+
+        for (int i = 0; i < 14; i++) {
+            notSaturated.remove("user");
+        }
+
+        Assert.assertFalse(notSaturated.mightContain("user"));
+    }
+}
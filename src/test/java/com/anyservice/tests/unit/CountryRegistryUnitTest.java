@@ -0,0 +1,84 @@
+package com.anyservice.tests.unit;
+
+import com.anyservice.core.Fake;
+import com.anyservice.entity.user.CountryEntity;
+import com.anyservice.repository.CountryRepository;
+import com.anyservice.service.user.CountryRegistry;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Registry is loaded from a fake repository, without the application context
+ */
+public class CountryRegistryUnitTest {
+
+    private final CountryEntity belarus = createCountry("Belarus", "BY", "BLR", 112);
+    private final CountryEntity austria = createCountry("Austria", "AT", "AUT", 40);
+
+    private CountryRegistry registry;
+
+    @BeforeClass
+    public void setup() {
+        List<CountryEntity> countries = Arrays.asList(belarus, austria);
+
+        CountryRepository repository = Fake.of(CountryRepository.class)
+                .on("findAll", args -> countries)
+                .create();
+
+        registry = new CountryRegistry(repository);
+        registry.init();
+    }
+
+    @Test
+    public void findAllTest() {
+        Assert.assertEquals(registry.findAll(), Arrays.asList(austria, belarus));
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void immutableTest() {
+        registry.findAll().clear();
+    }
+
+    @Test
+    public void lookupTest() {
+        Assert.assertSame(registry.findById(belarus.getUuid()).get(), belarus);
+        Assert.assertSame(registry.findByAlpha2("by").get(), belarus);
+        Assert.assertSame(registry.findByAlpha3("AUT").get(), austria);
+        Assert.assertSame(registry.findByNumber(112).get(), belarus);
+
+        Assert.assertFalse(registry.findById(UUID.randomUUID()).isPresent());
+        Assert.assertFalse(registry.findByAlpha2("XX").isPresent());
+        Assert.assertFalse(registry.findByAlpha3(null).isPresent());
+        Assert.assertFalse(registry.findByNumber(null).isPresent());
+    }
+
+    @Test
+    public void resolveTest() {
+        // Another instance of the same row, as hibernate would create it
+        CountryEntity loaded = createCountry("Belarus", "BY", "BLR", 112);
+        loaded.setUuid(belarus.getUuid());
+
+        Assert.assertSame(registry.resolve(loaded), belarus);
+
+        // Unknown countries are left as they are
+        CountryEntity unknown = createCountry("Unknown", "XX", "XXX", 999);
+        Assert.assertSame(registry.resolve(unknown), unknown);
+
+        Assert.assertNull(registry.resolve(null));
+    }
+
+    private static CountryEntity createCountry(String name, String alpha2, String alpha3, int number) {
+        return CountryEntity.builder()
+                .uuid(UUID.randomUUID())
+                .country(name)
+                .alpha2(alpha2)
+                .alpha3(alpha3)
+                .number(number)
+                .build();
+    }
+}
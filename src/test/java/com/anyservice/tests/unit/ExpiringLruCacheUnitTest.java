@@ -0,0 +1,87 @@
+package com.anyservice.tests.unit;
+
+import com.anyservice.core.ExpiringLruCache;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Cache works with system clock, so expiration is checked with short real periods
+ */
+public class ExpiringLruCacheUnitTest {
+
+    private static final long HOUR = 3_600_000;
+
+    @Test
+    public void expiryTest() throws Exception {
+        ExpiringLruCache<String, String> cache = new ExpiringLruCache<>(10);
+
+        cache.put("short", "value", System.currentTimeMillis() + 50);
+        cache.put("long", "value", System.currentTimeMillis() + HOUR);
+
+        Assert.assertEquals(cache.get("short"), "value");
+
+        Thread.sleep(100);
+
+        // Expired entry is removed on read
+        Assert.assertNull(cache.get("short"));
+        Assert.assertEquals(cache.get("long"), "value");
+        Assert.assertEquals(cache.size(), 1);
+    }
+
+    @Test
+    public void alreadyExpiredTest() {
+        ExpiringLruCache<String, String> cache = new ExpiringLruCache<>(10);
+
+        cache.put("key", "value", System.currentTimeMillis() - 1);
+
+        Assert.assertEquals(cache.size(), 0);
+        Assert.assertNull(cache.get("key"));
+    }
+
+    @Test
+    public void lruEvictionTest() {
+        ExpiringLruCache<String, String> cache = new ExpiringLruCache<>(2);
+        long expiresAt = System.currentTimeMillis() + HOUR;
+
+        cache.put("first", "1", expiresAt);
+        cache.put("second", "2", expiresAt);
+
+        // The first one becomes the most recently used
+        Assert.assertEquals(cache.get("first"), "1");
+
+        cache.put("third", "3", expiresAt);
+
+        Assert.assertEquals(cache.size(), 2);
+        Assert.assertEquals(cache.get("first"), "1");
+        Assert.assertNull(cache.get("second"));
+        Assert.assertEquals(cache.get("third"), "3");
+    }
+
+    @Test
+    public void countersTest() {
+        ExpiringLruCache<String, String> cache = new ExpiringLruCache<>(10);
+
+        Assert.assertNull(cache.get("key"));
+        cache.put("key", "value", System.currentTimeMillis() + HOUR);
+
+        cache.get("key");
+        cache.get("key");
+
+        cache.remove("key");
+        cache.get("key");
+
+        Assert.assertEquals(cache.hits(), 2);
+        Assert.assertEquals(cache.misses(), 2);
+    }
+
+    @Test
+    public void clearTest() {
+        ExpiringLruCache<String, String> cache = new ExpiringLruCache<>(10);
+
+        cache.put("key", "value", System.currentTimeMillis() + HOUR);
+        cache.clear();
+
+        Assert.assertEquals(cache.size(), 0);
+        Assert.assertNull(cache.get("key"));
+    }
+}
@@ -0,0 +1,247 @@
+package com.anyservice.tests.unit;
+
+import com.anyservice.core.Fake;
+import com.anyservice.core.InMemoryMinioClient;
+import com.anyservice.core.enums.FileExtension;
+import com.anyservice.core.enums.FileState;
+import com.anyservice.core.enums.FileType;
+import com.anyservice.entity.file.FileEntity;
+import com.anyservice.repository.FileRepository;
+import com.anyservice.service.converters.file.entity_dto.FileEntityToDetailedConverter;
+import com.anyservice.service.file.FileService;
+import com.anyservice.web.advices.GlobalControllerExceptionHandler;
+import com.anyservice.web.controller.FileController;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
+import org.springframework.context.support.StaticMessageSource;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.unit.DataSize;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Every endpoint of files is called through the real controller and service,
+ * while storage and database are replaced by fakes, those count calls to storage and signed URLs
+ */
+public class FileStorageCallsUnitTest {
+
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.US_ASCII);
+
+    private final String baseUrl = "/api/v1/file";
+
+    private final FileEntity file = FileEntity.builder()
+            .uuid(UUID.randomUUID())
+            .name("document.pdf")
+            .size((long) CONTENT.length)
+            .extension(FileExtension.pdf.name())
+            .dtCreate(OffsetDateTime.now())
+            .type(FileType.DOCUMENT.name())
+            .build();
+
+    private final FileEntity loadingFile = FileEntity.builder()
+            .uuid(UUID.randomUUID())
+            .name("document.pdf")
+            .size((long) CONTENT.length)
+            .extension(FileExtension.pdf.name())
+            .dtCreate(OffsetDateTime.now())
+            .type(FileType.DOCUMENT.name())
+            .state(FileState.LOADING.name())
+            .build();
+
+    private InMemoryMinioClient minioClient;
+    private StaticMessageSource messageSource;
+    private FileService fileService;
+    private MockMvc mockMvc;
+
+    @BeforeClass
+    public void setup() throws Exception {
+        FileRepository fileRepository = Fake.of(FileRepository.class)
+                .on("findById", args -> Stream.of(file, loadingFile)
+                        .filter(f -> f.getUuid().equals(args[0]))
+                        .findFirst())
+                .create();
+
+        DefaultConversionService conversionService = new DefaultConversionService();
+        conversionService.addConverter(new FileEntityToDetailedConverter());
+
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("spring.minio.folder.user.documents", "user/documents");
+
+        messageSource = new StaticMessageSource();
+        messageSource.setUseCodeAsDefaultMessage(true);
+
+        minioClient = new InMemoryMinioClient();
+        minioClient.objects.put("user/documents/" + file.getUuid(), CONTENT);
+
+        // Storage must be reached only through the counted client
+        fileService = new FileService(fileRepository, null, null, minioClient, messageSource,
+                conversionService, environment, null, null, null, null);
+        ReflectionTestUtils.setField(fileService, "bucket", "anyservice");
+        ReflectionTestUtils.setField(fileService, "presignedEnabled", true);
+        ReflectionTestUtils.setField(fileService, "presignedExpirySeconds", 300);
+        ReflectionTestUtils.setField(fileService, "presignedRenewBeforeSeconds", 60);
+        ReflectionTestUtils.setField(fileService, "presignedCacheSize", 10);
+        fileService.init();
+
+        FileController fileController = new FileController(fileService, new MultipartProperties());
+        ReflectionTestUtils.setField(fileController, "maxRanges", 4);
+
+        mockMvc = MockMvcBuilders.standaloneSetup(fileController)
+                .setControllerAdvice(new GlobalControllerExceptionHandler(messageSource))
+                .build();
+    }
+
+    @BeforeMethod
+    public void resetCalls() {
+        minioClient.calls.set(0);
+        minioClient.signs.set(0);
+    }
+
+    @Test
+    public void metadataTest() throws Exception {
+        mockMvc.perform(get(baseUrl + "/" + file.getUuid()))
+                .andExpect(status().isOk());
+
+        Assert.assertEquals(minioClient.calls.get(), 0);
+    }
+
+    @Test
+    public void absentFileTest() throws Exception {
+        mockMvc.perform(get(baseUrl + "/" + UUID.randomUUID() + "/load"))
+                .andExpect(status().isOk());
+
+        Assert.assertEquals(minioClient.calls.get(), 0);
+    }
+
+    @Test
+    public void loadingFileTest() throws Exception {
+        mockMvc.perform(get(baseUrl + "/" + loadingFile.getUuid() + "/load"))
+                .andExpect(status().isConflict())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_DISPOSITION));
+
+        mockMvc.perform(get(baseUrl + "/" + loadingFile.getUuid() + "/presigned"))
+                .andExpect(status().isConflict());
+
+        Assert.assertEquals(minioClient.calls.get(), 0);
+        Assert.assertEquals(minioClient.signs.get(), 0);
+    }
+
+    @Test
+    public void loadTest() throws Exception {
+        mockMvc.perform(get(baseUrl + "/" + file.getUuid() + "/load"))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(CONTENT));
+
+        Assert.assertEquals(minioClient.calls.get(), 1);
+    }
+
+    @Test
+    public void rangesTest() throws Exception {
+        mockMvc.perform(get(baseUrl + "/" + file.getUuid() + "/load")
+                .header(HttpHeaders.RANGE, "bytes=2-4"))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().bytes("234".getBytes(StandardCharsets.US_ASCII)));
+
+        Assert.assertEquals(minioClient.calls.get(), 1);
+
+        mockMvc.perform(get(baseUrl + "/" + file.getUuid() + "/load")
+                .header(HttpHeaders.RANGE, "bytes=0-1,-2"))
+                .andExpect(status().isPartialContent());
+
+        Assert.assertEquals(minioClient.calls.get(), 3);
+    }
+
+    @Test
+    public void overlappingRangesTest() throws Exception {
+        mockMvc.perform(get(baseUrl + "/" + file.getUuid() + "/load")
+                .header(HttpHeaders.RANGE, "bytes=5-6,0-3,2-4"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 0-6/" + CONTENT.length))
+                .andExpect(content().bytes("0123456".getBytes(StandardCharsets.US_ASCII)));
+
+        // Merged into a single range, that is read once
+        Assert.assertEquals(minioClient.calls.get(), 1);
+    }
+
+    @Test
+    public void excessiveRangesTest() throws Exception {
+        // Ranges sum up to more than the whole file
+        mockMvc.perform(get(baseUrl + "/" + file.getUuid() + "/load")
+                .header(HttpHeaders.RANGE, "bytes=0-,0-,0-"))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(CONTENT));
+
+        Assert.assertEquals(minioClient.calls.get(), 1);
+
+        // Too many ranges
+        mockMvc.perform(get(baseUrl + "/" + file.getUuid() + "/load")
+                .header(HttpHeaders.RANGE, "bytes=0-0,2-2,4-4,6-6,8-8"))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(CONTENT));
+
+        Assert.assertEquals(minioClient.calls.get(), 2);
+    }
+
+    @Test
+    public void uploadTooLargeTest() throws Exception {
+        MultipartProperties multipartProperties = new MultipartProperties();
+        multipartProperties.setMaxRequestSize(DataSize.ofBytes(100));
+
+        MockMvc limited = MockMvcBuilders.standaloneSetup(new FileController(fileService, multipartProperties))
+                .setControllerAdvice(new GlobalControllerExceptionHandler(messageSource))
+                .build();
+
+        String boundary = "boundary";
+        String body = "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"document.pdf\"\r\n"
+                + "Content-Type: application/pdf\r\n\r\n"
+                + new String(new char[200]).replace('\0', 'x') + "\r\n"
+                + "--" + boundary + "--\r\n";
+
+        limited.perform(post(baseUrl + "/upload/" + FileType.DOCUMENT + "/stream")
+                .contentType("multipart/form-data; boundary=" + boundary)
+                .content(body.getBytes(StandardCharsets.US_ASCII)))
+                .andExpect(status().isPayloadTooLarge());
+    }
+
+    @Test
+    public void unsatisfiableRangeTest() throws Exception {
+        mockMvc.perform(get(baseUrl + "/" + file.getUuid() + "/load")
+                .header(HttpHeaders.RANGE, "bytes=" + CONTENT.length + "-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable());
+
+        Assert.assertEquals(minioClient.calls.get(), 0);
+    }
+
+    @Test
+    public void presignedUrlTest() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get(baseUrl + "/" + file.getUuid() + "/presigned"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.method").value("GET"))
+                    .andExpect(jsonPath("$.url").value(InMemoryMinioClient.SIGNED_URL));
+        }
+
+        // The second URL is taken from cache, content is not touched at all
+        Assert.assertEquals(minioClient.signs.get(), 1);
+        Assert.assertEquals(minioClient.calls.get(), 0);
+    }
+}
@@ -0,0 +1,71 @@
+package com.anyservice.tests.unit;
+
+import com.anyservice.config.HazelcastConfig;
+import com.anyservice.service.user.LoginThrottle;
+import com.anyservice.service.user.UserNameIndex;
+import com.hazelcast.config.SerializationConfig;
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Values must survive serialization, and custom serialization must be more compact than the default one
+ */
+public class HazelcastSerializationUnitTest {
+
+    private final InternalSerializationService compact = new DefaultSerializationServiceBuilder()
+            .setConfig(HazelcastConfig.serializationConfig())
+            .build();
+
+    private final InternalSerializationService standard = new DefaultSerializationServiceBuilder()
+            .setConfig(new SerializationConfig())
+            .build();
+
+    @Test
+    public void uuidTest() {
+        UUID uuid = UUID.randomUUID();
+
+        Assert.assertEquals(compact.toObject(compact.toData(uuid)), uuid);
+        Assert.assertTrue(compact.toData(uuid).totalSize() < standard.toData(uuid).totalSize());
+    }
+
+    @Test
+    public void loginAttemptsTest() {
+        LoginThrottle.Attempts attempts = createAttempts();
+
+        LoginThrottle.Attempts read = compact.toObject(compact.toData(attempts));
+
+        Assert.assertEquals(ReflectionTestUtils.getField(read, "userNames"),
+                ReflectionTestUtils.getField(attempts, "userNames"));
+        Assert.assertEquals(ReflectionTestUtils.getField(read, "addresses"),
+                ReflectionTestUtils.getField(attempts, "addresses"));
+    }
+
+    @Test
+    public void userNameChangeTest() {
+        UserNameIndex.Change change = new UserNameIndex.Change("userName", true);
+
+        UserNameIndex.Change read = compact.toObject(compact.toData(change));
+
+        Assert.assertEquals(ReflectionTestUtils.getField(read, "userName"), "userName");
+        Assert.assertEquals(ReflectionTestUtils.getField(read, "added"), true);
+    }
+
+    private static LoginThrottle.Attempts createAttempts() {
+        Map<String, Long> userNames = new HashMap<>();
+        Map<String, Long> addresses = new HashMap<>();
+
+        for (int i = 0; i < 50; i++) {
+            userNames.put("user" + i, (long) i);
+            addresses.put("10.0.0." + i, (long) i * 2);
+        }
+
+        return new LoginThrottle.Attempts(userNames, addresses);
+    }
+}
@@ -0,0 +1,86 @@
+package com.anyservice.tests.unit;
+
+import com.anyservice.dto.user.UserDetailed;
+import com.anyservice.web.security.JwtUtil;
+import com.anyservice.web.security.dto.AuthDetails;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.context.support.StaticMessageSource;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.UUID;
+
+/**
+ * Tokens are generated and parsed without the application context
+ */
+public class JwtUtilUnitTest {
+
+    private JwtUtil jwtUtil;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeMethod
+    public void setup() {
+        StaticMessageSource messageSource = new StaticMessageSource();
+        messageSource.setUseCodeAsDefaultMessage(true);
+
+        meterRegistry = new SimpleMeterRegistry();
+        jwtUtil = createJwtUtil(messageSource, meterRegistry);
+    }
+
+    @Test
+    public void cachedClaimsTest() {
+        UUID uuid = UUID.randomUUID();
+        String token = jwtUtil.generateToken(UserDetailed.builder().uuid(uuid).build());
+
+        Claims first = extractBody(jwtUtil.parseToken(token, null));
+        Claims second = extractBody(jwtUtil.parseToken(token, null));
+
+        Assert.assertEquals(JwtUtil.safeExtractKey(second, "uuid"), uuid.toString());
+
+        // The second token is not verified again
+        Assert.assertEquals(meterRegistry.get("jwt.claims.cache.requests").tag("result", "hit")
+                .functionCounter().count(), 1.0);
+        Assert.assertEquals(meterRegistry.get("jwt.claims.cache.requests").tag("result", "miss")
+                .functionCounter().count(), 1.0);
+
+        Assert.assertNotSame(first, second);
+    }
+
+    /**
+     * Changes of claims by one request are never seen by the others
+     */
+    @Test
+    public void claimsCopyTest() {
+        UUID uuid = UUID.randomUUID();
+        String token = jwtUtil.generateToken(UserDetailed.builder().uuid(uuid).build());
+
+        Claims first = extractBody(jwtUtil.parseToken(token, null));
+        first.put("uuid", UUID.randomUUID().toString());
+        first.remove("ttl");
+
+        Claims second = extractBody(jwtUtil.parseToken(token, null));
+
+        Assert.assertEquals(JwtUtil.safeExtractKey(second, "uuid"), uuid.toString());
+        Assert.assertNotNull(second.get("ttl"));
+    }
+
+    private static JwtUtil createJwtUtil(StaticMessageSource messageSource, SimpleMeterRegistry meterRegistry) {
+        JwtUtil jwtUtil = new JwtUtil(null, null, messageSource, meterRegistry);
+        ReflectionTestUtils.setField(jwtUtil, "jwtKey", "LKJIDJFV1aswZ");
+        ReflectionTestUtils.setField(jwtUtil, "ttlPeriod", 3_600_000L);
+        ReflectionTestUtils.setField(jwtUtil, "never", 1691300640540L);
+        ReflectionTestUtils.setField(jwtUtil, "zone", 3);
+        ReflectionTestUtils.setField(jwtUtil, "innerKey", "inner");
+        ReflectionTestUtils.setField(jwtUtil, "claimsCacheSize", 100);
+        jwtUtil.init();
+        return jwtUtil;
+    }
+
+    private static Claims extractBody(Authentication authentication) {
+        return ((AuthDetails) authentication.getDetails()).getBody();
+    }
+}
@@ -0,0 +1,207 @@
+package com.anyservice.tests.unit;
+
+import com.anyservice.core.Fake;
+import com.anyservice.core.Keyset;
+import com.anyservice.dto.api.KeysetPage;
+import com.anyservice.dto.api.PageQuery;
+import com.anyservice.dto.user.UserBrief;
+import com.anyservice.entity.user.UserEntity;
+import com.anyservice.repository.UserRepository;
+import com.anyservice.service.user.UserService;
+import org.springframework.context.support.StaticMessageSource;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Pages are selected from a fake repository, that filters and orders users the same way as its queries do
+ */
+public class KeysetPaginationUnitTest {
+
+    private static final int UNPAGED_LIMIT = 7;
+
+    /**
+     * Database orders identifiers by their bytes, that is the same as by their text
+     */
+    private static final Comparator<UserEntity> ORDER = Comparator.comparing(UserEntity::getDtCreate)
+            .thenComparing(u -> u.getUuid().toString());
+
+    private final List<UserEntity> users = new ArrayList<>();
+    private final AtomicInteger requestedPageSize = new AtomicInteger();
+
+    private UserService userService;
+
+    @BeforeMethod
+    public void setup() {
+        users.clear();
+
+        UserRepository userRepository = Fake.of(UserRepository.class)
+                .on("findFirstPage", args -> select(users.stream(), (Pageable) args[2]))
+                .on("findNextPage", args -> {
+                    UserEntity after = UserEntity.builder()
+                            .dtCreate((OffsetDateTime) args[0])
+                            .uuid((UUID) args[1])
+                            .build();
+
+                    return select(users.stream().filter(u -> ORDER.compare(u, after) > 0), (Pageable) args[4]);
+                })
+                .create();
+
+        ConversionService conversionService = Fake.of(ConversionService.class)
+                .on("convert", args -> UserBrief.builder().uuid(((UserEntity) args[0]).getUuid()).build())
+                .create();
+
+        StaticMessageSource messageSource = new StaticMessageSource();
+        messageSource.setUseCodeAsDefaultMessage(true);
+
+        userService = new UserService(userRepository, conversionService, null, null, messageSource,
+                null, null, null, null, null, null, null, null, null, null, null);
+        ReflectionTestUtils.setField(userService, "defaultPageLimit", 3);
+        ReflectionTestUtils.setField(userService, "maxPageLimit", 5);
+        ReflectionTestUtils.setField(userService, "unpagedLimit", UNPAGED_LIMIT);
+    }
+
+    @Test
+    public void keysetRoundTripTest() {
+        // Database keeps microseconds
+        OffsetDateTime dtCreate = OffsetDateTime.of(2020, 3, 15, 10, 20, 30, 123_456_000, ZoneOffset.ofHours(3));
+        UUID uuid = UUID.randomUUID();
+
+        Keyset decoded = Keyset.decode(new Keyset(dtCreate, uuid).encode());
+
+        Assert.assertTrue(decoded.getDtCreate().isEqual(dtCreate));
+        Assert.assertEquals(decoded.getUuid(), uuid);
+    }
+
+    @Test
+    public void malformedKeysetTest() {
+        for (String token : new String[]{"", "not a token", "bm90IGEga2V5c2V0", new Keyset(OffsetDateTime.now(),
+                UUID.randomUUID()).encode().substring(5)}) {
+            try {
+                Keyset.decode(token);
+                Assert.fail("Token was accepted: " + token);
+            } catch (IllegalArgumentException e) {
+                Assert.assertEquals(e.getMessage(), "keyset.continuation.invalid");
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void malformedContinuationTest() {
+        userService.findPage(PageQuery.builder().continuation("not a token").build());
+    }
+
+    /**
+     * Rows with the same date of creation are split by pages with their identifiers
+     */
+    @Test
+    public void sameDateTest() {
+        OffsetDateTime dtCreate = OffsetDateTime.now(ZoneOffset.UTC);
+
+        for (int i = 0; i < 10; i++) {
+            addUser(dtCreate);
+        }
+
+        addUser(dtCreate.minusSeconds(1));
+        addUser(dtCreate.plusSeconds(1));
+
+        List<UUID> seen = new ArrayList<>();
+        String continuation = null;
+        int pages = 0;
+
+        do {
+            KeysetPage<UserBrief> page = userService.findPage(PageQuery.builder()
+                    .continuation(continuation)
+                    .limit(4)
+                    .build());
+
+            page.getContent().forEach(u -> seen.add(u.getUuid()));
+            continuation = page.getContinuation();
+            pages++;
+        } while (continuation != null);
+
+        Assert.assertEquals(pages, 3);
+
+        // Every user exactly once and in order
+        Assert.assertEquals(seen, users.stream().sorted(ORDER).map(UserEntity::getUuid).collect(Collectors.toList()));
+        Set<UUID> distinct = new HashSet<>(seen);
+        Assert.assertEquals(distinct.size(), users.size());
+    }
+
+    @Test
+    public void lastPageTest() {
+        OffsetDateTime dtCreate = OffsetDateTime.now(ZoneOffset.UTC);
+
+        for (int i = 0; i < 3; i++) {
+            addUser(dtCreate);
+        }
+
+        // Exactly full page has no continuation
+        KeysetPage<UserBrief> page = userService.findPage(PageQuery.builder().limit(3).build());
+
+        Assert.assertEquals(page.getContent().size(), 3);
+        Assert.assertNull(page.getContinuation());
+    }
+
+    @Test
+    public void limitTest() {
+        for (int i = 0; i < 10; i++) {
+            addUser(OffsetDateTime.now(ZoneOffset.UTC));
+        }
+
+        // Default and maximal limits, plus one extra row for the next page
+        userService.findPage(new PageQuery());
+        Assert.assertEquals(requestedPageSize.get(), 4);
+
+        Assert.assertEquals(userService.findPage(PageQuery.builder().limit(100).build()).getContent().size(), 5);
+        Assert.assertEquals(requestedPageSize.get(), 6);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void invalidLimitTest() {
+        userService.findPage(PageQuery.builder().limit(0).build());
+    }
+
+    @Test
+    public void findAllLimitTest() {
+        for (int i = 0; i < UNPAGED_LIMIT * 2; i++) {
+            addUser(OffsetDateTime.now(ZoneOffset.UTC));
+        }
+
+        List<UserBrief> all = new ArrayList<>();
+        userService.findAll().forEach(all::add);
+
+        Assert.assertEquals(all.size(), UNPAGED_LIMIT);
+        Assert.assertEquals(requestedPageSize.get(), UNPAGED_LIMIT);
+    }
+
+    private void addUser(OffsetDateTime dtCreate) {
+        users.add(UserEntity.builder()
+                .uuid(UUID.randomUUID())
+                .dtCreate(dtCreate)
+                .build());
+    }
+
+    private List<UserEntity> select(Stream<UserEntity> rows, Pageable pageable) {
+        requestedPageSize.set(pageable.getPageSize());
+
+        return rows.sorted(ORDER)
+                .limit(pageable.getPageSize())
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,283 @@
+package com.anyservice.tests.unit;
+
+import com.anyservice.core.Fake;
+import com.anyservice.core.KeyedTokenBucket;
+import com.anyservice.core.exceptions.ServiceOverloadedException;
+import com.anyservice.core.exceptions.TooManyLoginAttemptsException;
+import com.anyservice.dto.user.UserDetailed;
+import com.anyservice.entity.user.UserEntity;
+import com.anyservice.repository.UserRepository;
+import com.anyservice.service.api.IPasswordService;
+import com.anyservice.service.user.LoginThrottle;
+import com.anyservice.service.user.UserService;
+import com.anyservice.web.security.exceptions.WrongPasswordException;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.ITopic;
+import com.hazelcast.core.Message;
+import org.springframework.context.support.StaticMessageSource;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Buckets are checked with a controlled clock, the throttle - together with the login itself,
+ * while Hazelcast, database and hashing are replaced by fakes
+ */
+public class LoginThrottleUnitTest {
+
+    private static final int CAPACITY = 3;
+    private static final long REFILL_MILLIS = 1000;
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final List<Object> published = new CopyOnWriteArrayList<>();
+    private final AtomicInteger verifications = new AtomicInteger();
+
+    private KeyedTokenBucket bucket;
+    private LoginThrottle throttle;
+    private UserService userService;
+
+    private boolean hashingOverloaded;
+
+    @BeforeMethod
+    public void setup() {
+        bucket = new KeyedTokenBucket(100, CAPACITY, REFILL_MILLIS, now::get);
+
+        published.clear();
+        verifications.set(0);
+        hashingOverloaded = false;
+
+        ITopic<?> topic = Fake.of(ITopic.class)
+                .on("addMessageListener", args -> "listener")
+                .on("publish", args -> published.add(args[0]))
+                .create();
+
+        HazelcastInstance hazelcastInstance = Fake.of(HazelcastInstance.class)
+                .on("getTopic", args -> topic)
+                .create();
+
+        StaticMessageSource messageSource = new StaticMessageSource();
+        messageSource.setUseCodeAsDefaultMessage(true);
+
+        throttle = new LoginThrottle(hazelcastInstance, messageSource);
+        ReflectionTestUtils.setField(throttle, "maxKeys", 100);
+        ReflectionTestUtils.setField(throttle, "userNameCapacity", CAPACITY);
+        ReflectionTestUtils.setField(throttle, "userNameRefillSeconds", 60L);
+        ReflectionTestUtils.setField(throttle, "addressCapacity", 100);
+        ReflectionTestUtils.setField(throttle, "addressRefillSeconds", 60L);
+        throttle.init();
+
+        UserRepository userRepository = Fake.of(UserRepository.class)
+                .on("findFirstByUserName", args -> new UserEntity())
+                .create();
+
+        ConversionService conversionService = Fake.of(ConversionService.class)
+                .on("convert", args -> UserDetailed.builder().password("hash").build())
+                .create();
+
+        IPasswordService passwordService = Fake.of(IPasswordService.class)
+                .on("verifyHash", args -> {
+                    verifications.incrementAndGet();
+                    if (hashingOverloaded) throw new ServiceOverloadedException("busy", 1);
+                    return "password".equals(args[0]);
+                })
+                .on("needsRehash", args -> false)
+                .create();
+
+        userService = new UserService(userRepository, conversionService, null, passwordService, messageSource,
+                null, null, null, null, null, throttle, null, null, null, null, null);
+    }
+
+    @Test
+    public void refillTest() {
+        for (int i = 0; i < CAPACITY; i++) {
+            Assert.assertEquals(bucket.tryAcquire("key"), 0);
+        }
+
+        Assert.assertEquals(bucket.tryAcquire("key"), REFILL_MILLIS);
+
+        // One token is refilled after its period
+        now.addAndGet(REFILL_MILLIS / 2);
+        Assert.assertEquals(bucket.tryAcquire("key"), REFILL_MILLIS / 2);
+
+        now.addAndGet(REFILL_MILLIS / 2);
+        Assert.assertEquals(bucket.tryAcquire("key"), 0);
+        Assert.assertEquals(bucket.tryAcquire("key"), REFILL_MILLIS);
+
+        // Completely refilled bucket is forgotten
+        now.addAndGet(CAPACITY * REFILL_MILLIS);
+        Assert.assertEquals(bucket.tryAcquire("another"), 0);
+        Assert.assertEquals(bucket.size(), 1);
+    }
+
+    @Test
+    public void releaseTest() {
+        for (int i = 0; i < CAPACITY; i++) {
+            bucket.tryAcquire("key");
+        }
+
+        bucket.release("key");
+
+        Assert.assertEquals(bucket.tryAcquire("key"), 0);
+        Assert.assertEquals(bucket.drainPending(), Collections.singletonMap("key", (long) CAPACITY));
+        Assert.assertTrue(bucket.drainPending().isEmpty());
+    }
+
+    @Test
+    public void applyTest() {
+        // Tokens taken on another node
+        bucket.apply("key", CAPACITY - 1);
+
+        Assert.assertEquals(bucket.tryAcquire("key"), 0);
+        Assert.assertEquals(bucket.tryAcquire("key"), REFILL_MILLIS);
+
+        // Given back on another node
+        bucket.apply("key", -1);
+        Assert.assertEquals(bucket.tryAcquire("key"), 0);
+
+        // Remote attempts lock the key for a full refill at most
+        bucket.apply("another", 100);
+        now.addAndGet(CAPACITY * REFILL_MILLIS);
+        Assert.assertEquals(bucket.tryAcquire("another"), 0);
+
+        // Only local tokens are published
+        Assert.assertEquals(bucket.drainPending(), new HashMap<String, Long>() {{
+            put("key", 2L);
+            put("another", 1L);
+        }});
+    }
+
+    /**
+     * Keys never share buckets - even the ones with the same hash code
+     */
+    @Test
+    public void exactKeysTest() {
+        Assert.assertEquals("Aa".hashCode(), "BB".hashCode());
+
+        for (int i = 0; i < CAPACITY; i++) {
+            bucket.tryAcquire("Aa");
+        }
+
+        Assert.assertTrue(bucket.tryAcquire("Aa") > 0);
+        Assert.assertEquals(bucket.tryAcquire("BB"), 0);
+    }
+
+    @Test
+    public void maxKeysTest() {
+        for (int i = 0; i < 1000; i++) {
+            bucket.tryAcquire("key" + i);
+        }
+
+        Assert.assertEquals(bucket.size(), 100);
+        Assert.assertEquals(bucket.drainPending().size(), 100);
+    }
+
+    /**
+     * Failed attempts against lots of other user names do not lock out a user
+     */
+    @Test
+    public void noLockoutTest() {
+        for (int i = 0; i < 10_000; i++) {
+            for (int j = 0; j < CAPACITY; j++) {
+                try {
+                    userService.findUserForLogin("user" + i, "wrong", null);
+                } catch (WrongPasswordException e) {
+                    // Expected
+                }
+            }
+        }
+
+        Assert.assertNotNull(userService.findUserForLogin("victim", "password", null));
+    }
+
+    /**
+     * Once attempts are spent, the password is not verified at all
+     */
+    @Test
+    public void throttledAttemptTest() {
+        for (int i = 0; i < CAPACITY; i++) {
+            try {
+                userService.findUserForLogin("User", "wrong", "10.0.0.1");
+                Assert.fail();
+            } catch (WrongPasswordException e) {
+                // Expected
+            }
+        }
+
+        try {
+            // The same user name in another case
+            userService.findUserForLogin(" user ", "password", "10.0.0.2");
+            Assert.fail();
+        } catch (TooManyLoginAttemptsException e) {
+            Assert.assertEquals(e.getRetryAfterSeconds(), 60);
+        }
+
+        Assert.assertEquals(verifications.get(), CAPACITY);
+    }
+
+    @Test
+    public void successfulAttemptTest() {
+        for (int i = 0; i < CAPACITY * 2; i++) {
+            userService.findUserForLogin("user", "password", "10.0.0.1");
+        }
+
+        // Only failed attempts are counted
+        throttle.sync();
+        Assert.assertTrue(published.isEmpty());
+    }
+
+    @Test
+    public void overloadedTest() {
+        hashingOverloaded = true;
+
+        for (int i = 0; i < CAPACITY * 2; i++) {
+            try {
+                userService.findUserForLogin("user", "password", "10.0.0.1");
+                Assert.fail();
+            } catch (ServiceOverloadedException e) {
+                // Expected
+            }
+        }
+
+        // Rejected attempts are not counted
+        Assert.assertEquals(verifications.get(), CAPACITY * 2);
+    }
+
+    @Test
+    public void syncTest() {
+        try {
+            userService.findUserForLogin("user", "wrong", "10.0.0.1");
+        } catch (WrongPasswordException e) {
+            // Expected
+        }
+
+        throttle.sync();
+
+        Assert.assertEquals(published.size(), 1);
+        LoginThrottle.Attempts attempts = (LoginThrottle.Attempts) published.get(0);
+        Assert.assertEquals(ReflectionTestUtils.getField(attempts, "userNames"), Collections.singletonMap("user", 1L));
+        Assert.assertEquals(ReflectionTestUtils.getField(attempts, "addresses"),
+                Collections.singletonMap("10.0.0.1", 1L));
+
+        // Attempts of another node limit this one as well
+        Map<String, Long> remote = Collections.singletonMap("another", (long) CAPACITY);
+        throttle.onMessage(new Message<>(LoginThrottle.SYNC_TOPIC,
+                new LoginThrottle.Attempts(remote, Collections.emptyMap()), System.currentTimeMillis(), null));
+
+        try {
+            userService.findUserForLogin("another", "password", null);
+            Assert.fail();
+        } catch (TooManyLoginAttemptsException e) {
+            Assert.assertEquals(verifications.get(), 1);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.anyservice.tests.unit;
+
+import com.anyservice.core.exceptions.ServiceOverloadedException;
+import com.anyservice.service.user.PasswordService;
+import com.anyservice.web.advices.GlobalControllerExceptionHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mindrot.jbcrypt.BCrypt;
+import org.springframework.context.support.StaticMessageSource;
+import org.springframework.hateoas.mediatype.vnderrors.VndErrors;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor of password hashing is made as small as possible - a single thread and a single place in the queue
+ */
+public class PasswordServiceOverloadUnitTest {
+
+    private static final long RETRY_AFTER_SECONDS = 7;
+
+    private final StaticMessageSource messageSource = new StaticMessageSource();
+
+    private ThreadPoolExecutor executor;
+    private CountDownLatch release;
+    private PasswordService passwordService;
+
+    @BeforeMethod
+    public void setup() {
+        messageSource.setUseCodeAsDefaultMessage(true);
+
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1), new ThreadPoolExecutor.AbortPolicy());
+        release = new CountDownLatch(1);
+
+        passwordService = new PasswordService(executor, messageSource, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(passwordService, "logRounds", 4);
+        ReflectionTestUtils.setField(passwordService, "retryAfterSeconds", RETRY_AFTER_SECONDS);
+        ReflectionTestUtils.setField(passwordService, "calibrationEnabled", false);
+        passwordService.init();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void shutdown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void fullQueueTest() {
+        occupyExecutor();
+
+        try {
+            passwordService.verifyHash("password", BCrypt.hashpw("password", BCrypt.gensalt(4)));
+            Assert.fail();
+        } catch (ServiceOverloadedException e) {
+            Assert.assertEquals(e.getMessage(), "password.service.overloaded");
+            Assert.assertEquals(e.getRetryAfterSeconds(), RETRY_AFTER_SECONDS);
+        }
+
+        // Once the executor is free, hashing works again
+        release.countDown();
+        awaitIdle();
+
+        Assert.assertTrue(BCrypt.checkpw("password", passwordService.hash("password")));
+    }
+
+    @Test
+    public void handlerTest() {
+        occupyExecutor();
+
+        ServiceOverloadedException exception = null;
+
+        try {
+            passwordService.hash("password");
+        } catch (ServiceOverloadedException e) {
+            exception = e;
+        }
+
+        Assert.assertNotNull(exception);
+
+        ResponseEntity<VndErrors> response = new GlobalControllerExceptionHandler(messageSource)
+                .serviceOverloadedExceptionHandler(exception);
+
+        Assert.assertEquals(response.getStatusCode(), HttpStatus.SERVICE_UNAVAILABLE);
+        Assert.assertEquals(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER),
+                String.valueOf(RETRY_AFTER_SECONDS));
+        Assert.assertNotNull(response.getBody());
+    }
+
+    /**
+     * Block the only thread and take the only place in the queue
+     */
+    private void occupyExecutor() {
+        CountDownLatch started = new CountDownLatch(1);
+
+        executor.execute(() -> {
+            started.countDown();
+            awaitRelease();
+        });
+        executor.execute(this::awaitRelease);
+
+        try {
+            Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void awaitIdle() {
+        long deadline = System.currentTimeMillis() + 5000;
+
+        while (executor.getActiveCount() > 0 || !executor.getQueue().isEmpty()) {
+            Assert.assertTrue(System.currentTimeMillis() < deadline, "Executor is still busy");
+            Thread.yield();
+        }
+    }
+}
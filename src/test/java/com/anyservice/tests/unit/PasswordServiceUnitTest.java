@@ -2,6 +2,7 @@ package com.anyservice.tests.unit;
 
 import com.anyservice.config.TestConfig;
 import com.anyservice.service.user.PasswordService;
+import org.mindrot.jbcrypt.BCrypt;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
@@ -68,4 +69,26 @@ public class PasswordServiceUnitTest extends TestConfig {
         Assert.assertEquals(actual, expected);
     }
 
+    @Test
+    public void needsRehashTest() {
+        String password = randomString(1, 50);
+
+        // Hash made with the current cost - nothing to do
+        Assert.assertFalse(passwordService.needsRehash(passwordService.hash(password)));
+
+        // Hash made with a lower cost - must be rehashed
+        int rounds = passwordService.getLogRounds();
+        if (rounds > 4) {
+            Assert.assertTrue(passwordService.needsRehash(BCrypt.hashpw(password, BCrypt.gensalt(rounds - 1))));
+        }
+
+        // Hash made with a higher cost, e.g. by a faster node - stays as it is
+        String higher = passwordService.hash(password).replaceFirst("\\$\\d{2}\\$",
+                String.format("\\$%02d\\$", rounds + 1));
+        Assert.assertFalse(passwordService.needsRehash(higher));
+
+        // Unknown format - must be rehashed
+        Assert.assertTrue(passwordService.needsRehash(randomString(1, 50)));
+    }
+
 }
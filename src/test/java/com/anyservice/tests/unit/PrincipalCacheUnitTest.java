@@ -0,0 +1,196 @@
+package com.anyservice.tests.unit;
+
+import com.anyservice.core.Fake;
+import com.anyservice.dto.user.UserDetailed;
+import com.anyservice.dto.user.UserForChangePassword;
+import com.anyservice.entity.user.UserEntity;
+import com.anyservice.repository.UserRepository;
+import com.anyservice.service.api.IFileService;
+import com.anyservice.service.api.IPasswordService;
+import com.anyservice.service.api.IUserNameIndex;
+import com.anyservice.service.user.PrincipalCache;
+import com.anyservice.service.user.UserService;
+import com.anyservice.service.validators.api.IUserValidator;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.ITopic;
+import org.springframework.context.support.StaticMessageSource;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Principals must be evicted on all nodes, but only once the change of a user is committed
+ * <p>
+ * Database is replaced by fakes, transactions only run their synchronizations
+ */
+public class PrincipalCacheUnitTest {
+
+    private final UUID uuid = UUID.randomUUID();
+    private final List<Object> published = new CopyOnWriteArrayList<>();
+
+    private PrincipalCache principalCache;
+    private UserService userService;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeMethod
+    public void setup() {
+        published.clear();
+
+        ITopic<?> topic = Fake.of(ITopic.class)
+                .on("addMessageListener", args -> "listener")
+                .on("publish", args -> published.add(args[0]))
+                .create();
+
+        HazelcastInstance hazelcastInstance = Fake.of(HazelcastInstance.class)
+                .on("getTopic", args -> topic)
+                .create();
+
+        principalCache = new PrincipalCache(hazelcastInstance);
+        ReflectionTestUtils.setField(principalCache, "maxSize", 100);
+        ReflectionTestUtils.setField(principalCache, "ttlSeconds", 60L);
+        principalCache.init();
+
+        principalCache.putUserInCache(new User(uuid.toString(), "hash", Collections.emptyList()));
+
+        UserRepository userRepository = Fake.of(UserRepository.class)
+                .on("findById", args -> Optional.of(new UserEntity()))
+                .on("existsById", args -> true)
+                .on("saveAndFlush", args -> args[0])
+                .on("findUserNameById", args -> Optional.of("user"))
+                .on("deleteByIdAndVersion", args -> 1)
+                .create();
+
+        ConversionService conversionService = Fake.of(ConversionService.class)
+                .on("convert", args -> args[1] == UserEntity.class
+                        ? new UserEntity()
+                        : UserDetailed.builder().uuid(uuid).password("hash").build())
+                .create();
+
+        IUserValidator userValidator = Fake.of(IUserValidator.class)
+                .on("validatePasswordForChange", args -> Collections.emptyMap())
+                .create();
+
+        IPasswordService passwordService = Fake.of(IPasswordService.class)
+                .on("hash", args -> "newHash")
+                .create();
+
+        IFileService fileService = Fake.of(IFileService.class)
+                .on("findAllAttachedToUser", args -> Collections.emptyList())
+                .create();
+
+        IUserNameIndex userNameIndex = Fake.of(IUserNameIndex.class)
+                .on("remove", args -> null)
+                .create();
+
+        StaticMessageSource messageSource = new StaticMessageSource();
+        messageSource.setUseCodeAsDefaultMessage(true);
+
+        userService = new UserService(userRepository, conversionService, userValidator, passwordService,
+                messageSource, null, null, fileService, principalCache, null, null, null, userNameIndex,
+                null, null, null);
+
+        transactionTemplate = new TransactionTemplate(new SynchronizingTransactionManager());
+    }
+
+    @Test
+    public void changePasswordCommitTest() {
+        transactionTemplate.execute(status -> {
+            userService.changePassword(createPasswordChange());
+
+            // Other transactions still see the old password
+            Assert.assertNotNull(principalCache.getUserFromCache(uuid.toString()));
+            return null;
+        });
+
+        assertEvicted();
+    }
+
+    @Test
+    public void changePasswordRollbackTest() {
+        transactionTemplate.execute(status -> {
+            userService.changePassword(createPasswordChange());
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertNotEvicted();
+    }
+
+    @Test
+    public void deleteCommitTest() {
+        transactionTemplate.execute(status -> {
+            userService.deleteById(uuid, new Date());
+
+            Assert.assertNotNull(principalCache.getUserFromCache(uuid.toString()));
+            return null;
+        });
+
+        assertEvicted();
+    }
+
+    @Test
+    public void deleteRollbackTest() {
+        transactionTemplate.execute(status -> {
+            userService.deleteById(uuid, new Date());
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertNotEvicted();
+    }
+
+    private void assertEvicted() {
+        Assert.assertNull(principalCache.getUserFromCache(uuid.toString()));
+        Assert.assertEquals(published, Collections.singletonList(uuid));
+    }
+
+    private void assertNotEvicted() {
+        Assert.assertNotNull(principalCache.getUserFromCache(uuid.toString()));
+        Assert.assertTrue(published.isEmpty());
+    }
+
+    private UserForChangePassword createPasswordChange() {
+        UserForChangePassword change = new UserForChangePassword();
+        change.setUuid(uuid);
+        change.setOldPassword("oldPassword");
+        change.setNewPassword("newPassword");
+        return change;
+    }
+
+    /**
+     * Transactions without a resource - only synchronizations are run, on commit and on rollback
+     */
+    private static class SynchronizingTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
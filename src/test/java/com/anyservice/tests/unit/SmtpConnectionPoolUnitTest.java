@@ -0,0 +1,170 @@
+package com.anyservice.tests.unit;
+
+import com.anyservice.core.SmtpConnectionPool;
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Pool works with local SMTP server, so it does not need the application context
+ */
+public class SmtpConnectionPoolUnitTest {
+
+    private GreenMail greenMail;
+    private JavaMailSenderImpl mailSender;
+
+    @BeforeClass
+    public void startMailServer() {
+        greenMail = new GreenMail(ServerSetupTest.SMTP);
+        greenMail.start();
+
+        Properties properties = new Properties();
+        properties.put("mail.smtp.auth", "false");
+
+        mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(ServerSetupTest.SMTP.getPort());
+        mailSender.setJavaMailProperties(properties);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopMailServer() {
+        if (greenMail != null) greenMail.stop();
+    }
+
+    @BeforeMethod
+    public void purgeMessages() throws Exception {
+        greenMail.purgeEmailFromAllMailboxes();
+    }
+
+    @Test
+    public void reuseConnectionsTest() throws Exception {
+        try (SmtpConnectionPool pool = createPool(2, 1000, 60_000)) {
+            sendInParallel(pool, 20, 4);
+
+            Assert.assertTrue(greenMail.waitForIncomingEmail(5000, 20));
+            Assert.assertTrue(pool.getOpened() <= 2);
+        }
+    }
+
+    @Test
+    public void maxMessagesPerConnectionTest() throws Exception {
+        try (SmtpConnectionPool pool = createPool(1, 3, 60_000)) {
+            for (int i = 0; i < 7; i++) {
+                pool.send(createMessage(i));
+            }
+
+            Assert.assertTrue(greenMail.waitForIncomingEmail(5000, 7));
+            Assert.assertEquals(pool.getOpened(), 3);
+        }
+    }
+
+    @Test
+    public void evictIdleTest() throws Exception {
+        try (SmtpConnectionPool pool = createPool(2, 1000, 50)) {
+            pool.send(createMessage(0));
+            Assert.assertEquals(pool.getOpen(), 1);
+
+            Thread.sleep(100);
+            pool.evictIdle();
+
+            Assert.assertEquals(pool.getOpen(), 0);
+
+            // Evicted connection is still in the pool and is opened again
+            pool.send(createMessage(1));
+
+            Assert.assertTrue(greenMail.waitForIncomingEmail(5000, 2));
+            Assert.assertEquals(pool.getOpen(), 1);
+            Assert.assertEquals(pool.getOpened(), 2);
+        }
+    }
+
+    @Test
+    public void evictOnlyIdleTest() throws Exception {
+        try (SmtpConnectionPool pool = createPool(2, 1000, 60_000)) {
+            pool.send(createMessage(0));
+            pool.evictIdle();
+
+            Assert.assertEquals(pool.getOpen(), 1);
+        }
+    }
+
+    @Test
+    public void reconnectAfterServerRestartTest() throws Exception {
+        try (SmtpConnectionPool pool = createPool(1, 1000, 60_000)) {
+            pool.send(createMessage(0));
+
+            // Server closes all its connections
+            greenMail.stop();
+            startMailServer();
+
+            pool.send(createMessage(1));
+
+            Assert.assertTrue(greenMail.waitForIncomingEmail(5000, 1));
+            Assert.assertEquals(pool.getOpened(), 2);
+        }
+    }
+
+    /**
+     * Send messages from several threads
+     *
+     * @param pool     pool of connections OR null to open a new connection for every message
+     * @param messages amount of messages
+     * @param threads  amount of threads
+     * @throws Exception if any message is not sent
+     */
+    private void sendInParallel(SmtpConnectionPool pool, int messages, int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+
+            for (int i = 0; i < messages; i++) {
+                MimeMessage message = createMessage(i);
+
+                futures.add(executor.submit(() -> {
+                    if (pool != null) {
+                        pool.send(message);
+                    } else {
+                        mailSender.send(message);
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private SmtpConnectionPool createPool(int size, int maxMessagesPerConnection, long idleMillis) {
+        return new SmtpConnectionPool(mailSender.getSession(), "smtp", "localhost",
+                ServerSetupTest.SMTP.getPort(), null, null, size, maxMessagesPerConnection, idleMillis, 10_000);
+    }
+
+    private MimeMessage createMessage(int number) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        message.setFrom("sender@localhost");
+        message.setRecipients(MimeMessage.RecipientType.TO, "recipient" + number + "@localhost");
+        message.setSubject("Message " + number);
+        message.setText("Message " + number);
+        return message;
+    }
+}
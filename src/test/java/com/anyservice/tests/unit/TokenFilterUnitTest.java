@@ -0,0 +1,169 @@
+package com.anyservice.tests.unit;
+
+import com.anyservice.core.Fake;
+import com.anyservice.dto.user.UserDetailed;
+import com.anyservice.service.api.IUserService;
+import com.anyservice.web.security.JwtUtil;
+import com.anyservice.web.security.filters.TokenFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.support.StaticMessageSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * One-time tokens are taken from an in-memory cache, users - from a fake service
+ */
+public class TokenFilterUnitTest {
+
+    private static final String JWT_HEADER = "JX-TOKEN";
+
+    private final AtomicInteger userLookups = new AtomicInteger();
+
+    private CacheManager cacheManager;
+    private TokenFilter tokenFilter;
+
+    @BeforeMethod
+    public void setup() {
+        userLookups.set(0);
+
+        StaticMessageSource messageSource = new StaticMessageSource();
+        messageSource.setUseCodeAsDefaultMessage(true);
+
+        JwtUtil jwtUtil = new JwtUtil(null, null, messageSource, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(jwtUtil, "jwtKey", "LKJIDJFV1aswZ");
+        ReflectionTestUtils.setField(jwtUtil, "never", 1691300640540L);
+        ReflectionTestUtils.setField(jwtUtil, "zone", 3);
+
+        IUserService userService = Fake.of(IUserService.class)
+                .on("findById", args -> {
+                    userLookups.incrementAndGet();
+                    return Optional.of(UserDetailed.builder().uuid((UUID) args[0]).build());
+                })
+                .create();
+
+        cacheManager = new ConcurrentMapCacheManager("uuidTokenMap");
+
+        tokenFilter = new TokenFilter(cacheManager, userService, jwtUtil);
+        ReflectionTestUtils.setField(tokenFilter, "jwtHeader", JWT_HEADER);
+        ReflectionTestUtils.setField(tokenFilter, "paramTokenName", "token");
+        ReflectionTestUtils.setField(tokenFilter, "resolvedTokensCacheSize", 100);
+        ReflectionTestUtils.setField(tokenFilter, "resolvedTokensCacheSeconds", 10);
+        tokenFilter.init();
+    }
+
+    /**
+     * Header is queried several times during a request, while the token is resolved only once
+     */
+    @Test
+    public void resolvedOncePerRequestTest() throws Exception {
+        UUID oneTimeToken = createOneTimeToken();
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setParameter("token", oneTimeToken.toString());
+
+        HttpServletRequest filtered = filter(request);
+
+        String token = filtered.getHeader(JWT_HEADER);
+
+        Assert.assertNotNull(token);
+        Assert.assertEquals(filtered.getHeader(JWT_HEADER.toLowerCase()), token);
+        Assert.assertEquals(Collections.list(filtered.getHeaders(JWT_HEADER)), Collections.singletonList(token));
+        Assert.assertTrue(Collections.list(filtered.getHeaderNames()).contains(JWT_HEADER));
+
+        Assert.assertEquals(request.getAttribute(TokenFilter.RESOLVED_TOKEN_ATTRIBUTE), token);
+        Assert.assertEquals(userLookups.get(), 1);
+    }
+
+    /**
+     * Repeated downloads with the same link take the token from cache
+     */
+    @Test
+    public void resolvedTokenCacheTest() throws Exception {
+        UUID oneTimeToken = createOneTimeToken();
+
+        String first = resolve(oneTimeToken.toString());
+        String second = resolve(oneTimeToken.toString());
+
+        Assert.assertEquals(second, first);
+        Assert.assertEquals(userLookups.get(), 1);
+    }
+
+    @Test
+    public void unknownTokenTest() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setParameter("token", UUID.randomUUID().toString());
+        request.addHeader(JWT_HEADER, "original");
+
+        HttpServletRequest filtered = filter(request);
+
+        Assert.assertEquals(filtered.getHeader(JWT_HEADER), "original");
+        Assert.assertNull(request.getAttribute(TokenFilter.RESOLVED_TOKEN_ATTRIBUTE));
+        Assert.assertEquals(userLookups.get(), 0);
+    }
+
+    @Test
+    public void malformedTokenTest() throws Exception {
+        Assert.assertNull(resolve("not-a-uuid"));
+        Assert.assertEquals(userLookups.get(), 0);
+    }
+
+    @Test
+    public void noTokenTest() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+
+        Assert.assertSame(filter(request), request);
+    }
+
+    /**
+     * Body of multipart request is not parsed to find the token, only URL is
+     */
+    @Test
+    public void multipartTest() throws Exception {
+        UUID oneTimeToken = createOneTimeToken();
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setContentType("multipart/form-data; boundary=boundary");
+        request.setQueryString("token=" + oneTimeToken);
+
+        Assert.assertNotNull(filter(request).getHeader(JWT_HEADER));
+        Assert.assertEquals(userLookups.get(), 1);
+    }
+
+    private UUID createOneTimeToken() {
+        UUID oneTimeToken = UUID.randomUUID();
+        cacheManager.getCache("uuidTokenMap").put(oneTimeToken, UUID.randomUUID());
+        return oneTimeToken;
+    }
+
+    private String resolve(String oneTimeToken) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setParameter("token", oneTimeToken);
+
+        return filter(request).getHeader(JWT_HEADER);
+    }
+
+    /**
+     * @return request, as it is passed down the chain
+     */
+    private HttpServletRequest filter(HttpServletRequest request) throws Exception {
+        AtomicReference<HttpServletRequest> filtered = new AtomicReference<>();
+
+        tokenFilter.doFilter(request, new MockHttpServletResponse(),
+                (req, res) -> filtered.set((HttpServletRequest) req));
+
+        return filtered.get();
+    }
+}
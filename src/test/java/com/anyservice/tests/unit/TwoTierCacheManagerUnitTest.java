@@ -0,0 +1,143 @@
+package com.anyservice.tests.unit;
+
+import com.anyservice.core.TwoTierCache;
+import com.anyservice.core.TwoTierCacheManager;
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.spring.cache.HazelcastCacheManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Two managers over the same hazelcast instance behave like two nodes of a cluster
+ */
+public class TwoTierCacheManagerUnitTest {
+
+    private HazelcastInstance hazelcastInstance;
+    private TwoTierCacheManager firstNode;
+    private TwoTierCacheManager secondNode;
+
+    @BeforeClass
+    public void setup() {
+        Config config = new Config().setInstanceName("two-tier-cache-test-" + UUID.randomUUID());
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+
+        hazelcastInstance = Hazelcast.newHazelcastInstance(config);
+
+        firstNode = createManager();
+        secondNode = createManager();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void shutdown() {
+        if (hazelcastInstance != null) hazelcastInstance.shutdown();
+    }
+
+    @Test
+    public void localTierTest() {
+        Cache cache = firstNode.getCache("localTierTest");
+        Assert.assertTrue(cache instanceof TwoTierCache);
+
+        UUID key = UUID.randomUUID();
+        cache.put(key, "value");
+
+        // The first read goes to hazelcast, the next ones are local
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(cache.get(key, String.class), "value");
+        }
+
+        TwoTierCache twoTierCache = (TwoTierCache) cache;
+        Assert.assertEquals(twoTierCache.remoteHits(), 1);
+        Assert.assertEquals(twoTierCache.localHits(), 4);
+    }
+
+    @Test
+    public void invalidationTest() throws Exception {
+        Cache first = firstNode.getCache("invalidationTest");
+        Cache second = secondNode.getCache("invalidationTest");
+
+        UUID key = UUID.randomUUID();
+        first.put(key, "old");
+
+        // Both nodes have local copies now
+        Assert.assertEquals(first.get(key, String.class), "old");
+        Assert.assertEquals(second.get(key, String.class), "old");
+
+        second.put(key, "new");
+        waitFor(() -> "new".equals(first.get(key, String.class)));
+
+        second.evict(key);
+        waitFor(() -> first.get(key) == null);
+
+        first.put(key, "value");
+        Assert.assertEquals(second.get(key, String.class), "value");
+
+        first.clear();
+        waitFor(() -> second.get(key) == null);
+    }
+
+    /**
+     * Value, read from L2 right before an invalidation, must not be remembered locally
+     */
+    @Test
+    public void invalidationDuringReadTest() {
+        AtomicReference<TwoTierCache> cache = new AtomicReference<>();
+
+        ConcurrentMapCache remote = new ConcurrentMapCache("invalidationDuringReadTest") {
+            @Override
+            public ValueWrapper get(Object key) {
+                ValueWrapper value = super.get(key);
+
+                // Another node changes the value, while this one is still reading the old one
+                super.put(key, "new");
+                cache.get().invalidate(key);
+
+                return value;
+            }
+        };
+
+        cache.set(new TwoTierCache(remote, 100, 60_000));
+
+        UUID key = UUID.randomUUID();
+        remote.put(key, "old");
+
+        Assert.assertEquals(cache.get().get(key, String.class), "old");
+        Assert.assertEquals(cache.get().localSize(), 0);
+        Assert.assertEquals(cache.get().get(key, String.class), "new");
+    }
+
+    @Test
+    public void disabledLocalTierTest() {
+        TwoTierCacheManager manager = new TwoTierCacheManager(new HazelcastCacheManager(hazelcastInstance),
+                name -> new TwoTierCacheManager.LocalSettings(0, 0), new SimpleMeterRegistry());
+
+        Assert.assertFalse(manager.getCache("disabledLocalTierTest") instanceof TwoTierCache);
+    }
+
+    private TwoTierCacheManager createManager() {
+        return new TwoTierCacheManager(new HazelcastCacheManager(hazelcastInstance),
+                name -> new TwoTierCacheManager.LocalSettings(100, 60_000), new SimpleMeterRegistry());
+    }
+
+    /**
+     * Invalidations are delivered asynchronously
+     */
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+
+        while (!condition.getAsBoolean()) {
+            Assert.assertTrue(System.currentTimeMillis() < deadline, "Local copy was not invalidated");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.anyservice.tests.unit;
+
+import com.anyservice.core.Fake;
+import com.anyservice.core.NoTransactionManager;
+import com.anyservice.repository.UserRepository;
+import com.anyservice.service.user.UserNameIndex;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.ITopic;
+import com.hazelcast.core.Message;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+/**
+ * Index is built from a fake repository, Hazelcast topic is replaced by a fake as well
+ */
+public class UserNameIndexUnitTest {
+
+    private final List<Object> published = new CopyOnWriteArrayList<>();
+
+    private List<String> userNames;
+    private Runnable duringScan;
+
+    private UserNameIndex index;
+
+    @BeforeMethod
+    public void setup() {
+        published.clear();
+        userNames = Arrays.asList("first", "second");
+        duringScan = () -> {
+        };
+
+        UserRepository userRepository = Fake.of(UserRepository.class)
+                .on("streamAllUserNames", args -> userNames.stream().peek(userName -> duringScan.run()))
+                .create();
+
+        ITopic<?> topic = Fake.of(ITopic.class)
+                .on("addMessageListener", args -> "listener")
+                .on("publish", args -> published.add(args[0]))
+                .create();
+
+        HazelcastInstance hazelcastInstance = Fake.of(HazelcastInstance.class)
+                .on("getTopic", args -> topic)
+                .create();
+
+        index = new UserNameIndex(userRepository, new TransactionTemplate(new NoTransactionManager()),
+                hazelcastInstance);
+        ReflectionTestUtils.setField(index, "expectedSize", 1000);
+        ReflectionTestUtils.setField(index, "falsePositiveRate", 0.01);
+        index.init();
+    }
+
+    @Test
+    public void rebuildOnStartupTest() throws Exception {
+        EventListener listener = UserNameIndex.class.getMethod("rebuild").getAnnotation(EventListener.class);
+
+        Assert.assertNotNull(listener);
+        Assert.assertEquals(listener.value(), new Class<?>[]{ApplicationReadyEvent.class});
+    }
+
+    @Test
+    public void notBuiltTest() {
+        // Until the index is built, every name is possibly taken
+        Assert.assertTrue(index.mightExist("absent"));
+    }
+
+    @Test
+    public void rebuildTest() {
+        index.rebuild();
+
+        Assert.assertTrue(index.mightExist("first"));
+        Assert.assertTrue(index.mightExist("second"));
+        Assert.assertFalse(index.mightExist("absent"));
+    }
+
+    @Test
+    public void failedRebuildTest() {
+        userNames = null;
+
+        index.rebuild();
+
+        Assert.assertTrue(index.mightExist("absent"));
+    }
+
+    @Test
+    public void addedDuringRebuildTest() {
+        duringScan = () -> index.add("third");
+
+        index.rebuild();
+
+        Assert.assertTrue(index.mightExist("third"));
+    }
+
+    @Test
+    public void addRemoveTest() {
+        index.rebuild();
+
+        index.add("third");
+        Assert.assertTrue(index.mightExist("third"));
+
+        index.remove("third");
+        Assert.assertFalse(index.mightExist("third"));
+
+        Assert.assertEquals(published.size(), 2);
+        Assert.assertEquals(ReflectionTestUtils.getField(published.get(0), "added"), true);
+        Assert.assertEquals(ReflectionTestUtils.getField(published.get(1), "added"), false);
+    }
+
+    @Test
+    public void remoteChangeTest() {
+        index.rebuild();
+
+        index.onMessage(new Message<>(UserNameIndex.CHANGES_TOPIC,
+                new UserNameIndex.Change("third", true), System.currentTimeMillis(), null));
+        Assert.assertTrue(index.mightExist("third"));
+
+        index.onMessage(new Message<>(UserNameIndex.CHANGES_TOPIC,
+                new UserNameIndex.Change("first", false), System.currentTimeMillis(), null));
+        Assert.assertFalse(index.mightExist("first"));
+    }
+}
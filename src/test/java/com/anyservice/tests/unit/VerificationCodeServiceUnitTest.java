@@ -0,0 +1,108 @@
+package com.anyservice.tests.unit;
+
+import com.anyservice.core.enums.VerificationCodeMode;
+import com.anyservice.service.user.VerificationCodeService;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Codes are checked without the application context, replicated map is replaced with a local one
+ */
+public class VerificationCodeServiceUnitTest {
+
+    @Test
+    public void validCodeTest() {
+        VerificationCodeService service = createService(VerificationCodeMode.HMAC, 60);
+
+        UUID uuid = UUID.randomUUID();
+        OffsetDateTime dtUpdate = OffsetDateTime.now();
+
+        String code = service.generate(uuid, dtUpdate);
+
+        Assert.assertTrue(service.check(uuid, dtUpdate, code));
+    }
+
+    @Test
+    public void wrongCodeTest() {
+        VerificationCodeService service = createService(VerificationCodeMode.HMAC, 60);
+
+        UUID uuid = UUID.randomUUID();
+        OffsetDateTime dtUpdate = OffsetDateTime.now();
+
+        String code = service.generate(uuid, dtUpdate);
+
+        // Code of another user
+        Assert.assertFalse(service.check(UUID.randomUUID(), dtUpdate, code));
+
+        // User was updated after the code was generated
+        Assert.assertFalse(service.check(uuid, dtUpdate.plusNanos(1_000_000), code));
+
+        // Tampered code
+        String tampered = code.substring(0, 5) + (code.charAt(5) == 'A' ? 'B' : 'A') + code.substring(6);
+        Assert.assertFalse(service.check(uuid, dtUpdate, tampered));
+
+        // Not a code at all
+        Assert.assertFalse(service.check(uuid, dtUpdate, "not a code"));
+        Assert.assertFalse(service.check(uuid, dtUpdate, null));
+    }
+
+    @Test
+    public void expiredCodeTest() {
+        VerificationCodeService service = createService(VerificationCodeMode.HMAC, -1);
+
+        UUID uuid = UUID.randomUUID();
+        OffsetDateTime dtUpdate = OffsetDateTime.now();
+
+        Assert.assertFalse(service.check(uuid, dtUpdate, service.generate(uuid, dtUpdate)));
+    }
+
+    @Test
+    public void revokedCodeTest() throws Exception {
+        VerificationCodeService service = createService(VerificationCodeMode.HMAC, 60);
+
+        UUID uuid = UUID.randomUUID();
+        OffsetDateTime dtUpdate = OffsetDateTime.now();
+
+        String code = service.generate(uuid, dtUpdate);
+        service.revoke(uuid);
+
+        Assert.assertFalse(service.check(uuid, dtUpdate, code));
+
+        // Codes generated after revocation are fine
+        Thread.sleep(2);
+        Assert.assertTrue(service.check(uuid, dtUpdate, service.generate(uuid, dtUpdate)));
+    }
+
+    @Test
+    public void mapModeTest() {
+        VerificationCodeService service = createService(VerificationCodeMode.MAP, 60);
+
+        UUID uuid = UUID.randomUUID();
+        OffsetDateTime dtUpdate = OffsetDateTime.now();
+
+        String code = service.generate(uuid, dtUpdate);
+
+        Assert.assertTrue(service.check(uuid, dtUpdate, code));
+        Assert.assertFalse(service.check(uuid, dtUpdate, UUID.randomUUID().toString()));
+
+        service.revoke(uuid);
+
+        Assert.assertFalse(service.check(uuid, dtUpdate, code));
+    }
+
+    private static VerificationCodeService createService(VerificationCodeMode mode, long liveSeconds) {
+        VerificationCodeService service = new VerificationCodeService(new ConcurrentMapCacheManager());
+
+        ReflectionTestUtils.setField(service, "mode", mode);
+        ReflectionTestUtils.setField(service, "key", "test-key");
+        ReflectionTestUtils.setField(service, "liveSeconds", liveSeconds);
+        service.init();
+
+        return service;
+    }
+}
@@ -0,0 +1,128 @@
+package com.anyservice.tests.unit;
+
+import com.anyservice.core.VersionedMessageSource;
+import com.anyservice.service.user.VerificationEmailRenderer;
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.ui.freemarker.FreeMarkerTemplateUtils;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.UUID;
+
+import static com.anyservice.core.RandomValuesGenerator.randomString;
+
+/**
+ * Pre-rendered emails must be exactly the same as the ones, rendered by Freemarker every time
+ */
+public class VerificationEmailRendererUnitTest {
+
+    private static final String[] MESSAGES = {"greetings", "explanation", "whattodo", "linktext",
+            "ifwrongaddress", "companycredentials"};
+
+    private Configuration freemarkerConfig;
+    private VersionedMessageSource messageSource;
+    private VerificationEmailRenderer renderer;
+
+    @BeforeClass
+    public void setup() {
+        freemarkerConfig = new Configuration(Configuration.VERSION_2_3_28);
+
+        messageSource = new VersionedMessageSource();
+        messageSource.setBasenames("i18n/web-messages");
+        messageSource.setDefaultEncoding("UTF-8");
+        messageSource.setUseCodeAsDefaultMessage(true);
+
+        renderer = new VerificationEmailRenderer(freemarkerConfig, messageSource, new String[]{"en", "ru"});
+    }
+
+    @DataProvider
+    public static Object[][] localeDataProvider() {
+        return new Object[][]{
+                {Locale.ENGLISH},
+                {new Locale("ru")},
+        };
+    }
+
+    @Test(dataProvider = "localeDataProvider")
+    public void renderTest(Locale locale) throws Exception {
+        for (int i = 0; i < 10; i++) {
+            String initials = randomString(1, 100);
+            String link = "http://localhost/user/verification/" + UUID.randomUUID() + "/" + UUID.randomUUID();
+
+            Assert.assertEquals(renderer.renderText(initials, link, locale),
+                    renderWithFreemarker(initials, link, locale));
+        }
+
+        Assert.assertEquals(renderer.renderSubject(locale),
+                messageSource.getMessage("user.verification.email.subject", null, locale));
+    }
+
+    /**
+     * Template is rendered again, when message bundles are reloaded
+     *
+     * @throws Exception if something goes wrong - let interpret it as failed test
+     */
+    @Test
+    public void reloadTest() throws Exception {
+        String link = "http://localhost/user/verification/" + UUID.randomUUID() + "/" + UUID.randomUUID();
+
+        String before = renderer.renderText("initials", link, Locale.ENGLISH);
+        Object preRendered = templates().get(Locale.ENGLISH);
+
+        // Bundles are looked up every time and the ones, cached by JDK, are dropped - as if their files were changed
+        long version = messageSource.getVersion();
+        messageSource.setCacheSeconds(0);
+        ResourceBundle.clearCache(Thread.currentThread().getContextClassLoader());
+
+        Assert.assertEquals(renderer.renderText("initials", link, Locale.ENGLISH), before);
+        Assert.assertTrue(messageSource.getVersion() > version);
+        Assert.assertNotSame(templates().get(Locale.ENGLISH), preRendered);
+    }
+
+    /**
+     * Any locale of a client is served by a supported one, so that only supported locales are cached
+     */
+    @Test
+    public void unsupportedLocaleTest() {
+        String link = "http://localhost/user/verification/" + UUID.randomUUID() + "/" + UUID.randomUUID();
+
+        Assert.assertEquals(renderer.renderText("initials", link, Locale.GERMANY),
+                renderer.renderText("initials", link, Locale.ENGLISH));
+        Assert.assertEquals(renderer.renderText("initials", link, new Locale("ru", "RU")),
+                renderer.renderText("initials", link, new Locale("ru")));
+
+        Assert.assertTrue(templates().keySet().stream()
+                .allMatch(locale -> locale.equals(Locale.ENGLISH) || locale.equals(new Locale("ru"))));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Locale, ?> templates() {
+        return (Map<Locale, ?>) ReflectionTestUtils.getField(renderer, "templates");
+    }
+
+    /**
+     * The way emails were rendered before templates were pre-rendered
+     */
+    private String renderWithFreemarker(String initials, String link, Locale locale) throws Exception {
+        Map<String, Object> model = new HashMap<>();
+
+        for (String message : MESSAGES) {
+            model.put(message, messageSource.getMessage("user.verification.email." + message, null, locale));
+        }
+
+        model.put("initials", initials);
+        model.put("link", link);
+
+        Template template = freemarkerConfig.getTemplate("/mail/verification.ftl");
+
+        return FreeMarkerTemplateUtils.processTemplateIntoString(template, model);
+    }
+}